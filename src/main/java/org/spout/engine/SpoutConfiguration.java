@@ -47,18 +47,34 @@ public class SpoutConfiguration extends ConfigurationHolderConfiguration {
 	// Lightning
 	public static final ConfigurationHolder LIGHTING_ENABLED = new ConfigurationHolder(true, "lightning", "enabled");
 	public static final ConfigurationHolder LIVE_LIGHTING = new ConfigurationHolder(false, "lightning", "live-lighting");
+	public static final ConfigurationHolder LIGHTING_THREADS = new ConfigurationHolder(2, "lightning", "threads");
 	// Chunks
 	public static final ConfigurationHolder CHUNK_REAP_DELAY = new ConfigurationHolder(1, "chunks", "reap-delay");
 	public static final ConfigurationHolder REAP_CHUNKS_PER_TICK = new ConfigurationHolder(50, "chunks", "reap-per-tick");
 	public static final ConfigurationHolder UNLOAD_CHUNKS_PER_TICK = new ConfigurationHolder(50, "chunks", "unload-per-tick");
 	public static final ConfigurationHolder DYNAMIC_BLOCKS = new ConfigurationHolder(true, "chunks", "dynamic-blocks");
 	public static final ConfigurationHolder BLOCK_PHYSICS = new ConfigurationHolder(true, "chunks", "block-physics");	
+	public static final ConfigurationHolder FOOTPRINT_SCHEDULING = new ConfigurationHolder(false, "chunks", "footprint-scheduling");
+	// Entities
+	public static final ConfigurationHolder TICK_LOD = new ConfigurationHolder(true, "entities", "tick-lod");
+	public static final ConfigurationHolder TICK_LOD_FULL_DISTANCE = new ConfigurationHolder(48, "entities", "tick-lod-full-distance");
+	public static final ConfigurationHolder TICK_LOD_REDUCED_DISTANCE = new ConfigurationHolder(128, "entities", "tick-lod-reduced-distance");
+	public static final ConfigurationHolder TICK_LOD_REDUCED_INTERVAL = new ConfigurationHolder(4, "entities", "tick-lod-reduced-interval");
+	// Physics
+	public static final ConfigurationHolder SIMULATION_POOL_SIZE = new ConfigurationHolder(16, "physics", "simulation-pool-size");
+	public static final ConfigurationHolder PROXY_MARGIN = new ConfigurationHolder(2, "physics", "proxy-margin");
+	public static final ConfigurationHolder HANDOFF_MARGIN = new ConfigurationHolder(1, "physics", "handoff-margin");
 	// Messages
 	public static final ConfigurationHolder DEFAULT_LANGUAGE = new ConfigurationHolder("EN_US", "messages", "default-language");
 	// Network
 	public static final ConfigurationHolder UPNP = new ConfigurationHolder(true, "network", "upnp");
 	public static final ConfigurationHolder BONJOUR = new ConfigurationHolder(false, "network", "bonjour");
 	public static final ConfigurationHolder SHOW_CONNECTIONS = new ConfigurationHolder(false, "network", "show-connections");
+	public static final ConfigurationHolder NETWORK_FLUSH_THRESHOLD = new ConfigurationHolder(65536, "network", "flush-threshold");
+	public static final ConfigurationHolder CHUNK_SEND_BUDGET = new ConfigurationHolder(131072, "network", "chunk-send-budget");
+	public static final ConfigurationHolder CHUNK_COMPRESSION_LEVEL = new ConfigurationHolder(6, "compression", "chunk-level");
+	public static final ConfigurationHolder CHUNK_COMPRESSION_STRATEGY = new ConfigurationHolder("default", "compression", "chunk-strategy");
+	public static final ConfigurationHolder CHUNK_COMPRESSION_THRESHOLD = new ConfigurationHolder(256, "compression", "chunk-threshold");
 
 	public SpoutConfiguration() {
 		super(new YamlConfiguration(new File(SharedFileSystem.getConfigDirectory(), "spout.yml")));
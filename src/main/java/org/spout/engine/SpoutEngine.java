@@ -116,6 +116,7 @@ import org.spout.engine.filesystem.SharedFileSystem;
 import org.spout.engine.filesystem.versioned.PlayerFiles;
 import org.spout.engine.filesystem.versioned.WorldFiles;
 import org.spout.engine.input.SpoutInputConfiguration;
+import org.spout.engine.protocol.NetworkStats;
 import org.spout.engine.protocol.SpoutSession;
 import org.spout.engine.protocol.SpoutSessionRegistry;
 import org.spout.engine.protocol.builtin.SpoutProtocol;
@@ -234,6 +235,7 @@ public abstract class SpoutEngine extends AsyncManager implements Engine {
 			getRootCommand().addSubCommands(this, RendererCommands.class, commandRegFactory);
 		}
 		Protocol.registerProtocol(new SpoutProtocol());
+		NetworkStats.INSTANCE.register();
 
 		//Setup the Material Registry
 		engineItemMap = MaterialRegistry.setupRegistry();
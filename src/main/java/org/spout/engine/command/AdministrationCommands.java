@@ -57,6 +57,12 @@ import org.spout.api.util.access.BanType;
 import org.spout.engine.SpoutClient;
 import org.spout.engine.SpoutConfiguration;
 import org.spout.engine.SpoutEngine;
+import org.spout.engine.entity.EntityTickLevel;
+import org.spout.engine.protocol.NetworkStats;
+import org.spout.engine.protocol.SessionWriteBuffer;
+import org.spout.engine.protocol.SpoutSession;
+import org.spout.engine.world.SpoutWorld;
+import org.spout.engine.world.SpoutWorldLighting;
 
 public class AdministrationCommands {
 	private final SpoutEngine engine;
@@ -429,6 +435,43 @@ public class AdministrationCommands {
 			source.sendMessage("Age: ", world.getAge());
 			source.sendMessage("UUID: ", world.getUID());
 			source.sendMessage("Seed: ", world.getSeed());
+			if (world instanceof SpoutWorld) {
+				SpoutWorldLighting lighting = ((SpoutWorld) world).getLightingManager();
+				source.sendMessage("Lighting workers: ", lighting.getWorkerCount(), ", queued chunks: ", lighting.getQueueDepth());
+				source.sendMessage("Lighting latency: ", String.format("%.2f", lighting.getAverageLatency()), " ms average, ", String.format("%.2f", lighting.getLastLatency()), " ms last");
+				SpoutWorld spoutWorld = (SpoutWorld) world;
+				source.sendMessage("Physics lock: ", String.format("%.2f", spoutWorld.getPhysicsLockTime()), " ms last tick, ", String.format("%.2f", spoutWorld.getMaxPhysicsLockTime()), " ms longest hold, ", String.format("%.2f", spoutWorld.getAveragePhysicsLockTime()), " ms average hold");
+				int[] tickLevels = spoutWorld.getTickLevelDistribution();
+				source.sendMessage("Entity ticks: ", tickLevels[EntityTickLevel.FULL.ordinal()], " full, ", tickLevels[EntityTickLevel.REDUCED.ordinal()], " reduced, ", tickLevels[EntityTickLevel.FROZEN.ordinal()], " frozen");
+			}
+		}
+	}
+
+	@Command(aliases = {"netstats"}, desc = "Shows network traffic by message type, or the traffic of a player", usage = "[player]", min = 0, max = 1)
+	@CommandPermissions("spout.command.netstats")
+	public void netstats(CommandContext args, CommandSource source) throws CommandException {
+		if (args.length() == 0) {
+			NetworkStats stats = NetworkStats.INSTANCE;
+			source.sendMessage("Out: ", stats.getMessagesOut(), " messages, ", stats.getBytesOut(), " bytes, ", String.format("%.2f", stats.getEncodeMillis()), " ms encoding");
+			source.sendMessage("In: ", stats.getMessagesIn(), " messages, ", stats.getBytesIn(), " bytes, ", String.format("%.2f", stats.getDecodeMillis()), " ms decoding");
+			source.sendMessage("Compression ratio: ", String.format("%.3f", stats.getCompressionRatio()));
+			for (String line : stats.getOpcodeSummary()) {
+				source.sendMessage(line);
+			}
+		} else {
+			Player player = engine.getPlayer(args.getString(0), true);
+			if (player == null || !player.isOnline()) {
+				throw new CommandException(args.getString(0) + " is not online.");
+			}
+			if (!(player.getSession() instanceof SpoutSession)) {
+				throw new CommandException("No network stats are kept for " + player.getName());
+			}
+			SpoutSession<?> session = (SpoutSession<?>) player.getSession();
+			SessionWriteBuffer buffer = session.getWriteBuffer();
+			source.sendMessage("Player: ", player.getName());
+			source.sendMessage("Out: ", session.getMessagesOut(), " messages, ", buffer.getBytesOut(), " bytes");
+			source.sendMessage("In: ", session.getMessagesIn(), " messages, ", buffer.getBytesIn(), " bytes");
+			source.sendMessage("Send queue: ", session.getSendQueueDepth(), " messages, ", buffer.getMaxDepth(), " max, ", String.format("%.2f", buffer.getAverageQueueMillis()), " ms average wait");
 		}
 	}
 
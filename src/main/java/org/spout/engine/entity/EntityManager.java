@@ -35,7 +35,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import org.spout.api.Spout;
 import org.spout.api.entity.Entity;
 import org.spout.api.entity.Player;
-import org.spout.api.math.MathHelper;
 import org.spout.api.protocol.NetworkSynchronizer;
 
 import org.spout.engine.util.thread.snapshotable.SnapshotManager;
@@ -149,7 +148,10 @@ public class EntityManager {
 		if (entity instanceof Player) {
 			players.remove((Player) entity);
 		}
-		region.removePhysics(entity);
+		// Entities which move to another region keep their body in this simulation until the region hands it off
+		if (entity.isRemoved()) {
+			region.removePhysics(entity);
+		}
 	}
 
 	/**
@@ -192,10 +194,14 @@ public class EntityManager {
 	}
 
 	/**
-	 * Syncs all entities/observers in this region
+	 * Syncs all entities/observers in this region.<br>
+	 * <br>
+	 * The chunks observed by a player are the cells it subscribes to, an entity is visible to the players observing its chunk.
+	 * The observed chunks only change at the edges of the window of a player, so an entity which did not change is only
+	 * spawned for the players which started observing its chunk, and destroyed for the players which stopped.
 	 */
 	public void syncEntities() {
-		for (Entity ent : getAll()) {
+		for (SpoutEntity ent : getAll()) {
 			//Do not sync entities with null chunks
 			if (ent.getChunk() == null) {
 				continue;
@@ -204,16 +210,43 @@ public class EntityManager {
 				Spout.getLogger().info("Attempt to sync entity with the not spawned id");
 				continue;
 			}
-			//Players observing the chunk this entity is in
-			Set<? extends Entity> observers = ent.getChunk().getObservers();
-			syncEntity(ent, observers, false);
+			SpoutChunk chunk = (SpoutChunk) ent.getChunk();
+			SpoutChunk previous = ent.getSyncedChunk();
+			ent.setSyncedChunk(chunk);
+			//Players which only observe the chunk the entity left no longer see it
+			if (previous != null && previous != chunk) {
+				destroyEntity(ent, previous.getObservingPlayers(), chunk.getObservingPlayers());
+			}
+			//The builtin protocol only sends updates for moved entities, an unmoved entity only has to be spawned for new subscribers
+			if (previous == chunk && !ent.isRemoved() && !ent.getTransform().isDirty()) {
+				syncEntity(ent, chunk.getNewObservingPlayers(), false, true);
+			} else {
+				syncEntity(ent, chunk.getObservingPlayers(), false, false);
+			}
 
-			Set<? extends Entity> expiredObservers = ((SpoutChunk) ent.getChunk()).getExpiredObservers();
-			syncEntity(ent, expiredObservers, true);
+			Set<? extends Entity> expiredObservers = chunk.getExpiredObservers();
+			if (!expiredObservers.isEmpty()) {
+				syncEntity(ent, expiredObservers, true, false);
+			}
 		}
 	}
 
-	private void syncEntity(Entity ent, Set<? extends Entity> observers, boolean forceDestroy) {
+	private void destroyEntity(Entity ent, Set<? extends Player> observers, Set<? extends Player> remaining) {
+		for (Player player : observers) {
+			if (ent == player || !player.isOnline() || remaining.contains(player)) {
+				continue;
+			}
+			NetworkSynchronizer network = player.getNetworkSynchronizer();
+			if (network.hasSpawned(ent)) {
+				network.syncEntity(ent, false, true, false);
+			}
+		}
+	}
+
+	private void syncEntity(Entity ent, Set<? extends Entity> observers, boolean forceDestroy, boolean unchanged) {
+		if (observers.isEmpty()) {
+			return;
+		}
 		for (Entity observer : observers) {
 			//Don't sync ourselves to ourselves :p
 			if (ent == observer) {
@@ -230,19 +263,19 @@ public class EntityManager {
 			}
 			//Grab the NetworkSynchronizer of the player
 			NetworkSynchronizer network = player.getNetworkSynchronizer();
-			//Grab player's view distance
-			int view = player.getViewDistance();
 			/*
-			 * Just because a player can see a chunk doesn't mean the entity is within sync-range, do the math and sync based on the result.
+			 * The player subscribes to the chunk of the entity, so the entity is in sync range unless it is gone or hidden.
 			 *
 			 * Following variables hold sync status
 			 */
 			boolean spawn, sync, destroy;
 			spawn = sync = destroy = false;
-			//Entity is out of range of the player's view distance, destroy
-			if (forceDestroy || ent.isRemoved() || MathHelper.distance(ent.getTransform().getPosition(), player.getTransform().getPosition()) > view || player.isInvisible(ent)) {
+			if (forceDestroy || ent.isRemoved() || player.isInvisible(ent)) {
 				destroy = true;
 			} else if (network.hasSpawned(ent)) {
+				if (unchanged) {
+					continue;
+				}
 				sync = true;
 			} else {
 				spawn = true;
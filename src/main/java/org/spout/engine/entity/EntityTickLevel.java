@@ -0,0 +1,128 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.entity;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spout.api.component.Component;
+import org.spout.api.entity.Entity;
+import org.spout.api.entity.Player;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.math.MathHelper;
+
+import org.spout.engine.SpoutConfiguration;
+
+import com.google.common.collect.Sets;
+
+/**
+ * How often the components of an entity are ticked, based on the distance to the nearest player.<br>
+ * <br>
+ * Components which must see every tick, regardless of how far away players are, can be exempted with
+ * {@link #exempt(Class)}.
+ */
+public enum EntityTickLevel {
+	/**
+	 * Components are ticked every tick
+	 */
+	FULL,
+	/**
+	 * Components are ticked every few ticks, with the time of the skipped ticks added up
+	 */
+	REDUCED,
+	/**
+	 * Components are not ticked, the time passes without them
+	 */
+	FROZEN;
+
+	private static final Set<Class<? extends Component>> exempt = Sets.newSetFromMap(new ConcurrentHashMap<Class<? extends Component>, Boolean>());
+	/**
+	 * Whether each component class checked so far is exempt, cleared when a type is exempted
+	 */
+	private static final Map<Class<?>, Boolean> resolved = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	/**
+	 * Exempts a type of component from reduced ticking, components of the type or a subtype are ticked every tick while their entity is ticked
+	 * @param type of component
+	 */
+	public static synchronized void exempt(Class<? extends Component> type) {
+		exempt.add(type);
+		resolved.clear();
+	}
+
+	/**
+	 * Checks if a component is exempt from reduced ticking
+	 * @param component to check
+	 * @return true if the component is ticked every tick
+	 */
+	public static boolean isExempt(Component component) {
+		if (exempt.isEmpty()) {
+			return false;
+		}
+		final Class<?> type = component.getClass();
+		Boolean result = resolved.get(type);
+		if (result == null) {
+			result = resolve(type);
+		}
+		return result;
+	}
+
+	private static synchronized boolean resolve(Class<?> type) {
+		boolean result = false;
+		for (Class<? extends Component> e : exempt) {
+			if (e.isAssignableFrom(type)) {
+				result = true;
+				break;
+			}
+		}
+		resolved.put(type, result);
+		return result;
+	}
+
+	/**
+	 * Gets the tick level of an entity
+	 * @param entity to get the level of
+	 * @return the level
+	 */
+	public static EntityTickLevel getLevel(Entity entity) {
+		if (!SpoutConfiguration.TICK_LOD.getBoolean() || entity instanceof Player) {
+			return FULL;
+		}
+		final int fullDistance = SpoutConfiguration.TICK_LOD_FULL_DISTANCE.getInt();
+		final int reducedDistance = SpoutConfiguration.TICK_LOD_REDUCED_DISTANCE.getInt();
+		final Point position = entity.getTransform().getPosition();
+		final Player nearest = entity.getWorld().getNearestPlayer(position, reducedDistance);
+		if (nearest == null) {
+			return FROZEN;
+		}
+		if (MathHelper.distanceSquared(position, nearest.getTransform().getPosition()) <= fullDistance * fullDistance) {
+			return FULL;
+		}
+		return REDUCED;
+	}
+}
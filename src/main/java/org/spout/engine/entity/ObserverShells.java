@@ -0,0 +1,76 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.entity;
+
+/**
+ * Walks the chunks which enter or leave an observed window when its center moves.<br>
+ * <br>
+ * The window contains the chunks within the view distance from the center, measured as the Manhattan distance, the same
+ * chunks as an {@link org.spout.api.util.OutwardIterator} of the view distance. Only the outer shells of the window are
+ * walked, the shells closer to the center than the view distance minus the move are in both windows.
+ */
+final class ObserverShells {
+	private ObserverShells() {
+	}
+
+	/**
+	 * Visits the chunks of the window around a center which are not in the window around another center
+	 * @param cx the x coordinate of the center of the window to walk
+	 * @param cy the y coordinate of the center of the window to walk
+	 * @param cz the z coordinate of the center of the window to walk
+	 * @param ox the x coordinate of the center of the other window
+	 * @param oy the y coordinate of the center of the other window
+	 * @param oz the z coordinate of the center of the other window
+	 * @param viewDistance of both windows, in chunks
+	 * @param visitor to visit the chunks with
+	 */
+	static void walk(int cx, int cy, int cz, int ox, int oy, int oz, int viewDistance, Visitor visitor) {
+		final int moved = Math.abs(cx - ox) + Math.abs(cy - oy) + Math.abs(cz - oz);
+		if (moved == 0) {
+			return;
+		}
+		final int minShell = Math.max(0, viewDistance - moved + 1);
+		for (int r = minShell; r <= viewDistance; r++) {
+			for (int dx = -r; dx <= r; dx++) {
+				final int ry = r - Math.abs(dx);
+				for (int dy = -ry; dy <= ry; dy++) {
+					final int rz = ry - Math.abs(dy);
+					for (int dz = -rz; dz <= rz; dz += rz == 0 ? 1 : rz << 1) {
+						final int x = cx + dx, y = cy + dy, z = cz + dz;
+						if (Math.abs(x - ox) + Math.abs(y - oy) + Math.abs(z - oz) > viewDistance) {
+							visitor.visit(x, y, z);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	interface Visitor {
+		void visit(int x, int y, int z);
+	}
+}
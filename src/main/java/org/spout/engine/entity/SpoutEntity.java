@@ -26,6 +26,8 @@
  */
 package org.spout.engine.entity;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -56,6 +58,7 @@ import org.spout.api.math.Quaternion;
 import org.spout.api.math.Vector3;
 import org.spout.api.plugin.Platform;
 import org.spout.api.util.OutwardIterator;
+import org.spout.api.util.hashing.Int21TripleHashed;
 import org.spout.api.util.thread.annotation.DelayedWrite;
 import org.spout.api.util.thread.annotation.SnapshotRead;
 import org.spout.engine.SpoutConfiguration;
@@ -81,8 +84,51 @@ public class SpoutEntity extends BaseComponentHolder implements Entity, Snapshot
 	private final AtomicInteger id = new AtomicInteger(NOTSPAWNEDID);
 	private final SnapshotableInt viewDistance = new SnapshotableInt(snapshotManager, 10);
 	private volatile boolean remove = false;
+	/**
+	 * The time and number of ticks skipped by the tick level, only accessed by the region thread
+	 */
+	private float deferredDt = 0f;
+	private int deferredTicks = 0;
 	//Other
 	private final Set<SpoutChunk> observingChunks = new HashSet<SpoutChunk>();
+	/**
+	 * The observed chunks by packed chunk coordinates, only used while observing the default window
+	 */
+	private final TLongObjectHashMap<SpoutChunk> observingKeys = new TLongObjectHashMap<SpoutChunk>();
+	/**
+	 * The center and view distance of the observed window, the distance is -1 if the window must be rebuilt
+	 */
+	private int windowX, windowY, windowZ, windowDistance = -1;
+	private World windowWorld = null;
+	/**
+	 * Set when an observed chunk is unloaded, the window then holds a stale chunk and is rebuilt instead of slid
+	 */
+	private volatile boolean windowStale = false;
+	private final ObserverShells.Visitor enterWindow = new ObserverShells.Visitor() {
+		@Override
+		public void visit(int x, int y, int z) {
+			SpoutChunk chunk = (SpoutChunk) windowWorld.getChunk(x, y, z, LoadOption.LOAD_GEN);
+			chunk.refreshObserver(SpoutEntity.this);
+			observingChunks.add(chunk);
+			observingKeys.put(Int21TripleHashed.key(x, y, z), chunk);
+		}
+	};
+	private final ObserverShells.Visitor leaveWindow = new ObserverShells.Visitor() {
+		@Override
+		public void visit(int x, int y, int z) {
+			SpoutChunk chunk = observingKeys.remove(Int21TripleHashed.key(x, y, z));
+			if (chunk != null) {
+				observingChunks.remove(chunk);
+				if (chunk.isLoaded()) {
+					chunk.removeObserver(SpoutEntity.this);
+				}
+			}
+		}
+	};
+	/**
+	 * The chunk the entity was in when it was last synced, only accessed by the region thread
+	 */
+	private SpoutChunk syncedChunk = null;
 	private final UUID uid;
 	protected boolean justSpawned = true;
 	//For faster access
@@ -185,6 +231,37 @@ public class SpoutEntity extends BaseComponentHolder implements Entity, Snapshot
 		}
 	}
 
+	/**
+	 * Ticks the components of the entity, as often as the tick level allows
+	 * @param dt time since the last tick
+	 * @param level the tick level of the entity
+	 */
+	public void tick(float dt, EntityTickLevel level) {
+		if (!canTick()) {
+			return;
+		}
+		final boolean due;
+		if (level == EntityTickLevel.FROZEN) {
+			deferredDt = 0f;
+			deferredTicks = 0;
+			due = false;
+		} else {
+			deferredDt += dt;
+			due = level == EntityTickLevel.FULL || ++deferredTicks >= SpoutConfiguration.TICK_LOD_REDUCED_INTERVAL.getInt();
+		}
+		for (Component component : values()) {
+			if (EntityTickLevel.isExempt(component)) {
+				component.tick(dt);
+			} else if (due) {
+				component.tick(deferredDt);
+			}
+		}
+		if (due) {
+			deferredDt = 0f;
+			deferredTicks = 0;
+		}
+	}
+
 	@Override
 	public int getId() {
 		return id.get();
@@ -258,6 +335,8 @@ public class SpoutEntity extends BaseComponentHolder implements Entity, Snapshot
 			}
 		}
 		observingChunks.clear();
+		observingKeys.clear();
+		windowDistance = -1;
 	}
 
 	protected void updateObserver() {
@@ -269,16 +348,35 @@ public class SpoutEntity extends BaseComponentHolder implements Entity, Snapshot
 		int cx = c.getX();
 		int cy = c.getY();
 		int cz = c.getZ();
-		HashSet<SpoutChunk> observing = new HashSet<SpoutChunk>((viewDistance * viewDistance * viewDistance * 3) / 2);
 		Iterator<IntVector3> itr = observer.getLive();
 		if (itr == OBSERVING) {
+			// Only the chunks near the faces of the window enter or leave it when the entity moves a few chunks
+			int moved = Math.abs(cx - windowX) + Math.abs(cy - windowY) + Math.abs(cz - windowZ);
+			if (w == windowWorld && viewDistance == windowDistance && !windowStale && moved <= Math.max(1, viewDistance / 2)) {
+				slideObserver(cx, cy, cz, viewDistance);
+				return;
+			}
+			// Chunks unloaded from now on are found by the next update
+			windowStale = false;
 			itr = new OutwardIterator(cx, cy, cz, viewDistance);
+			windowX = cx;
+			windowY = cy;
+			windowZ = cz;
+			windowDistance = viewDistance;
+			windowWorld = w;
+		} else {
+			windowDistance = -1;
 		}
+		HashSet<SpoutChunk> observing = new HashSet<SpoutChunk>((viewDistance * viewDistance * viewDistance * 3) / 2);
+		observingKeys.clear();
 		while (itr.hasNext()) {
 			IntVector3 v = itr.next();
 			Chunk chunk = w.getChunk(v.getX(), v.getY(), v.getZ(), LoadOption.LOAD_GEN);
 			chunk.refreshObserver(this);
 			observing.add((SpoutChunk) chunk);
+			if (windowDistance >= 0) {
+				observingKeys.put(Int21TripleHashed.key(v.getX(), v.getY(), v.getZ()), (SpoutChunk) chunk);
+			}
 		}
 		observingChunks.removeAll(observing);
 		for (SpoutChunk chunk : observingChunks) {
@@ -290,6 +388,38 @@ public class SpoutEntity extends BaseComponentHolder implements Entity, Snapshot
 		observingChunks.addAll(observing);
 	}
 
+	/**
+	 * Moves the observed window to a new center, only visiting the shells of the old and new window which the move changes
+	 */
+	private void slideObserver(int cx, int cy, int cz, int viewDistance) {
+		//Chunks entering the window lie in the outer shells of the new window
+		ObserverShells.walk(cx, cy, cz, windowX, windowY, windowZ, viewDistance, enterWindow);
+		//Chunks leaving the window lie in the outer shells of the old window
+		ObserverShells.walk(windowX, windowY, windowZ, cx, cy, cz, viewDistance, leaveWindow);
+		windowX = cx;
+		windowY = cy;
+		windowZ = cz;
+	}
+
+	/**
+	 * Forces the observed window to be rebuilt on the next update, should be called when one of its chunks is unloaded
+	 */
+	public void invalidateObserverWindow() {
+		windowStale = true;
+	}
+
+	/**
+	 * Gets the chunk this entity was in when it was last synced to the players observing it
+	 * @return the chunk, or null if the entity was not synced yet
+	 */
+	public SpoutChunk getSyncedChunk() {
+		return syncedChunk;
+	}
+
+	public void setSyncedChunk(SpoutChunk chunk) {
+		syncedChunk = chunk;
+	}
+
 	public Set<SpoutChunk> getObservingChunks() {
 		return observingChunks;
 	}
@@ -26,6 +26,10 @@
  */
 package org.spout.engine.entity.component;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import javax.vecmath.Matrix4f;
 import javax.vecmath.Quat4f;
 import javax.vecmath.Vector3f;
@@ -48,7 +52,14 @@ import org.spout.api.math.Vector3;
 import org.spout.engine.world.SpoutRegion;
 
 /**
- * A component that represents the physics object that is a motion of the entity within the world.
+ * A component that represents the physics object that is a motion of the entity within the world.<br>
+ * <br>
+ * The body is only touched by the region which simulates it. Changes are queued as commands and applied before
+ * the next step of the simulation, and the properties of the body are published after each step so they can be
+ * read without locking the simulation.<br>
+ * <br>
+ * While the entity is near the edge of a neighbouring region, the body may still be simulated by the region the entity
+ * left. The transform of such a step is handed to the region of the entity, which applies it to the entity.
  */
 public class SpoutPhysicsComponent extends PhysicsComponent {
 	//TODO persist
@@ -58,10 +69,25 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 	private Vector3 linearVelocity = Vector3.ZERO;
 	private boolean dirtyVelocity = false, dirtyAngularVelocity = false, dirtyLinearVelocity = false;
 	private float mass = 0f;
+	/**
+	 * The properties of the body, as of the last step of the simulation
+	 */
+	private volatile BodyState published = null;
+	private final ConcurrentLinkedQueue<BodyCommand> commands = new ConcurrentLinkedQueue<BodyCommand>();
+	private final AtomicBoolean commandsQueued = new AtomicBoolean(false);
+	/**
+	 * The region which simulates the body, this lags behind the region of the entity near region edges
+	 */
+	private volatile SpoutRegion simulatingRegion = null;
+	/**
+	 * The transform of the last step of a region which does not own the entity, applied by the region of the entity
+	 */
+	private final AtomicReference<Transform> pendingTransform = new AtomicReference<Transform>();
+	private final AtomicBoolean transformQueued = new AtomicBoolean(false);
 
 	@Override
 	public void onDetached() {
-		SpoutRegion region = (SpoutRegion) getOwner().getRegion();
+		SpoutRegion region = simulatingRegion;
 		if (region != null) {
 			region.removePhysics(this);
 		}
@@ -69,72 +95,52 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 
 	@Override
 	public float getRestitution() {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			return body.getRestitution();
-		}
+		return getPublished().restitution;
 	}
 
 	@Override
-	public void setRestitution(float restitution) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			body.setRestitution(restitution);
-		}
+	public void setRestitution(final float restitution) {
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.setRestitution(restitution);
+			}
+		});
 	}
 
 	@Override
 	public float getAngularDamping() {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			return body.getAngularDamping();
-		}
+		return getPublished().angularDamping;
 	}
 
 	@Override
 	public float getLinearDamping() {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			return body.getLinearDamping();
-		}
+		return getPublished().linearDamping;
 	}
 
 	@Override
-	public void setDamping(float linearDamping, float angularDamping) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			body.setDamping(linearDamping, angularDamping);
-		}
+	public void setDamping(final float linearDamping, final float angularDamping) {
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.setDamping(linearDamping, angularDamping);
+			}
+		});
 	}
 
 	@Override
 	public float getFriction() {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			return body.getFriction();
-		}
+		return getPublished().friction;
 	}
 
 	@Override
-	public void setFriction(float friction) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			body.setFriction(friction);
-		}
+	public void setFriction(final float friction) {
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.setFriction(friction);
+			}
+		});
 	}
 
 	@Override
@@ -171,6 +177,7 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 		body.setUserPointer(getOwner());
 		body.setWorldTransform(new Transform(new Matrix4f(MathHelper.toQuaternionf(spoutTransform.getRotation()), MathHelper.toVector3f(point.getX(), point.getY(), point.getZ()), 1)));
 		body.activate();
+		publish();
 	}
 
 	@Override
@@ -185,22 +192,24 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 
 	@Override
 	public void setAngularVelocity(Vector3 velocity) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			body.setAngularVelocity(MathHelper.toVector3f(velocity));
-		}
+		final Vector3f angularVelocity = MathHelper.toVector3f(velocity);
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.setAngularVelocity(angularVelocity);
+			}
+		});
 	}
 
 	@Override
 	public void setLinearVelocity(Vector3 velocity) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		synchronized (((SpoutRegion) getOwner().getRegion()).getSimulation()) {
-			body.setLinearVelocity(MathHelper.toVector3f(velocity));
-		}
+		final Vector3f linearVelocity = MathHelper.toVector3f(velocity);
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.setLinearVelocity(linearVelocity);
+			}
+		});
 	}
 
 	@Override
@@ -220,60 +229,178 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 
 	@Override
 	public void applyImpulse(Vector3 impulse) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		SpoutRegion r = (SpoutRegion) getOwner().getRegion();
-		if (r == null) {
-			throw new IllegalStateException("Entity region is null!");
-		}
-		synchronized (r.getSimulation()) {
-			body.applyCentralImpulse(MathHelper.toVector3f(impulse));
-		}
+		final Vector3f bulletImpulse = MathHelper.toVector3f(impulse);
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.applyCentralImpulse(bulletImpulse);
+			}
+		});
 	}
 
 	@Override
 	public void applyImpulse(Vector3 impulse, Vector3 relativePos) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
-		}
-		SpoutRegion r = (SpoutRegion) getOwner().getRegion();
-		if (r == null) {
-			throw new IllegalStateException("Entity region is null!");
-		}
-		synchronized (r.getSimulation()) {
-			body.applyImpulse(MathHelper.toVector3f(impulse), MathHelper.toVector3f(relativePos));
-		}
+		final Vector3f bulletImpulse = MathHelper.toVector3f(impulse);
+		final Vector3f bulletRelativePos = MathHelper.toVector3f(relativePos);
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.applyImpulse(bulletImpulse, bulletRelativePos);
+			}
+		});
 	}
 
 	@Override
 	public void applyForce(Vector3 force) {
+		final Vector3f bulletForce = MathHelper.toVector3f(force);
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.applyCentralForce(bulletForce);
+			}
+		});
+	}
+
+	@Override
+	public void applyForce(Vector3 force, Vector3 relativePos) {
+		final Vector3f bulletForce = MathHelper.toVector3f(force);
+		final Vector3f bulletRelativePos = MathHelper.toVector3f(relativePos);
+		queue(new BodyCommand() {
+			@Override
+			public void apply(RigidBody body) {
+				body.applyForce(bulletForce, bulletRelativePos);
+			}
+		});
+	}
+
+	/**
+	 * Queues a change to the body, it is applied by the region before the next step of the simulation
+	 * @param command to queue
+	 */
+	private void queue(BodyCommand command) {
 		if (body == null) {
 			throw new IllegalStateException("A collision shape must be set first");
 		}
-		SpoutRegion r = (SpoutRegion) getOwner().getRegion();
+		SpoutRegion r = simulatingRegion;
+		if (r == null) {
+			r = (SpoutRegion) getOwner().getRegion();
+		}
 		if (r == null) {
 			throw new IllegalStateException("Entity region is null!");
 		}
-		synchronized (r.getSimulation()) {
-			body.applyCentralForce(MathHelper.toVector3f(force));
+		commands.add(command);
+		if (commandsQueued.compareAndSet(false, true)) {
+			r.queuePhysicsCommands(this);
 		}
 	}
 
-	@Override
-	public void applyForce(Vector3 force, Vector3 relativePos) {
-		if (body == null) {
-			throw new IllegalStateException("A collision shape must be set first");
+	/**
+	 * Applies the queued changes to the body and publishes the result.<br>
+	 * This should only be called by the region, while it holds the simulation lock.
+	 * @param region which applies the changes
+	 */
+	public void applyCommands(SpoutRegion region) {
+		commandsQueued.set(false);
+		if (commands.isEmpty()) {
+			return;
+		}
+		// The body was handed off, the commands are queued again once a region simulates it
+		SpoutRegion r = simulatingRegion;
+		if (r != region) {
+			if (r != null && commandsQueued.compareAndSet(false, true)) {
+				r.queuePhysicsCommands(this);
+			}
+			return;
+		}
+		BodyCommand command;
+		while ((command = commands.poll()) != null) {
+			command.apply(body);
 		}
+		// Activates the body, so the simulation of the region steps it again if it was sleeping
+		body.activate();
+		publish();
+	}
+
+	/**
+	 * Applies the transform of the last step to the entity, when the body is simulated by a region which does not own the entity.<br>
+	 * This should only be called by the region of the entity.
+	 * @param region which applies the transform
+	 */
+	public void applyTransform(SpoutRegion region) {
+		transformQueued.set(false);
+		// The entity moved again, the transform is applied by its new region
 		SpoutRegion r = (SpoutRegion) getOwner().getRegion();
-		if (r == null) {
-			throw new IllegalStateException("Entity region is null!");
+		if (r != region) {
+			if (r != null && pendingTransform.get() != null && transformQueued.compareAndSet(false, true)) {
+				r.queuePhysicsTransform(this);
+			}
+			return;
+		}
+		Transform transform = pendingTransform.getAndSet(null);
+		if (transform == null) {
+			return;
+		}
+		TransformComponent t = getOwner().getTransform();
+		boolean reset = false;
+		if (!t.isPositionDirty()) {
+			t.setPosition(new Point(MathHelper.toVector3(transform.origin), getOwner().getWorld()));
+		} else {
+			reset = true;
+		}
+		if (!t.isRotationDirty()) {
+			t.setRotation(MathHelper.toQuaternion(transform.getRotation(new Quat4f())));
+		} else {
+			reset = true;
+		}
+		// The entity was moved directly, the simulating region moves the body to it
+		if (reset) {
+			queue(new BodyCommand() {
+				@Override
+				public void apply(RigidBody body) {
+					body.setWorldTransform(state.getWorldTransform(new Transform()));
+				}
+			});
 		}
-		synchronized (r.getSimulation()) {
-			body.applyForce(MathHelper.toVector3f(force), MathHelper.toVector3f(relativePos));
+	}
+
+	/**
+	 * Publishes the properties of the body for reading.<br>
+	 * This should only be called by the region, while it holds the simulation lock.
+	 */
+	public void publish() {
+		if (body != null) {
+			published = new BodyState(body);
 		}
 	}
 
+	/**
+	 * Gets the region which simulates the body
+	 * @return the region, or null if the body is in no simulation
+	 */
+	public SpoutRegion getSimulatingRegion() {
+		return simulatingRegion;
+	}
+
+	/**
+	 * Sets the region which simulates the body, commands which wait for a region are queued with it.<br>
+	 * This should only be called by the region, while it holds the simulation lock.
+	 * @param region which simulates the body, or null if it was removed from the simulation
+	 */
+	public void setSimulatingRegion(SpoutRegion region) {
+		simulatingRegion = region;
+		if (region != null && !commands.isEmpty() && commandsQueued.compareAndSet(false, true)) {
+			region.queuePhysicsCommands(this);
+		}
+	}
+
+	private BodyState getPublished() {
+		BodyState published = this.published;
+		if (published == null) {
+			throw new IllegalStateException("A collision shape must be set first");
+		}
+		return published;
+	}
+
 	/**
 	 * Gets the collision object which holds the collision shape and is used to calculate physics such as velocity, intertia,
 	 * etc. All PhysicsComponents are guaranteed to have a valid object.
@@ -293,20 +420,37 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 	}
 
 	public void copySnapshot() {
-		if (body != null) {
-			SpoutRegion r = (SpoutRegion) getOwner().getRegion();
-			if (r == null) {
-				throw new IllegalStateException("Entity region is null!");
-			}
-			synchronized (r.getSimulation()) {
-				Vector3 angularVelocityLive = MathHelper.toVector3(body.getInterpolationAngularVelocity(new Vector3f()));
-				Vector3 linearVelocityLive = MathHelper.toVector3(body.getInterpolationLinearVelocity(new Vector3f()));
-				dirtyLinearVelocity = !linearVelocityLive.equals(linearVelocity);
-				dirtyAngularVelocity = !angularVelocityLive.equals(angularVelocity);
-				dirtyVelocity = dirtyAngularVelocity && dirtyLinearVelocity;
-				angularVelocity = angularVelocityLive;
-				linearVelocity = linearVelocityLive;
-			}
+		BodyState published = this.published;
+		if (published != null) {
+			dirtyLinearVelocity = !published.linearVelocity.equals(linearVelocity);
+			dirtyAngularVelocity = !published.angularVelocity.equals(angularVelocity);
+			dirtyVelocity = dirtyAngularVelocity && dirtyLinearVelocity;
+			angularVelocity = published.angularVelocity;
+			linearVelocity = published.linearVelocity;
+		}
+	}
+
+	/**
+	 * A change to the body
+	 */
+	private static abstract class BodyCommand {
+		public abstract void apply(RigidBody body);
+	}
+
+	/**
+	 * The readable properties of the body
+	 */
+	private static class BodyState {
+		private final float restitution, friction, linearDamping, angularDamping;
+		private final Vector3 angularVelocity, linearVelocity;
+
+		public BodyState(RigidBody body) {
+			restitution = body.getRestitution();
+			friction = body.getFriction();
+			linearDamping = body.getLinearDamping();
+			angularDamping = body.getAngularDamping();
+			angularVelocity = MathHelper.toVector3(body.getInterpolationAngularVelocity(new Vector3f()));
+			linearVelocity = MathHelper.toVector3(body.getInterpolationLinearVelocity(new Vector3f()));
 		}
 	}
 
@@ -327,6 +471,16 @@ public class SpoutPhysicsComponent extends PhysicsComponent {
 
 		@Override
 		public void setWorldTransform(Transform transform) {
+			// Only the region of the entity may write its transform
+			SpoutRegion simulating = simulatingRegion;
+			SpoutRegion owner = (SpoutRegion) entity.getRegion();
+			if (simulating != null && owner != null && owner != simulating) {
+				pendingTransform.set(new Transform(transform));
+				if (transformQueued.compareAndSet(false, true)) {
+					owner.queuePhysicsTransform(SpoutPhysicsComponent.this);
+				}
+				return;
+			}
 			TransformComponent t = entity.getTransform();
 			org.spout.api.geo.discrete.Transform spoutTransform = t.getTransformLive();
 			Point point = spoutTransform.getPosition();
@@ -38,7 +38,10 @@ import org.spout.api.protocol.CommonHandler;
 import org.spout.api.protocol.Message;
 import org.spout.api.protocol.Protocol;
 import org.spout.api.protocol.Session;
+import org.spout.engine.protocol.ProxyPassthroughHandler;
+import org.spout.engine.protocol.SpoutProxySession;
 import org.spout.engine.protocol.SpoutSession;
+import org.spout.engine.protocol.builtin.SpoutProtocol;
 
 public class SpoutProxyConnectListener implements ChannelFutureListener {
 	private final Engine engine;
@@ -75,6 +78,10 @@ public class SpoutProxyConnectListener implements ChannelFutureListener {
 						d.setSession(session);
 					}
 					Protocol protocol = session.getProtocol();
+					// Only the builtin protocol has the frame length in its header
+					if (protocol instanceof SpoutProtocol && session instanceof SpoutProxySession) {
+						pipeline.addFirst("passthrough", new ProxyPassthroughHandler((SpoutProxySession) session));
+					}
 					if (protocol != null) {
 						Message intro = protocol.getIntroductionMessage(playerName, (InetSocketAddress) c.getRemoteAddress());
 						c.write(intro);
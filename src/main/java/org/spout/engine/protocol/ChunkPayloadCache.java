@@ -0,0 +1,116 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * Caches the encoded network payload of a chunk, so a chunk sent to many players is only encoded and compressed once.<br>
+ * <br>
+ * The cache keeps a version which is incremented every time the chunk is modified. A payload is stored with the
+ * version read before the chunk data was copied, and only returned while the version is unchanged. The payload
+ * is shared by all sessions as a read only buffer.
+ */
+public class ChunkPayloadCache {
+	private final AtomicInteger version = new AtomicInteger();
+	private final AtomicReference<Entry> entry = new AtomicReference<Entry>();
+	private volatile int lastSize = -1;
+
+	/**
+	 * Gets the current version, which has to be read before the chunk data is copied for encoding
+	 * @return the version
+	 */
+	public int getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * Gets the cached payload
+	 * @param owner the codec which encoded the payload
+	 * @param version the payload was encoded for
+	 * @return a read only view of the payload, or null if there is no payload for the owner and version
+	 */
+	public ChannelBuffer get(Object owner, int version) {
+		Entry entry = this.entry.get();
+		if (entry == null || entry.owner != owner || entry.version != version || version != this.version.get()) {
+			return null;
+		}
+		return entry.payload.duplicate();
+	}
+
+	/**
+	 * Stores a payload, unless the chunk was modified since the given version was read
+	 * @param owner the codec which encoded the payload
+	 * @param version read before the chunk data was copied
+	 * @param payload the encoded payload, which must not be modified afterwards
+	 * @return a read only view of the payload
+	 */
+	public ChannelBuffer put(Object owner, int version, ChannelBuffer payload) {
+		Entry entry = new Entry(owner, version, ChannelBuffers.unmodifiableBuffer(payload));
+		lastSize = payload.readableBytes();
+		if (version == this.version.get()) {
+			this.entry.set(entry);
+			// The chunk may have been modified while storing
+			if (version != this.version.get()) {
+				this.entry.compareAndSet(entry, null);
+			}
+		}
+		return entry.payload.duplicate();
+	}
+
+	/**
+	 * Gets the size of the last payload which was stored, which is kept when the payload is invalidated
+	 * @return the size in bytes, or -1 if no payload was stored yet
+	 */
+	public int getLastSize() {
+		return lastSize;
+	}
+
+	/**
+	 * Drops the payload, should be called whenever the chunk is modified or unloaded
+	 */
+	public void invalidate() {
+		version.incrementAndGet();
+		entry.set(null);
+	}
+
+	private static class Entry {
+		private final Object owner;
+		private final int version;
+		private final ChannelBuffer payload;
+
+		private Entry(Object owner, int version, ChannelBuffer payload) {
+			this.owner = owner;
+			this.version = version;
+			this.payload = payload;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+import javax.management.ObjectName;
+
+import org.spout.api.Spout;
+import org.spout.api.protocol.MessageCodec;
+import org.spout.engine.protocol.builtin.SpoutProtocol;
+
+/**
+ * Network counters of the engine, by message opcode.<br>
+ * <br>
+ * Every thread adds to its own stripe of the counters, so the network threads and the region threads which send messages do not contend
+ * on the same values. Reading a counter sums the stripes.
+ */
+public class NetworkStats implements NetworkStatsMBean {
+	public static final NetworkStats INSTANCE = new NetworkStats();
+	public static final String OBJECT_NAME = "org.spout.engine:type=NetworkStats";
+	/**
+	 * The number of opcodes which are counted separately, larger opcodes share the counters of the last one
+	 */
+	public static final int OPCODES = 256;
+
+	public static enum Counter {
+		MESSAGES_OUT,
+		/**
+		 * Bytes of encoded messages, including the header
+		 */
+		BYTES_OUT,
+		/**
+		 * Time spent in the encoder, measured around the channel write
+		 */
+		ENCODE_NANOS,
+		MESSAGES_IN,
+		BYTES_IN,
+		/**
+		 * Time from reading the header until the decoded message reaches the session
+		 */
+		DECODE_NANOS,
+		/**
+		 * Bytes handed to the compressor by codecs which compress their payload
+		 */
+		UNCOMPRESSED_BYTES,
+		COMPRESSED_BYTES;
+	}
+
+	private static final Counter[] COUNTERS = Counter.values();
+	private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+	private static final int STRIPE_SIZE = OPCODES * COUNTERS.length;
+	private final AtomicLongArray counters = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+	private final ThreadLocal<long[]> decodeStart = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[] {-1, 0};
+		}
+	};
+
+	private static int index(int stripe, int opcode, Counter counter) {
+		if (opcode < 0 || opcode >= OPCODES) {
+			opcode = OPCODES - 1;
+		}
+		return stripe * STRIPE_SIZE + opcode * COUNTERS.length + counter.ordinal();
+	}
+
+	public void add(int opcode, Counter counter, long value) {
+		int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+		counters.addAndGet(index(stripe, opcode, counter), value);
+	}
+
+	/**
+	 * Records a message sent
+	 * @param opcode of the message
+	 * @param nanos spent encoding the message
+	 */
+	public void recordEncode(int opcode, long nanos) {
+		add(opcode, Counter.MESSAGES_OUT, 1);
+		add(opcode, Counter.ENCODE_NANOS, nanos);
+	}
+
+	/**
+	 * Records the compression of a payload
+	 * @param opcode of the message
+	 * @param uncompressed size of the payload
+	 * @param compressed size of the payload
+	 */
+	public void recordCompression(int opcode, int uncompressed, int compressed) {
+		add(opcode, Counter.UNCOMPRESSED_BYTES, uncompressed);
+		add(opcode, Counter.COMPRESSED_BYTES, compressed);
+	}
+
+	/**
+	 * Records a message header read by the current thread, the decode time is recorded by {@link #endDecode()}
+	 * @param opcode of the message
+	 * @param length of the message, including the header
+	 */
+	public void startDecode(int opcode, int length) {
+		add(opcode, Counter.MESSAGES_IN, 1);
+		add(opcode, Counter.BYTES_IN, length);
+		long[] start = decodeStart.get();
+		start[0] = opcode;
+		start[1] = System.nanoTime();
+	}
+
+	/**
+	 * Records the decode time of the last message header read by the current thread
+	 */
+	public void endDecode() {
+		long[] start = decodeStart.get();
+		if (start[0] != -1) {
+			add((int) start[0], Counter.DECODE_NANOS, System.nanoTime() - start[1]);
+			start[0] = -1;
+		}
+	}
+
+	public long get(int opcode, Counter counter) {
+		long value = 0;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			value += counters.get(index(stripe, opcode, counter));
+		}
+		return value;
+	}
+
+	public long getTotal(Counter counter) {
+		long value = 0;
+		for (int opcode = 0; opcode < OPCODES; opcode++) {
+			value += get(opcode, counter);
+		}
+		return value;
+	}
+
+	@Override
+	public long getMessagesOut() {
+		return getTotal(Counter.MESSAGES_OUT);
+	}
+
+	@Override
+	public long getBytesOut() {
+		return getTotal(Counter.BYTES_OUT);
+	}
+
+	@Override
+	public long getMessagesIn() {
+		return getTotal(Counter.MESSAGES_IN);
+	}
+
+	@Override
+	public long getBytesIn() {
+		return getTotal(Counter.BYTES_IN);
+	}
+
+	@Override
+	public double getEncodeMillis() {
+		return getTotal(Counter.ENCODE_NANOS) / 1000000.0;
+	}
+
+	@Override
+	public double getDecodeMillis() {
+		return getTotal(Counter.DECODE_NANOS) / 1000000.0;
+	}
+
+	@Override
+	public double getCompressionRatio() {
+		long uncompressed = getTotal(Counter.UNCOMPRESSED_BYTES);
+		return uncompressed == 0 ? 1.0 : getTotal(Counter.COMPRESSED_BYTES) / (double) uncompressed;
+	}
+
+	@Override
+	public String[] getOpcodeSummary() {
+		List<String> lines = new ArrayList<String>();
+		for (int opcode = 0; opcode < OPCODES; opcode++) {
+			long messagesOut = get(opcode, Counter.MESSAGES_OUT);
+			long messagesIn = get(opcode, Counter.MESSAGES_IN);
+			if (messagesOut == 0 && messagesIn == 0) {
+				continue;
+			}
+			lines.add(String.format("0x%02X %s: out %d msgs %d bytes %.2f ms, in %d msgs %d bytes %.2f ms", opcode, getCodecName(opcode),
+					messagesOut, get(opcode, Counter.BYTES_OUT), get(opcode, Counter.ENCODE_NANOS) / 1000000.0,
+					messagesIn, get(opcode, Counter.BYTES_IN), get(opcode, Counter.DECODE_NANOS) / 1000000.0));
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	/**
+	 * Gets the name of the message type of an opcode, as known by the builtin protocol
+	 * @param opcode of the message
+	 * @return the name, or "unknown"
+	 */
+	public static String getCodecName(int opcode) {
+		MessageCodec<?> codec = SpoutProtocol.INSTANCE.getCodecLookupService().find(opcode);
+		return codec == null ? "unknown" : codec.getType().getSimpleName();
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < counters.length(); i++) {
+			counters.set(i, 0);
+		}
+	}
+
+	/**
+	 * Registers the stats with the platform MBean server
+	 */
+	public void register() {
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			}
+		} catch (Exception e) {
+			Spout.getLogger().log(Level.WARNING, "Unable to register the network stats MBean", e);
+		}
+	}
+}
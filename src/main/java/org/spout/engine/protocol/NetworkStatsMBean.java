@@ -0,0 +1,58 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+/**
+ * The JMX view of the {@link NetworkStats} of the engine
+ */
+public interface NetworkStatsMBean {
+	public long getMessagesOut();
+
+	public long getBytesOut();
+
+	public long getMessagesIn();
+
+	public long getBytesIn();
+
+	public double getEncodeMillis();
+
+	public double getDecodeMillis();
+
+	/**
+	 * Gets the size of the compressed payloads relative to their uncompressed size
+	 * @return the ratio, 1 if nothing was compressed
+	 */
+	public double getCompressionRatio();
+
+	/**
+	 * Gets a line of counters for each opcode which was sent or received
+	 * @return the lines
+	 */
+	public String[] getOpcodeSummary();
+
+	public void reset();
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * Compresses message payloads with a level and strategy, payloads below a size threshold are written raw.<br>
+ * <br>
+ * Deflaters and inflaters hold native zlib state which is only released when they are ended or finalized.
+ * Each thread keeps one of each and resets it between payloads, instead of creating them per message.<br>
+ * <br>
+ * A payload is written as its length, followed by the compressed length and the compressed bytes, or {@link #RAW} and the raw bytes.
+ */
+public class PayloadCompression {
+	/**
+	 * Written in place of the compressed length when the payload is not compressed
+	 */
+	public static final int RAW = -1;
+	/**
+	 * The largest payload which is read
+	 */
+	public static final int MAX_LENGTH = 1 << 24;
+	private static final ThreadLocal<Compressors> COMPRESSORS = new ThreadLocal<Compressors>() {
+		@Override
+		protected Compressors initialValue() {
+			return new Compressors();
+		}
+	};
+	private final int level;
+	private final int strategy;
+	private final int threshold;
+
+	/**
+	 * @param level the deflate level, 0 to 9
+	 * @param strategy the deflate strategy, see {@link #getStrategy(String)}
+	 * @param threshold the payload length below which payloads are written raw
+	 */
+	public PayloadCompression(int level, int strategy, int threshold) {
+		if (level < 0 || level > 9) {
+			throw new IllegalArgumentException("Compression level must be between 0 and 9, not " + level);
+		}
+		this.level = level;
+		this.strategy = strategy;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Gets a deflate strategy by name
+	 * @param name of the strategy, "default", "filtered" or "huffman-only"
+	 * @return the strategy
+	 */
+	public static int getStrategy(String name) {
+		if ("filtered".equalsIgnoreCase(name)) {
+			return Deflater.FILTERED;
+		} else if ("huffman-only".equalsIgnoreCase(name)) {
+			return Deflater.HUFFMAN_ONLY;
+		} else {
+			return Deflater.DEFAULT_STRATEGY;
+		}
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public int getStrategy() {
+		return strategy;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Writes a payload, compressed unless it is below the threshold or does not get smaller
+	 * @param buffer to write to
+	 * @param data of the payload
+	 * @param offset of the payload in the array
+	 * @param length of the payload
+	 * @return the number of payload bytes written, excluding the lengths
+	 */
+	public int write(ChannelBuffer buffer, byte[] data, int offset, int length) {
+		buffer.writeInt(length);
+		if (length >= threshold && level > 0) {
+			Compressors compressors = COMPRESSORS.get();
+			Deflater deflater = compressors.deflater;
+			deflater.reset();
+			deflater.setLevel(level);
+			deflater.setStrategy(strategy);
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			byte[] compressed = compressors.getScratch(length);
+			int compressedLength = 0;
+			// Output which would be larger than the payload is dropped
+			while (!deflater.finished() && compressedLength < compressed.length) {
+				compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+			}
+			if (deflater.finished() && compressedLength < length) {
+				buffer.writeInt(compressedLength);
+				buffer.writeBytes(compressed, 0, compressedLength);
+				return compressedLength;
+			}
+		}
+		buffer.writeInt(RAW);
+		buffer.writeBytes(data, offset, length);
+		return length;
+	}
+
+	/**
+	 * Reads a payload written by {@link #write(ChannelBuffer, byte[], int, int)}
+	 * @param buffer to read from
+	 * @return the payload
+	 * @throws IOException if the payload is malformed
+	 */
+	public static byte[] read(ChannelBuffer buffer) throws IOException {
+		final int length = buffer.readInt();
+		final int compressedLength = buffer.readInt();
+		if (length < 0 || length > MAX_LENGTH || compressedLength < RAW || compressedLength > MAX_LENGTH) {
+			throw new IOException("Invalid payload length " + length + " (" + compressedLength + " compressed)");
+		}
+		byte[] data = new byte[length];
+		if (compressedLength == RAW) {
+			buffer.readBytes(data);
+			return data;
+		}
+		Compressors compressors = COMPRESSORS.get();
+		byte[] compressed = compressors.getScratch(compressedLength);
+		buffer.readBytes(compressed, 0, compressedLength);
+		Inflater inflater = compressors.inflater;
+		inflater.reset();
+		inflater.setInput(compressed, 0, compressedLength);
+		try {
+			int inflated = 0;
+			while (inflated < length && !inflater.finished()) {
+				int read = inflater.inflate(data, inflated, length - inflated);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				inflated += read;
+			}
+			if (inflated != length) {
+				throw new IOException("Payload inflated to " + inflated + " bytes instead of " + length);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed compressed payload", e);
+		}
+		return data;
+	}
+
+	private static class Compressors {
+		private final Deflater deflater = new Deflater();
+		private final Inflater inflater = new Inflater();
+		private byte[] scratch = new byte[0];
+
+		private byte[] getScratch(int length) {
+			if (scratch.length < length) {
+				scratch = new byte[length];
+			}
+			return scratch;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+
+/**
+ * Forwards the frames received from the backend server of a proxy session to the client without decoding them.<br>
+ * <br>
+ * Sits in front of the decoder of the aux channel and reads only the header of each frame, which is an unsigned short opcode and an int length.
+ * While the session is in passthrough mode, frames of message types which the proxy does not inspect are written to the client as slices
+ * of the received buffers. All other frames, and every frame before passthrough starts, are handed on to the decoder.
+ */
+public class ProxyPassthroughHandler extends SimpleChannelUpstreamHandler {
+	private static final int HEADER_SIZE = 6;
+	private final SpoutProxySession session;
+	/**
+	 * Received bytes which do not form a complete header yet
+	 */
+	private ChannelBuffer pending = null;
+	/**
+	 * The number of bytes left of the current frame
+	 */
+	private int remaining = 0;
+	/**
+	 * If the current frame is forwarded, rather than decoded
+	 */
+	private boolean forwarding = false;
+
+	public ProxyPassthroughHandler(SpoutProxySession session) {
+		this.session = session;
+	}
+
+	@Override
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		if (!(e.getMessage() instanceof ChannelBuffer)) {
+			ctx.sendUpstream(e);
+			return;
+		}
+		ChannelBuffer in = (ChannelBuffer) e.getMessage();
+		if (pending != null) {
+			in = ChannelBuffers.wrappedBuffer(pending, in);
+			pending = null;
+		}
+		while (in.readable()) {
+			if (remaining == 0) {
+				if (in.readableBytes() < HEADER_SIZE) {
+					pending = in.slice();
+					return;
+				}
+				final int opcode = in.getUnsignedShort(in.readerIndex());
+				final int length = in.getInt(in.readerIndex() + 2);
+				if (length < 0) {
+					// Malformed, leave the stream to the decoder
+					remaining = Integer.MAX_VALUE;
+					forwarding = false;
+					continue;
+				}
+				remaining = HEADER_SIZE + length;
+				forwarding = session.isPassthrough() && !session.needsDecode(opcode);
+				if (forwarding) {
+					NetworkStats.INSTANCE.add(opcode, NetworkStats.Counter.MESSAGES_IN, 1);
+					NetworkStats.INSTANCE.add(opcode, NetworkStats.Counter.BYTES_IN, remaining);
+				}
+			}
+			ChannelBuffer part = in.readSlice(Math.min(remaining, in.readableBytes()));
+			remaining -= part.readableBytes();
+			if (forwarding) {
+				session.forward(part);
+			} else {
+				Channels.fireMessageReceived(ctx, part, e.getRemoteAddress());
+			}
+		}
+	}
+}
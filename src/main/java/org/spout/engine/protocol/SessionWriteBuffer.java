@@ -0,0 +1,138 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.queue.BufferedWriteHandler;
+
+/**
+ * Holds back the encoded messages of a session, they are written to the socket as one composite buffer when the session is flushed.<br>
+ * <br>
+ * Sessions are flushed at the end of their pulse, once per tick. If the held back messages exceed the threshold they are flushed early.
+ * Messages keep the order they were written in, and nothing more is written while the channel is not writable.<br>
+ * <br>
+ * The buffer also counts the bytes of the session and how long messages are held back.
+ */
+public class SessionWriteBuffer extends BufferedWriteHandler {
+	private final AtomicInteger pendingBytes = new AtomicInteger();
+	private final AtomicInteger pendingMessages = new AtomicInteger();
+	/**
+	 * The time the oldest held back message was written, 0 if there is none
+	 */
+	private final AtomicLong pendingSince = new AtomicLong();
+	private final AtomicLong bytesOut = new AtomicLong();
+	private final AtomicLong bytesIn = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private final AtomicLong queuedNanos = new AtomicLong();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final int threshold;
+
+	/**
+	 * @param threshold the number of bytes held back after which the buffer is flushed early
+	 */
+	public SessionWriteBuffer(int threshold) {
+		super(true);
+		this.threshold = threshold;
+	}
+
+	@Override
+	public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		super.writeRequested(ctx, e);
+		pendingSince.compareAndSet(0, System.nanoTime());
+		pendingMessages.incrementAndGet();
+		Object message = e.getMessage();
+		if (message instanceof ChannelBuffer) {
+			int bytes = ((ChannelBuffer) message).readableBytes();
+			bytesOut.addAndGet(bytes);
+			if (pendingBytes.addAndGet(bytes) >= threshold) {
+				flush();
+			}
+		}
+	}
+
+	@Override
+	public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		Object message = e.getMessage();
+		if (message instanceof ChannelBuffer) {
+			bytesIn.addAndGet(((ChannelBuffer) message).readableBytes());
+		}
+		super.messageReceived(ctx, e);
+	}
+
+	@Override
+	public void flush(boolean consolidateOnFlush) {
+		pendingBytes.set(0);
+		int depth = pendingMessages.getAndSet(0);
+		long since = pendingSince.getAndSet(0);
+		if (depth > 0 && since != 0) {
+			flushes.incrementAndGet();
+			queuedNanos.addAndGet(System.nanoTime() - since);
+			int max;
+			while (depth > (max = maxDepth.get()) && !maxDepth.compareAndSet(max, depth)) {
+			}
+		}
+		super.flush(consolidateOnFlush);
+	}
+
+	public long getBytesOut() {
+		return bytesOut.get();
+	}
+
+	public long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	/**
+	 * Gets the number of messages currently held back
+	 * @return the depth of the queue
+	 */
+	public int getDepth() {
+		return pendingMessages.get();
+	}
+
+	/**
+	 * Gets the largest number of messages held back until a flush
+	 * @return the maximum depth of the queue
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Gets the average time the oldest message of a flush was held back
+	 * @return the time in milliseconds
+	 */
+	public double getAverageQueueMillis() {
+		long count = flushes.get();
+		return count == 0 ? 0.0 : queuedNanos.get() / (count * 1000000.0);
+	}
+}
@@ -36,6 +36,7 @@ import org.spout.api.protocol.PortBinding;
 import org.spout.api.protocol.Protocol;
 import org.spout.engine.SpoutClient;
 import org.spout.engine.entity.SpoutPlayer;
+import org.spout.engine.protocol.builtin.EntityTransformBaselines;
 import org.spout.engine.world.SpoutWorld;
 
 /**
@@ -43,6 +44,7 @@ import org.spout.engine.world.SpoutWorld;
  */
 public class SpoutClientSession extends SpoutSession<SpoutClient> {
 	private final AtomicReference<SpoutWorld> activeWorld = new AtomicReference<SpoutWorld>();
+	private final EntityTransformBaselines transformBaselines = new EntityTransformBaselines();
 	/**
 	 * Creates a new session.
 	 *
@@ -75,6 +77,14 @@ public class SpoutClientSession extends SpoutSession<SpoutClient> {
 		return activeWorld.get();
 	}
 
+	/**
+	 * Gets the entity transforms last received from the server, which batched transform updates are relative to
+	 * @return the transform baselines
+	 */
+	public EntityTransformBaselines getTransformBaselines() {
+		return transformBaselines;
+	}
+
 	@Override
 	public boolean disconnect(Object... reason) {
 		return disconnect(true, reason);
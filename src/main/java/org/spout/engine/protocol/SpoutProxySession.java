@@ -30,10 +30,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.spout.api.Spout;
 import org.spout.api.chat.ChatArguments;
+import org.spout.api.protocol.MessageCodec;
 import org.spout.api.protocol.Protocol;
 import org.spout.api.protocol.Message;
 import org.spout.api.protocol.proxy.ConnectionInfo;
@@ -99,6 +101,7 @@ public class SpoutProxySession extends SpoutServerSession<SpoutProxy> {
 
 	@Override
 	public void messageReceived(boolean upstream, Message message) {
+		NetworkStats.INSTANCE.endDecode();
 		if (message instanceof ConnectionInfoMessage) {
 			updateConnectionInfo(upstream, upstream, (ConnectionInfoMessage) message);
 		}
@@ -129,6 +132,37 @@ public class SpoutProxySession extends SpoutServerSession<SpoutProxy> {
 		super.messageReceived(upstream, message);
 	}
 
+	public boolean isPassthrough() {
+		return passthrough.get();
+	}
+
+	/**
+	 * Gets if messages with an opcode have to be decoded while passing through the proxy, because they are transformed or read by the proxy
+	 * @param opcode of the message
+	 * @return true if the message has to be decoded
+	 */
+	public boolean needsDecode(int opcode) {
+		Protocol protocol = getProtocol();
+		MessageCodec<?> codec = protocol == null ? null : protocol.getCodecLookupService().find(opcode);
+		if (codec == null) {
+			// Unknown to the proxy, the client may know it
+			return false;
+		}
+		Class<?> type = codec.getType();
+		return TransformableMessage.class.isAssignableFrom(type) || ConnectionInfoMessage.class.isAssignableFrom(type)
+				|| ProxyStartMessage.class.isAssignableFrom(type) || RedirectMessage.class.isAssignableFrom(type);
+	}
+
+	/**
+	 * Writes an encoded frame received from the server to the client as it is
+	 * @param frame the frame, or part of it
+	 */
+	public void forward(ChannelBuffer frame) {
+		if (channel.isOpen()) {
+			channel.write(frame);
+		}
+	}
+
 	@Override
 	public boolean disconnect(boolean kick, Object... reason) {
 		boolean result = super.disconnect(kick, reason);
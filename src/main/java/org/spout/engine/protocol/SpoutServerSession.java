@@ -96,6 +96,7 @@ public class SpoutServerSession<T extends SpoutServer> extends SpoutSession<T> {
 		}
 		if (kickMessage != null) {
 			channel.write(kickMessage).addListener(ChannelFutureListener.CLOSE);
+			flush();
 		} else {
 			channel.close();
 		}
@@ -32,11 +32,13 @@ import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import org.jboss.netty.channel.Channel;
 import org.spout.api.datatable.ManagedHashMap;
 import org.spout.api.datatable.SerializableMap;
 import org.spout.api.protocol.Message;
+import org.spout.api.protocol.MessageCodec;
 import org.spout.api.protocol.MessageHandler;
 import org.spout.api.protocol.NetworkSynchronizer;
 import org.spout.api.protocol.NullNetworkSynchronizer;
@@ -45,6 +47,7 @@ import org.spout.api.protocol.Session;
 import org.spout.engine.SpoutConfiguration;
 import org.spout.engine.SpoutEngine;
 import org.spout.engine.entity.SpoutPlayer;
+import org.spout.engine.protocol.builtin.SpoutNetworkSynchronizer;
 
 /**
  * A single connection to the server, which may or may not be associated with a
@@ -117,9 +120,11 @@ public abstract class SpoutSession<T extends SpoutEngine> implements Session {
 	private final ManagedHashMap dataMap;
 	
 	/**
-	 * 
+	 * Holds back the outgoing messages until the end of the tick, added once the session has a player
 	 */
-	private final AtomicReference<NetworkSendThread> networkSendThread = new AtomicReference<NetworkSendThread>();
+	private final SessionWriteBuffer writeBuffer = new SessionWriteBuffer(SpoutConfiguration.NETWORK_FLUSH_THRESHOLD.getInt());
+	private final AtomicLong messagesOut = new AtomicLong();
+	private final AtomicLong messagesIn = new AtomicLong();
 
 	/**
 	 * Default uncaught exception handler
@@ -182,14 +187,30 @@ public abstract class SpoutSession<T extends SpoutEngine> implements Session {
 		if (!this.player.compareAndSet(null, player)) {
 			throw new IllegalStateException();
 		}
-		if (!this.networkSendThread.compareAndSet(null, NetworkSendThreadPool.getNetworkThread(player.getId()))) {
-			throw new IllegalStateException();
+		if (channel.getPipeline().get(SessionWriteBuffer.class) == null) {
+			// Closest to the socket, so it holds back the encoded messages
+			channel.getPipeline().addFirst("writeBuffer", writeBuffer);
+		}
+	}
+
+	/**
+	 * Writes the messages held back since the last flush to the socket
+	 */
+	public void flush() {
+		if (channel.getPipeline().get(SessionWriteBuffer.class) != null) {
+			writeBuffer.flush();
 		}
 	}
 
 	public void pulse() {
 		Message message;
 
+		NetworkSynchronizer synchronizer = this.synchronizer.get();
+		if (synchronizer instanceof SpoutNetworkSynchronizer) {
+			// Entities are synced during the snapshot stage, send the batched transforms of the last tick
+			((SpoutNetworkSynchronizer) synchronizer).flush();
+		}
+
 		if (state == State.GAME) {
 			while ((message = sendQueue.poll()) != null) {
 				send(false, true, message);
@@ -202,6 +223,8 @@ public abstract class SpoutSession<T extends SpoutEngine> implements Session {
 		while ((message = fromUpMessageQueue.poll()) != null) {
 			handleMessage(true, message);
 		}
+
+		flush();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -229,12 +252,14 @@ public abstract class SpoutSession<T extends SpoutEngine> implements Session {
 		try {
 			if (force || this.state == State.GAME) {
 				if (channel.isOpen()) {
-					NetworkSendThread sendThread = networkSendThread.get();
-					if (sendThread == null) {
-						channel.write(message);
-					} else {
-						sendThread.send(this, channel, message);
+					// Messages are encoded by the write, on the calling thread
+					long start = System.nanoTime();
+					channel.write(message);
+					MessageCodec<?> codec = protocol.get().getCodecLookupService().find(message.getClass());
+					if (codec != null) {
+						NetworkStats.INSTANCE.recordEncode(codec.getOpcode(), System.nanoTime() - start);
 					}
+					messagesOut.incrementAndGet();
 				}
 			} else {
 				sendQueue.add(message);
@@ -281,6 +306,8 @@ public abstract class SpoutSession<T extends SpoutEngine> implements Session {
 	 */
 	@Override
 	public void messageReceived(boolean upstream, Message message) {
+		NetworkStats.INSTANCE.endDecode();
+		messagesIn.incrementAndGet();
 		if (message.isAsync()) {
 			handleMessage(upstream, message);
 		}
@@ -319,6 +346,34 @@ public abstract class SpoutSession<T extends SpoutEngine> implements Session {
 		return channel.isOpen();
 	}
 
+	/**
+	 * Gets if the channel can take more writes without queuing them in memory
+	 * @return true if the channel is writable
+	 */
+	public boolean isWritable() {
+		return channel.isWritable();
+	}
+
+	public long getMessagesOut() {
+		return messagesOut.get();
+	}
+
+	public long getMessagesIn() {
+		return messagesIn.get();
+	}
+
+	/**
+	 * Gets the number of messages waiting to be sent, queued until the session is in game or held back until the next flush
+	 * @return the depth of the send queue
+	 */
+	public int getSendQueueDepth() {
+		return sendQueue.size() + writeBuffer.getDepth();
+	}
+
+	public SessionWriteBuffer getWriteBuffer() {
+		return writeBuffer;
+	}
+
 	@Override
 	public SerializableMap getDataMap() {
 		return dataMap;
@@ -0,0 +1,97 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TShortHashSet;
+
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.util.hashing.Int21TripleHashed;
+import org.spout.engine.protocol.builtin.message.MultiBlockUpdateMessage;
+
+/**
+ * The blocks changed since the last flush, by chunk.<br>
+ * Blocks are stored as packed local positions, see {@link MultiBlockUpdateMessage#pack(int, int, int)}, so repeated changes of a block are sent once.
+ */
+public class BlockChangeSet {
+	private final TLongObjectHashMap<Changes> changes = new TLongObjectHashMap<Changes>();
+
+	public synchronized void add(Chunk c, int x, int y, int z) {
+		long key = Int21TripleHashed.key(c.getX(), c.getY(), c.getZ());
+		Changes chunkChanges = changes.get(key);
+		if (chunkChanges == null) {
+			chunkChanges = new Changes(c);
+			changes.put(key, chunkChanges);
+		}
+		chunkChanges.blocks.add(MultiBlockUpdateMessage.pack(x, y, z));
+	}
+
+	/**
+	 * Drops the changes of a chunk
+	 * @param x coordinate of the chunk
+	 * @param y coordinate of the chunk
+	 * @param z coordinate of the chunk
+	 */
+	public synchronized void remove(int x, int y, int z) {
+		changes.remove(Int21TripleHashed.key(x, y, z));
+	}
+
+	public synchronized void clear() {
+		changes.clear();
+	}
+
+	/**
+	 * Gets and clears the changes recorded since the last call
+	 * @return the changes, by chunk
+	 */
+	public synchronized Changes[] drain() {
+		Changes[] drained = changes.values(new Changes[changes.size()]);
+		changes.clear();
+		return drained;
+	}
+
+	public static class Changes {
+		private final Chunk chunk;
+		private final TShortHashSet blocks = new TShortHashSet();
+
+		private Changes(Chunk chunk) {
+			this.chunk = chunk;
+		}
+
+		public Chunk getChunk() {
+			return chunk;
+		}
+
+		/**
+		 * Gets the packed local positions of the changed blocks
+		 * @return the positions
+		 */
+		public short[] getPositions() {
+			return blocks.toArray();
+		}
+	}
+}
@@ -141,6 +141,96 @@ public class ChannelBufferUtils {
 		buffer.writeFloat(quaternion.getW());
 	}
 
+	private static final float ROTATION_RANGE = (float) Math.sqrt(0.5);
+	private static final int ROTATION_BITS = 10;
+	private static final int ROTATION_MASK = (1 << ROTATION_BITS) - 1;
+	private static final int ROTATION_HALF = ROTATION_MASK >> 1;
+
+	/**
+	 * Packs a rotation into 32 bits using the smallest three encoding.<br>
+	 * The largest component is dropped and rebuilt from the unit length, its index is stored in the top two bits.
+	 * The remaining components lie within +-sqrt(1/2) and are stored as 10 bit values, zero is exact.
+	 * @param rotation to pack
+	 * @return the packed rotation
+	 */
+	public static int packRotation(Quaternion rotation) {
+		float[] c = {rotation.getX(), rotation.getY(), rotation.getZ(), rotation.getW()};
+		float length = (float) Math.sqrt(c[0] * c[0] + c[1] * c[1] + c[2] * c[2] + c[3] * c[3]);
+		if (length == 0.0f) {
+			c[3] = length = 1.0f;
+		}
+		int largest = 0;
+		for (int i = 1; i < 4; i++) {
+			if (Math.abs(c[i]) > Math.abs(c[largest])) {
+				largest = i;
+			}
+		}
+		// q and -q are the same rotation, flip so that the dropped component is positive
+		float scale = c[largest] < 0 ? -1.0f / length : 1.0f / length;
+		int packed = largest;
+		for (int i = 0; i < 4; i++) {
+			if (i != largest) {
+				int value = Math.round(c[i] * scale / ROTATION_RANGE * ROTATION_HALF) + ROTATION_HALF;
+				packed = (packed << ROTATION_BITS) | Math.max(0, Math.min(ROTATION_HALF << 1, value));
+			}
+		}
+		return packed;
+	}
+
+	public static Quaternion unpackRotation(int packed) {
+		float[] c = new float[4];
+		int largest = packed >>> (ROTATION_BITS * 3);
+		float sum = 0.0f;
+		for (int i = 3; i >= 0; i--) {
+			if (i != largest) {
+				c[i] = ((packed & ROTATION_MASK) - ROTATION_HALF) / (float) ROTATION_HALF * ROTATION_RANGE;
+				sum += c[i] * c[i];
+				packed >>>= ROTATION_BITS;
+			}
+		}
+		c[largest] = (float) Math.sqrt(Math.max(0.0f, 1.0f - sum));
+		return new Quaternion(c[0], c[1], c[2], c[3], true);
+	}
+
+	/**
+	 * Writes an int using 7 bits per byte, small values take a single byte
+	 * @param buffer to write to
+	 * @param value to write, negative values always take five bytes
+	 */
+	public static void writeVarInt(ChannelBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer.writeByte(value);
+	}
+
+	public static int readVarInt(ChannelBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("VarInt is longer than 5 bytes");
+	}
+
+	/**
+	 * Writes a signed int as a var int, mapping small negative values to small positive ones
+	 * @param buffer to write to
+	 * @param value to write
+	 */
+	public static void writeSignedVarInt(ChannelBuffer buffer, int value) {
+		writeVarInt(buffer, (value << 1) ^ (value >> 31));
+	}
+
+	public static int readSignedVarInt(ChannelBuffer buffer) {
+		int value = readVarInt(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
 	private static final byte ARGUMENT_TYPE_STYLE = 0x0, ARGUMENT_TYPE_STRING = 0x1;
 
 	public static List<Object> readCommandArguments(ChannelBuffer buffer) {
@@ -0,0 +1,161 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.math.Quaternion;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * The chunks waiting to be sent to a player.<br>
+ * <br>
+ * Every tick the chunks are sent nearest first, favouring the direction the player is facing, until the byte budget of the tick is spent.
+ * The budget halves while the channel is not writable and grows back while it is used up. Chunks which leave the view
+ * of the player before they are sent are cancelled.
+ */
+public class ChunkSendQueue {
+	private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			return Float.compare(a.score, b.score);
+		}
+	};
+	private final TLongObjectHashMap<Chunk> pending = new TLongObjectHashMap<Chunk>();
+	private final int maxBudget;
+	private final int minBudget;
+	private int budget;
+	private boolean exhausted = false;
+
+	/**
+	 * @param maxBudget the maximum number of bytes sent per tick
+	 * @param minBudget the number of bytes the budget does not drop below
+	 */
+	public ChunkSendQueue(int maxBudget, int minBudget) {
+		this.maxBudget = Math.max(maxBudget, minBudget);
+		this.minBudget = minBudget;
+		this.budget = this.maxBudget;
+	}
+
+	public synchronized void add(Chunk c) {
+		pending.put(Int21TripleHashed.key(c.getX(), c.getY(), c.getZ()), c);
+	}
+
+	/**
+	 * Cancels a chunk
+	 * @param x coordinate of the chunk
+	 * @param y coordinate of the chunk
+	 * @param z coordinate of the chunk
+	 * @return true if the chunk was waiting to be sent
+	 */
+	public synchronized boolean remove(int x, int y, int z) {
+		return pending.remove(Int21TripleHashed.key(x, y, z)) != null;
+	}
+
+	public synchronized boolean contains(int x, int y, int z) {
+		return pending.containsKey(Int21TripleHashed.key(x, y, z));
+	}
+
+	public synchronized void clear() {
+		pending.clear();
+	}
+
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	/**
+	 * Starts a tick, adapting the budget to the state of the channel
+	 * @param writable if the channel is writable
+	 * @return the number of bytes which can be sent this tick
+	 */
+	public synchronized int nextBudget(boolean writable) {
+		if (!writable) {
+			budget = Math.max(minBudget, budget >> 1);
+		} else if (exhausted) {
+			budget = Math.min(maxBudget, budget + (budget >> 2) + 1);
+		}
+		return budget;
+	}
+
+	/**
+	 * Records if the budget of the tick was used up, which allows it to grow on the next tick
+	 * @param exhausted if chunks were left waiting because of the budget
+	 */
+	public synchronized void setExhausted(boolean exhausted) {
+		this.exhausted = exhausted;
+	}
+
+	/**
+	 * Gets the waiting chunks in the order they should be sent
+	 * @param position of the player
+	 * @param rotation of the player
+	 * @return the chunks, first to be sent first
+	 */
+	public synchronized Chunk[] getOrdered(Point position, Quaternion rotation) {
+		// Rotated forward axis (0, 0, 1)
+		float qx = rotation.getX(), qy = rotation.getY(), qz = rotation.getZ(), qw = rotation.getW();
+		float fx = 2.0f * (qx * qz + qw * qy);
+		float fy = 2.0f * (qy * qz - qw * qx);
+		float fz = 1.0f - 2.0f * (qx * qx + qy * qy);
+		float half = Chunk.BLOCKS.SIZE / 2.0f;
+
+		Entry[] entries = new Entry[pending.size()];
+		int i = 0;
+		for (Chunk c : pending.valueCollection()) {
+			float dx = c.getBlockX() + half - position.getX();
+			float dy = c.getBlockY() + half - position.getY();
+			float dz = c.getBlockZ() + half - position.getZ();
+			float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+			// Chunks in front of the player count as up to half as far away, chunks behind as up to twice as far
+			float cos = distance < Chunk.BLOCKS.SIZE ? 1.0f : (dx * fx + dy * fy + dz * fz) / distance;
+			entries[i++] = new Entry(c, distance * (1.25f - 0.75f * cos));
+		}
+		Arrays.sort(entries, ORDER);
+
+		Chunk[] ordered = new Chunk[entries.length];
+		for (i = 0; i < entries.length; i++) {
+			ordered[i] = entries[i].chunk;
+		}
+		return ordered;
+	}
+
+	private static class Entry {
+		private final Chunk chunk;
+		private final float score;
+
+		private Entry(Chunk chunk, float score) {
+			this.chunk = chunk;
+			this.score = score;
+		}
+	}
+}
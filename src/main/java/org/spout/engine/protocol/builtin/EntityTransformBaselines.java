@@ -0,0 +1,172 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.UUID;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.geo.discrete.Transform;
+import org.spout.api.math.Quaternion;
+import org.spout.api.math.Vector3;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage.Entry;
+
+/**
+ * The last transform sent for each entity over a session, and the session scoped world ids.<br>
+ * Both ends of a connection keep one, the server to encode {@link EntityTransformBatchMessage} entries and the client to resolve them.
+ * The connection is ordered and reliable, so the last sent state is also the state the client holds.
+ */
+public class EntityTransformBaselines {
+	private static final int X = 0, Y = 1, Z = 2, ROTATION = 3, SCALE_X = 4, SCALE_Y = 5, SCALE_Z = 6;
+	private final TIntObjectHashMap<int[]> baselines = new TIntObjectHashMap<int[]>();
+	private final TObjectIntHashMap<UUID> worldIds = new TObjectIntHashMap<UUID>();
+	private final TIntObjectHashMap<UUID> worlds = new TIntObjectHashMap<UUID>();
+
+	/**
+	 * Creates the entry for the transform of an entity and makes it the new baseline
+	 * @param entityId of the entity
+	 * @param transform of the entity, already repositioned
+	 * @return the entry, or null if nothing changed at the sent precision
+	 */
+	public synchronized Entry encode(int entityId, Transform transform) {
+		Vector3 position = transform.getPosition();
+		Vector3 scale = transform.getScale();
+		int[] next = new int[7];
+		next[X] = EntityTransformBatchMessage.quantize(position.getX());
+		next[Y] = EntityTransformBatchMessage.quantize(position.getY());
+		next[Z] = EntityTransformBatchMessage.quantize(position.getZ());
+		next[ROTATION] = ChannelBufferUtils.packRotation(transform.getRotation());
+		next[SCALE_X] = Float.floatToIntBits(scale.getX());
+		next[SCALE_Y] = Float.floatToIntBits(scale.getY());
+		next[SCALE_Z] = Float.floatToIntBits(scale.getZ());
+
+		int[] last = baselines.put(entityId, next);
+		if (last == null) {
+			return new Entry(entityId, EntityTransformBatchMessage.POSITION_ABSOLUTE | EntityTransformBatchMessage.ROTATION | EntityTransformBatchMessage.SCALE,
+					next[X], next[Y], next[Z], next[ROTATION], scale);
+		}
+
+		int flags = 0;
+		int dx = next[X] - last[X], dy = next[Y] - last[Y], dz = next[Z] - last[Z];
+		if (dx != 0 || dy != 0 || dz != 0) {
+			flags |= EntityTransformBatchMessage.POSITION_DELTA;
+		}
+		if (next[ROTATION] != last[ROTATION]) {
+			flags |= EntityTransformBatchMessage.ROTATION;
+		}
+		if (next[SCALE_X] != last[SCALE_X] || next[SCALE_Y] != last[SCALE_Y] || next[SCALE_Z] != last[SCALE_Z]) {
+			flags |= EntityTransformBatchMessage.SCALE;
+		}
+		if (flags == 0) {
+			return null;
+		}
+		return new Entry(entityId, flags, dx, dy, dz, next[ROTATION], scale);
+	}
+
+	/**
+	 * Applies an entry to the baseline of its entity
+	 * @param entry to apply
+	 * @param world the entity is in
+	 * @return the new transform of the entity, or null if the entry is a delta to an unknown baseline
+	 */
+	public synchronized Transform decode(Entry entry, World world) {
+		int[] baseline = baselines.get(entry.getEntityId());
+		if (baseline == null) {
+			if (!entry.has(EntityTransformBatchMessage.POSITION_ABSOLUTE)) {
+				return null;
+			}
+			baseline = new int[7];
+			baseline[ROTATION] = ChannelBufferUtils.packRotation(Quaternion.IDENTITY);
+			baseline[SCALE_X] = baseline[SCALE_Y] = baseline[SCALE_Z] = Float.floatToIntBits(1.0f);
+			baselines.put(entry.getEntityId(), baseline);
+		}
+		if (entry.has(EntityTransformBatchMessage.POSITION_ABSOLUTE)) {
+			baseline[X] = entry.getX();
+			baseline[Y] = entry.getY();
+			baseline[Z] = entry.getZ();
+		} else if (entry.has(EntityTransformBatchMessage.POSITION_DELTA)) {
+			baseline[X] += entry.getX();
+			baseline[Y] += entry.getY();
+			baseline[Z] += entry.getZ();
+		}
+		if (entry.has(EntityTransformBatchMessage.ROTATION)) {
+			baseline[ROTATION] = entry.getRotation();
+		}
+		if (entry.has(EntityTransformBatchMessage.SCALE)) {
+			baseline[SCALE_X] = Float.floatToIntBits(entry.getScale().getX());
+			baseline[SCALE_Y] = Float.floatToIntBits(entry.getScale().getY());
+			baseline[SCALE_Z] = Float.floatToIntBits(entry.getScale().getZ());
+		}
+		Point position = new Point(world,
+				EntityTransformBatchMessage.dequantize(baseline[X]),
+				EntityTransformBatchMessage.dequantize(baseline[Y]),
+				EntityTransformBatchMessage.dequantize(baseline[Z]));
+		Vector3 scale = new Vector3(Float.intBitsToFloat(baseline[SCALE_X]), Float.intBitsToFloat(baseline[SCALE_Y]), Float.intBitsToFloat(baseline[SCALE_Z]));
+		return new Transform(position, ChannelBufferUtils.unpackRotation(baseline[ROTATION]), scale);
+	}
+
+	/**
+	 * Forgets the baseline of an entity, the next entry for it is sent in full
+	 * @param entityId of the entity
+	 */
+	public synchronized void forget(int entityId) {
+		baselines.remove(entityId);
+	}
+
+	/**
+	 * Gets the session scoped id of a world
+	 * @param uid of the world
+	 * @return the id, or -1 if the world has not been declared yet
+	 */
+	public synchronized int getWorldId(UUID uid) {
+		return worldIds.containsKey(uid) ? worldIds.get(uid) : -1;
+	}
+
+	/**
+	 * Assigns the next free session scoped id to a world
+	 * @param uid of the world
+	 * @return the id
+	 */
+	public synchronized int declareWorld(UUID uid) {
+		int id = worlds.size();
+		setWorld(id, uid);
+		return id;
+	}
+
+	public synchronized void setWorld(int id, UUID uid) {
+		worldIds.put(uid, id);
+		worlds.put(id, uid);
+	}
+
+	public synchronized UUID getWorld(int id) {
+		return worlds.get(id);
+	}
+}
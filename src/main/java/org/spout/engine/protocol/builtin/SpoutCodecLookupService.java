@@ -35,7 +35,9 @@ import org.spout.engine.protocol.builtin.codec.CommandCodec;
 import org.spout.engine.protocol.builtin.codec.CuboidBlockUpdateCodec;
 import org.spout.engine.protocol.builtin.codec.EntityDatatableCodec;
 import org.spout.engine.protocol.builtin.codec.EntityPositionCodec;
+import org.spout.engine.protocol.builtin.codec.EntityTransformBatchCodec;
 import org.spout.engine.protocol.builtin.codec.LoginCodec;
+import org.spout.engine.protocol.builtin.codec.MultiBlockUpdateCodec;
 import org.spout.engine.protocol.builtin.codec.PlayerInputCodec;
 import org.spout.engine.protocol.builtin.codec.RemoveEntityCodec;
 import org.spout.engine.protocol.builtin.codec.StringMapCodec;
@@ -61,6 +63,8 @@ public class SpoutCodecLookupService extends CodecLookupService {
 			/* 0x0A */ bind(CuboidBlockUpdateCodec.class);
 			/* 0x0B */ bind(ClickCodec.class);
 			/* 0x0C */ bind(PlayerInputCodec.class);
+			/* 0x0D */ bind(EntityTransformBatchCodec.class);
+			/* 0x0E */ bind(MultiBlockUpdateCodec.class);
 		} catch (Throwable t) {
 			throw new ExceptionInInitializerError(t);
 		}
@@ -35,7 +35,9 @@ import org.spout.engine.protocol.builtin.message.CommandMessage;
 import org.spout.engine.protocol.builtin.message.CuboidBlockUpdateMessage;
 import org.spout.engine.protocol.builtin.message.EntityDatatableMessage;
 import org.spout.engine.protocol.builtin.message.EntityPositionMessage;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage;
 import org.spout.engine.protocol.builtin.message.LoginMessage;
+import org.spout.engine.protocol.builtin.message.MultiBlockUpdateMessage;
 import org.spout.engine.protocol.builtin.message.PlayerInputMessage;
 import org.spout.engine.protocol.builtin.message.RemoveEntityMessage;
 import org.spout.engine.protocol.builtin.message.StringMapMessage;
@@ -48,7 +50,9 @@ import org.spout.engine.protocol.builtin.handler.CommandMessageHandler;
 import org.spout.engine.protocol.builtin.handler.CuboidBlockUpdateMessageHandler;
 import org.spout.engine.protocol.builtin.handler.EntityDatatableMessageHandler;
 import org.spout.engine.protocol.builtin.handler.EntityPositionMessageHandler;
+import org.spout.engine.protocol.builtin.handler.EntityTransformBatchMessageHandler;
 import org.spout.engine.protocol.builtin.handler.LoginMessageHandler;
+import org.spout.engine.protocol.builtin.handler.MultiBlockUpdateMessageHandler;
 import org.spout.engine.protocol.builtin.handler.PlayerInputMessageHandler;
 import org.spout.engine.protocol.builtin.handler.RemoveEntityMessageHandler;
 import org.spout.engine.protocol.builtin.handler.StringMapMessageHandler;
@@ -70,6 +74,8 @@ public class SpoutHandlerLookupService extends HandlerLookupService {
 			bind(CuboidBlockUpdateMessage.class, CuboidBlockUpdateMessageHandler.class);
 			bind(ClickMessage.class, ClickMessageHandler.class);
 			bind(PlayerInputMessage.class, PlayerInputMessageHandler.class);
+			bind(EntityTransformBatchMessage.class, EntityTransformBatchMessageHandler.class);
+			bind(MultiBlockUpdateMessage.class, MultiBlockUpdateMessageHandler.class);
 		} catch (Exception e) {
 			throw new ExceptionInInitializerError(e);
 		}
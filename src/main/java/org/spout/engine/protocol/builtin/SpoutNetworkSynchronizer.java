@@ -26,13 +26,26 @@
  */
 package org.spout.engine.protocol.builtin;
 
+import gnu.trove.map.hash.TIntObjectHashMap;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.spout.api.entity.Entity;
+import org.spout.api.geo.LoadOption;
 import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
 import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.cuboid.ChunkSnapshot;
+import org.spout.api.geo.cuboid.ChunkSnapshot.EntityType;
+import org.spout.api.geo.cuboid.ChunkSnapshot.ExtraData;
+import org.spout.api.geo.cuboid.ChunkSnapshot.SnapshotType;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.geo.discrete.Transform;
 import org.spout.api.material.BlockMaterial;
@@ -42,24 +55,127 @@ import org.spout.api.protocol.EntityProtocol;
 import org.spout.api.protocol.Message;
 import org.spout.api.protocol.NetworkSynchronizer;
 import org.spout.api.protocol.Session;
+import org.spout.engine.SpoutConfiguration;
+import org.spout.engine.protocol.ChunkPayloadCache;
+import org.spout.engine.protocol.SpoutSession;
+import org.spout.engine.protocol.builtin.codec.ChunkDataCodec;
+import org.spout.engine.protocol.builtin.codec.MultiBlockUpdateCodec;
 import org.spout.engine.protocol.builtin.message.BlockUpdateMessage;
 import org.spout.engine.protocol.builtin.message.ChunkDataMessage;
 import org.spout.engine.protocol.builtin.message.EntityPositionMessage;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage;
+import org.spout.engine.protocol.builtin.message.MultiBlockUpdateMessage;
 import org.spout.engine.protocol.builtin.message.WorldChangeMessage;
+import org.spout.engine.world.SpoutChunk;
 
 public class SpoutNetworkSynchronizer extends NetworkSynchronizer {
+	/**
+	 * The assumed size of a chunk whose encoded payload is not known yet
+	 */
+	private static final int ESTIMATED_CHUNK_SIZE = 4096;
+	private final ChunkSendQueue chunkQueue = new ChunkSendQueue(SpoutConfiguration.CHUNK_SEND_BUDGET.getInt(), ESTIMATED_CHUNK_SIZE);
+	/**
+	 * Blocks changed this tick, sent on {@link #flush()}
+	 */
+	private final BlockChangeSet blockChanges = new BlockChangeSet();
+	private final EntityTransformBaselines baselines = new EntityTransformBaselines();
+	/**
+	 * Transforms of the entities updated this tick, by world, sent as one batch per world on {@link #flush()}
+	 */
+	private final Map<UUID, TIntObjectHashMap<Transform>> pendingTransforms = new HashMap<UUID, TIntObjectHashMap<Transform>>();
+
 	public SpoutNetworkSynchronizer(Session session) {
 		super(session, 3);
 	}
 
 	@Override
 	public Collection<Chunk> sendChunk(Chunk c) {
-		session.send(false, new ChunkDataMessage(c.getSnapshot()));
+		// Chunks are sent on finalizeTick, nearest first and within the budget of the tick
+		chunkQueue.add(c);
 		return null;
 	}
 
+	@Override
+	public void finalizeTick() {
+		super.finalizeTick();
+		sendQueuedChunks();
+	}
+
+	private void sendQueuedChunks() {
+		if (player == null || chunkQueue.size() == 0) {
+			return;
+		}
+		boolean writable = !(session instanceof SpoutSession) || ((SpoutSession<?>) session).isWritable();
+		int budget = chunkQueue.nextBudget(writable);
+		Transform transform = player.getTransform().getTransform();
+		Chunk[] ordered = chunkQueue.getOrdered(transform.getPosition(), transform.getRotation());
+		int sent = 0;
+		List<Chunk> notLoaded = null;
+		for (Chunk c : ordered) {
+			// At least one chunk is sent every tick
+			if (budget <= 0 && sent > 0) {
+				break;
+			}
+			chunkQueue.remove(c.getX(), c.getY(), c.getZ());
+			// The queued chunk may have been unloaded and loaded again since it was queued
+			if (!c.isLoaded()) {
+				Chunk current = c.getWorld().getChunk(c.getX(), c.getY(), c.getZ(), LoadOption.NO_LOAD);
+				if (current == null || !current.isLoaded()) {
+					// Already counted as sent by the base synchronizer, so it is kept until it is loaded or freed
+					if (notLoaded == null) {
+						notLoaded = new ArrayList<Chunk>();
+					}
+					notLoaded.add(c);
+					continue;
+				}
+				c = current;
+			}
+			budget -= writeChunk(c);
+			sent++;
+		}
+		if (notLoaded != null) {
+			for (Chunk c : notLoaded) {
+				chunkQueue.add(c);
+			}
+		}
+		chunkQueue.setExhausted(budget <= 0 && chunkQueue.size() > 0);
+	}
+
+	/**
+	 * Sends a chunk
+	 * @param c the chunk
+	 * @return the size of the chunk in bytes, estimated if not known
+	 */
+	private int writeChunk(Chunk c) {
+		if (c instanceof SpoutChunk) {
+			// The version has to be read before the snapshot is taken, the payload is shared with all sessions
+			ChunkPayloadCache cache = ((SpoutChunk) c).getPayloadCache();
+			int version = cache.getVersion();
+			ChannelBuffer payload = cache.get(ChunkDataCodec.class, version);
+			if (payload != null) {
+				session.send(false, new ChunkDataMessage(c.getX(), c.getY(), c.getZ(), payload));
+			} else {
+				ChunkSnapshot snapshot = ((SpoutChunk) c).getSnapshot(SnapshotType.BOTH, EntityType.NO_ENTITIES, ExtraData.NO_EXTRA_DATA, true);
+				session.send(false, new ChunkDataMessage(snapshot, cache, version));
+				// The codec has encoded the payload, unless the message is still queued
+				payload = cache.get(ChunkDataCodec.class, version);
+			}
+			return payload == null ? ESTIMATED_CHUNK_SIZE : payload.readableBytes();
+		}
+		session.send(false, new ChunkDataMessage(c.getSnapshot()));
+		return ESTIMATED_CHUNK_SIZE;
+	}
+
 	@Override
 	protected void freeChunk(Point p) {
+		final int x = p.getBlockX() >> Chunk.BLOCKS.BITS;
+		final int y = p.getBlockY() >> Chunk.BLOCKS.BITS;
+		final int z = p.getBlockZ() >> Chunk.BLOCKS.BITS;
+		blockChanges.remove(x, y, z);
+		// A chunk that leaves view before it was sent is cancelled
+		if (chunkQueue.remove(x, y, z)) {
+			return;
+		}
 		session.send(false, new ChunkDataMessage(p.getBlockX(), p.getBlockY(), p.getBlockZ()));
 	}
 
@@ -70,12 +186,71 @@ public class SpoutNetworkSynchronizer extends NetworkSynchronizer {
 
 	@Override
 	protected void worldChanged(World world) {
+		chunkQueue.clear();
+		blockChanges.clear();
 		session.send(false, new WorldChangeMessage(world, world.getComponentHolder().getData()));
 	}
 
 	@Override
 	public void updateBlock(Chunk chunk, int x, int y, int z, BlockMaterial material, short data) {
-		session.send(false, new BlockUpdateMessage(chunk.getBlock(x, y, z)));
+		if (chunkQueue.contains(chunk.getX(), chunk.getY(), chunk.getZ())) {
+			// The chunk is sent with the change
+			return;
+		}
+		blockChanges.add(chunk, x, y, z);
+	}
+
+	/**
+	 * Sends the blocks changed since the last flush.<br>
+	 * A single change is sent as a {@link BlockUpdateMessage}, several as a {@link MultiBlockUpdateMessage},
+	 * unless that would be larger than resending the whole chunk.
+	 */
+	private void flushBlockChanges() {
+		for (BlockChangeSet.Changes changes : blockChanges.drain()) {
+			Chunk c = changes.getChunk();
+			if (!c.isLoaded() || chunkQueue.contains(c.getX(), c.getY(), c.getZ())) {
+				continue;
+			}
+			short[] positions = changes.getPositions();
+			if (positions.length == 1) {
+				session.send(false, new BlockUpdateMessage(getChangedBlock(c, positions[0])));
+			} else if (MultiBlockUpdateCodec.HEADER_SIZE + positions.length * MultiBlockUpdateCodec.BLOCK_SIZE >= getChunkSize(c)) {
+				chunkQueue.add(c);
+			} else {
+				short[] types = new short[positions.length];
+				short[] data = new short[positions.length];
+				byte[] blockLight = new byte[positions.length];
+				byte[] skyLight = new byte[positions.length];
+				for (int i = 0; i < positions.length; i++) {
+					Block block = getChangedBlock(c, positions[i]);
+					types[i] = block.getMaterial().getId();
+					data[i] = block.getData();
+					blockLight[i] = block.getBlockLight();
+					skyLight[i] = block.getSkyLightRaw();
+				}
+				session.send(false, new MultiBlockUpdateMessage(c.getX(), c.getY(), c.getZ(), positions, types, data, blockLight, skyLight));
+			}
+		}
+	}
+
+	private Block getChangedBlock(Chunk c, short position) {
+		return c.getBlock(c.getBlockX() + MultiBlockUpdateMessage.unpackX(position), c.getBlockY() + MultiBlockUpdateMessage.unpackY(position), c.getBlockZ() + MultiBlockUpdateMessage.unpackZ(position));
+	}
+
+	/**
+	 * Gets the encoded size of a chunk
+	 * @param c the chunk
+	 * @return the size in bytes, estimated if not known
+	 */
+	private int getChunkSize(Chunk c) {
+		if (c instanceof SpoutChunk) {
+			// The changes have already invalidated the payload, so the size it had when last encoded is used
+			int size = ((SpoutChunk) c).getPayloadCache().getLastSize();
+			if (size >= 0) {
+				return size;
+			}
+		}
+		return ESTIMATED_CHUNK_SIZE;
 	}
 
 	private EntityProtocol getEntityProtocol(Entity entity) {
@@ -91,6 +266,9 @@ public class SpoutNetworkSynchronizer extends NetworkSynchronizer {
 	public void syncEntity(Entity e, boolean spawn, boolean destroy, boolean update) {
 		EntityProtocol protocol = getEntityProtocol(e);
 		List<Message> messages = new ArrayList<Message>(3);
+		if (destroy || spawn) {
+			forgetTransform(e.getId());
+		}
 		if (destroy) {
 			messages.addAll(protocol.getDestroyMessages(e));
 		}
@@ -98,11 +276,76 @@ public class SpoutNetworkSynchronizer extends NetworkSynchronizer {
 			messages.addAll(protocol.getSpawnMessages(e, getRepositionManager()));
 		}
 		if (update) {
-			// TODO - might be worth adding force support
-			messages.addAll(protocol.getUpdateMessages(e, getRepositionManager(), false));
+			if (protocol == SpoutEntityProtocol.INSTANCE) {
+				// Transform updates of the builtin protocol are batched and delta encoded
+				if (e.getTransform().isDirty()) {
+					queueTransform(e.getId(), e.getTransform().getTransform());
+				}
+			} else {
+				// TODO - might be worth adding force support
+				messages.addAll(protocol.getUpdateMessages(e, getRepositionManager(), false));
+			}
 		}
 		for (Message message : messages) {
 			this.session.send(false, message);
 		}
 	}
+
+	private void queueTransform(int entityId, Transform transform) {
+		UUID world = transform.getPosition().getWorld().getUID();
+		synchronized (pendingTransforms) {
+			TIntObjectHashMap<Transform> pending = pendingTransforms.get(world);
+			if (pending == null) {
+				pending = new TIntObjectHashMap<Transform>();
+				pendingTransforms.put(world, pending);
+			}
+			pending.put(entityId, transform);
+		}
+	}
+
+	private void forgetTransform(int entityId) {
+		synchronized (pendingTransforms) {
+			for (TIntObjectHashMap<Transform> pending : pendingTransforms.values()) {
+				pending.remove(entityId);
+			}
+		}
+		baselines.forget(entityId);
+	}
+
+	/**
+	 * Sends the entity transforms queued since the last flush, one {@link EntityTransformBatchMessage} per world, and the changed blocks
+	 */
+	public void flush() {
+		flushBlockChanges();
+		synchronized (pendingTransforms) {
+			for (Map.Entry<UUID, TIntObjectHashMap<Transform>> world : pendingTransforms.entrySet()) {
+				TIntObjectHashMap<Transform> pending = world.getValue();
+				if (pending.isEmpty()) {
+					continue;
+				}
+				int[] ids = pending.keys();
+				Arrays.sort(ids);
+				List<EntityTransformBatchMessage.Entry> entries = new ArrayList<EntityTransformBatchMessage.Entry>(ids.length);
+				for (int id : ids) {
+					Transform transform = pending.get(id);
+					Transform repositioned = new Transform(getRepositionManager().convert(transform.getPosition()), transform.getRotation(), transform.getScale());
+					EntityTransformBatchMessage.Entry entry = baselines.encode(id, repositioned);
+					if (entry != null) {
+						entries.add(entry);
+					}
+				}
+				pending.clear();
+				if (entries.isEmpty()) {
+					continue;
+				}
+				UUID declared = null;
+				int worldId = baselines.getWorldId(world.getKey());
+				if (worldId == -1) {
+					worldId = baselines.declareWorld(world.getKey());
+					declared = world.getKey();
+				}
+				session.send(false, new EntityTransformBatchMessage(worldId, declared, entries));
+			}
+		}
+	}
 }
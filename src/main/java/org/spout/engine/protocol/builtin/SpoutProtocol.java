@@ -42,6 +42,7 @@ import org.spout.api.protocol.Protocol;
 import org.spout.api.protocol.Session;
 import org.spout.api.util.StringMap;
 import org.spout.api.util.StringMapEvent;
+import org.spout.engine.protocol.NetworkStats;
 import org.spout.engine.protocol.builtin.message.CommandMessage;
 import org.spout.engine.protocol.builtin.message.LoginMessage;
 import org.spout.engine.protocol.builtin.message.StringMapMessage;
@@ -69,6 +70,7 @@ public class SpoutProtocol extends Protocol {
 			buf.skipBytes(length);
 			return null;
 		} else {
+			NetworkStats.INSTANCE.startDecode(id, length + 6);
 			return codec;
 		}
 	}
@@ -78,6 +80,7 @@ public class SpoutProtocol extends Protocol {
 		ChannelBuffer buf = ChannelBuffers.buffer(6);
 		buf.writeShort(codec.getOpcode());
 		buf.writeInt(data.writerIndex());
+		NetworkStats.INSTANCE.add(codec.getOpcode(), NetworkStats.Counter.BYTES_OUT, buf.writerIndex() + data.writerIndex());
 		return buf;
 	}
 
@@ -27,42 +27,73 @@
 package org.spout.engine.protocol.builtin.codec;
 
 import java.io.IOException;
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
+import java.util.Arrays;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.material.block.BlockFullState;
 import org.spout.api.protocol.MessageCodec;
+import org.spout.engine.SpoutConfiguration;
+import org.spout.engine.protocol.ChunkPayloadCache;
+import org.spout.engine.protocol.NetworkStats;
+import org.spout.engine.protocol.PayloadCompression;
 import org.spout.engine.protocol.builtin.ChannelBufferUtils;
 import org.spout.engine.protocol.builtin.message.ChunkDataMessage;
 
 /**
- *
+ * Chunks are sent either as full id and data arrays, or in the palette format of the block store.<br>
+ * The palette format sends uniform chunks as a single block state, and uniform light arrays as a single value.<br>
+ * Payloads are compressed with the level and strategy of the configuration, see {@link PayloadCompression}.
  */
 public class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
+	private static final byte TYPE_FULL = 0, TYPE_UNLOAD = 1, TYPE_PALETTE = 2;
+	private static final byte BLOCKS_UNIFORM = 0, BLOCKS_PALETTE = 1, BLOCKS_DIRECT = 2;
+	private static final byte LIGHT_UNIFORM = 0, LIGHT_ARRAY = 1;
+	private final PayloadCompression compression;
+
 	public ChunkDataCodec() {
 		super(ChunkDataMessage.class, 0x08);
+		compression = new PayloadCompression(SpoutConfiguration.CHUNK_COMPRESSION_LEVEL.getInt(),
+				PayloadCompression.getStrategy(SpoutConfiguration.CHUNK_COMPRESSION_STRATEGY.getString()),
+				SpoutConfiguration.CHUNK_COMPRESSION_THRESHOLD.getInt());
 	}
 
 	@Override
 	public ChannelBuffer encode(ChunkDataMessage message) throws IOException {
+		if (message.getPayload() != null) {
+			return message.getPayload().duplicate();
+		}
+		ChunkPayloadCache cache = message.getPayloadCache();
+		if (cache == null) {
+			return encodeChunk(message);
+		}
+		// Sessions receiving the same chunk wait for the first one to compress it instead of compressing it again
+		synchronized (cache) {
+			ChannelBuffer payload = cache.get(ChunkDataCodec.class, message.getPayloadVersion());
+			if (payload == null) {
+				payload = cache.put(ChunkDataCodec.class, message.getPayloadVersion(), encodeChunk(message));
+			}
+			return payload;
+		}
+	}
+
+	private ChannelBuffer encodeChunk(ChunkDataMessage message) throws IOException {
 		final ChannelBuffer buffer;
 		if (message.isUnload()) {
 			buffer = ChannelBuffers.buffer(13);
-			buffer.writeByte(1); // we're unloading
+			buffer.writeByte(TYPE_UNLOAD);
 			buffer.writeInt(message.getX());
 			buffer.writeInt(message.getY());
 			buffer.writeInt(message.getZ());
+		} else if (message.isPalette()) {
+			buffer = encodePalette(message);
 		} else {
-			int size = 18;
 			int dataSize = Chunk.BLOCKS.VOLUME * 2 + Chunk.BLOCKS.VOLUME * 2 + Chunk.BLOCKS.HALF_VOLUME + Chunk.BLOCKS.HALF_VOLUME;
 			if (message.getBiomeData() != null) {
 				dataSize += Chunk.BLOCKS.AREA;
 			}
 			byte[] uncompressedData = new byte[dataSize];
-			byte[] compressedData = new byte[dataSize];
 
 			int index = 0;
 			for (short s : message.getBlockIds()) {
@@ -82,21 +113,8 @@ public class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 				index += message.getBiomeData().length;
 			}
 
-			Deflater deflater = new Deflater();
-			deflater.setInput(uncompressedData);
-			deflater.finish();
-			int compressedSize = deflater.deflate(compressedData);
-			try {
-				if (compressedSize == 0) {
-					throw new IOException("Not all data compressed!");
-				}
-			} finally {
-				size += compressedSize;
-				deflater.end();
-			}
-
-			buffer = ChannelBuffers.dynamicBuffer(size);
-			buffer.writeByte(0); // not unload
+			buffer = ChannelBuffers.dynamicBuffer(26 + dataSize);
+			buffer.writeByte(TYPE_FULL);
 			buffer.writeInt(message.getX());
 			buffer.writeInt(message.getY());
 			buffer.writeInt(message.getZ());
@@ -104,39 +122,167 @@ public class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 			if (message.getBiomeManagerClass() != null) {
 				ChannelBufferUtils.writeString(buffer, message.getBiomeManagerClass());
 			}
-			buffer.writeInt(compressedSize);
-			buffer.writeBytes(compressedData, 0, compressedSize);
+			int compressedSize = compression.write(buffer, uncompressedData, 0, dataSize);
+			NetworkStats.INSTANCE.recordCompression(getOpcode(), dataSize, compressedSize);
+		}
+		return buffer;
+	}
+
+	private ChannelBuffer encodePalette(ChunkDataMessage message) throws IOException {
+		final int[] palette = message.getPalette();
+		final int[] packed = message.getPackedBlockArray();
+		ChannelBuffer data = ChannelBuffers.dynamicBuffer(64 + palette.length * 4 + packed.length * 4 + Chunk.BLOCKS.VOLUME);
+		if (palette.length == 1 || (palette.length == 0 && isUniform(packed))) {
+			data.writeByte(BLOCKS_UNIFORM);
+			data.writeInt(palette.length == 1 ? palette[0] : packed[0]);
+		} else {
+			if (palette.length > 0) {
+				data.writeByte(BLOCKS_PALETTE);
+				data.writeShort(palette.length);
+				for (int state : palette) {
+					data.writeInt(state);
+				}
+				data.writeByte(message.getPackedWidth());
+			} else {
+				data.writeByte(BLOCKS_DIRECT);
+			}
+			data.writeInt(packed.length);
+			for (int value : packed) {
+				data.writeInt(value);
+			}
+		}
+		writeLight(data, message.getBlockLight());
+		writeLight(data, message.getSkyLight());
+		if (message.getBiomeData() != null) {
+			data.writeBytes(message.getBiomeData());
 		}
+
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(30 + data.writerIndex());
+		buffer.writeByte(TYPE_PALETTE);
+		buffer.writeInt(message.getX());
+		buffer.writeInt(message.getY());
+		buffer.writeInt(message.getZ());
+		buffer.writeByte(message.getBiomeData() != null ? 1 : 0); // hasBiomes
+		if (message.getBiomeData() != null) {
+			ChannelBufferUtils.writeString(buffer, message.getBiomeManagerClass());
+		}
+		int compressedSize = compression.write(buffer, data.array(), data.arrayOffset(), data.writerIndex());
+		NetworkStats.INSTANCE.recordCompression(getOpcode(), data.writerIndex(), compressedSize);
 		return buffer;
 	}
 
+	private static boolean isUniform(int[] array) {
+		for (int i = 1; i < array.length; i++) {
+			if (array[i] != array[0]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void writeLight(ChannelBuffer buffer, byte[] light) {
+		byte value = light[0];
+		// Both nibbles of every byte have to match
+		boolean uniform = ((value >> 4) & 0xF) == (value & 0xF);
+		for (int i = 1; uniform && i < light.length; i++) {
+			uniform = light[i] == value;
+		}
+		if (uniform) {
+			buffer.writeByte(LIGHT_UNIFORM);
+			buffer.writeByte(value);
+		} else {
+			buffer.writeByte(LIGHT_ARRAY);
+			buffer.writeBytes(light);
+		}
+	}
+
+	private static byte[] readLight(ChannelBuffer buffer) {
+		byte[] light = new byte[Chunk.BLOCKS.HALF_VOLUME];
+		if (buffer.readByte() == LIGHT_UNIFORM) {
+			Arrays.fill(light, buffer.readByte());
+		} else {
+			buffer.readBytes(light);
+		}
+		return light;
+	}
+
+	private static byte[] readPayload(ChannelBuffer buffer, int x, int y, int z) throws IOException {
+		try {
+			return PayloadCompression.read(buffer);
+		} catch (IOException e) {
+			throw new IOException("Error while reading chunk (" + x + "," + y + "," + z + ")!", e);
+		}
+	}
+
+	private ChunkDataMessage decodePalette(ChannelBuffer buffer, int x, int y, int z) throws IOException {
+		final boolean hasBiomes = buffer.readByte() == 1;
+		final String biomeManagerClass = hasBiomes ? ChannelBufferUtils.readString(buffer) : null;
+		final byte[] uncompressedData = readPayload(buffer, x, y, z);
+
+		ChannelBuffer data = ChannelBuffers.wrappedBuffer(uncompressedData);
+		final byte blocks = data.readByte();
+		int[] palette = null;
+		int packedWidth = 0;
+		int[] packed = null;
+		short[] blockIds = null, blockData = null;
+		if (blocks == BLOCKS_UNIFORM) {
+			final int state = data.readInt();
+			blockIds = new short[Chunk.BLOCKS.VOLUME];
+			blockData = new short[Chunk.BLOCKS.VOLUME];
+			Arrays.fill(blockIds, (short) BlockFullState.getId(state));
+			Arrays.fill(blockData, BlockFullState.getData(state));
+		} else {
+			if (blocks == BLOCKS_PALETTE) {
+				palette = new int[data.readUnsignedShort()];
+				for (int i = 0; i < palette.length; i++) {
+					palette[i] = data.readInt();
+				}
+				packedWidth = data.readUnsignedByte();
+			} else {
+				palette = new int[0];
+			}
+			packed = new int[data.readInt()];
+			for (int i = 0; i < packed.length; i++) {
+				packed[i] = data.readInt();
+			}
+		}
+		final byte[] blockLight = readLight(data);
+		final byte[] skyLight = readLight(data);
+		byte[] biomeData = null;
+		if (hasBiomes) {
+			biomeData = new byte[Chunk.BLOCKS.AREA];
+			data.readBytes(biomeData);
+		}
+
+		if (packed != null) {
+			return new ChunkDataMessage(x, y, z, palette, packedWidth, packed, blockLight, skyLight, biomeData, biomeManagerClass);
+		} else {
+			return new ChunkDataMessage(x, y, z, blockIds, blockData, blockLight, skyLight, biomeData, biomeManagerClass);
+		}
+	}
+
 	@Override
 	public ChunkDataMessage decode(ChannelBuffer buffer) throws IOException {
-		final boolean unload = buffer.readByte() == 1;
+		final byte type = buffer.readByte();
 		final int x = buffer.readInt();
 		final int y = buffer.readInt();
 		final int z = buffer.readInt();
-		if (unload) {
+		if (type == TYPE_UNLOAD) {
 			return new ChunkDataMessage(x, y, z);
+		} else if (type == TYPE_PALETTE) {
+			return decodePalette(buffer, x, y, z);
 		} else {
 			int uncompressedSize = Chunk.BLOCKS.VOLUME * 2 + Chunk.BLOCKS.VOLUME * 2 + Chunk.BLOCKS.HALF_VOLUME + Chunk.BLOCKS.HALF_VOLUME;
 			final boolean hasBiomes = buffer.readByte() == 1;
 			if (hasBiomes) {
 				uncompressedSize += Chunk.BLOCKS.AREA;
 			}
-			final String biomeManagerClass = hasBiomes ? null : ChannelBufferUtils.readString(buffer);
+			final String biomeManagerClass = hasBiomes ? ChannelBufferUtils.readString(buffer) : null;
 
-			final byte[] uncompressedData = new byte[uncompressedSize];
-			final byte[] compressedData = new byte[buffer.readInt()];
-			buffer.readBytes(compressedData);
-			Inflater inflater = new Inflater();
-			inflater.setInput(compressedData);
-			try {
-				inflater.inflate(uncompressedData);
-			} catch (DataFormatException e) {
-				throw new IOException("Error while reading chunk (" + x + "," + y + "," + z + ")!", e);
+			final byte[] uncompressedData = readPayload(buffer, x, y, z);
+			if (uncompressedData.length != uncompressedSize) {
+				throw new IOException("Chunk (" + x + "," + y + "," + z + ") has " + uncompressedData.length + " bytes instead of " + uncompressedSize);
 			}
-			inflater.end();
 
 			final short[] blockIds = new short[Chunk.BLOCKS.VOLUME];
 			final short[] blockData = new short[Chunk.BLOCKS.VOLUME];
@@ -146,10 +292,10 @@ public class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 
 			int index = 0;
 			for (int i = 0; i < blockIds.length; ++i) {
-				blockIds[i] = (short) (uncompressedData[index++] | (uncompressedData[index++] << 8));
+				blockIds[i] = (short) ((uncompressedData[index++] & 0xFF) | (uncompressedData[index++] << 8));
 			}
 			for (int i = 0; i < blockData.length; ++i) {
-				blockData[i] = (short) (uncompressedData[index++] | (uncompressedData[index++] << 8));
+				blockData[i] = (short) ((uncompressedData[index++] & 0xFF) | (uncompressedData[index++] << 8));
 			}
 			System.arraycopy(uncompressedData, index, blockLight, 0, blockLight.length);
 			index += blockLight.length;
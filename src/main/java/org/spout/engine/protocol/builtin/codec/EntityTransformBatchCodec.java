@@ -0,0 +1,108 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.spout.api.math.Vector3;
+import org.spout.api.protocol.MessageCodec;
+import org.spout.engine.protocol.builtin.ChannelBufferUtils;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage.Entry;
+
+/**
+ * Entity ids are written as the difference to the previous id in the batch, all integers are var ints
+ */
+public class EntityTransformBatchCodec extends MessageCodec<EntityTransformBatchMessage> {
+	public EntityTransformBatchCodec() {
+		super(EntityTransformBatchMessage.class, 0x0D);
+	}
+
+	@Override
+	public ChannelBuffer encode(EntityTransformBatchMessage message) {
+		List<Entry> entries = message.getEntries();
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(4 + ChannelBufferUtils.UUID_SIZE + entries.size() * 8);
+		ChannelBufferUtils.writeVarInt(buffer, message.getWorldId());
+		if (message.getWorldUid() != null) {
+			buffer.writeByte(1);
+			ChannelBufferUtils.writeUUID(buffer, message.getWorldUid());
+		} else {
+			buffer.writeByte(0);
+		}
+		ChannelBufferUtils.writeVarInt(buffer, entries.size());
+		int lastId = 0;
+		for (Entry entry : entries) {
+			ChannelBufferUtils.writeSignedVarInt(buffer, entry.getEntityId() - lastId);
+			lastId = entry.getEntityId();
+			buffer.writeByte(entry.getFlags());
+			if (entry.has(EntityTransformBatchMessage.POSITION_DELTA | EntityTransformBatchMessage.POSITION_ABSOLUTE)) {
+				ChannelBufferUtils.writeSignedVarInt(buffer, entry.getX());
+				ChannelBufferUtils.writeSignedVarInt(buffer, entry.getY());
+				ChannelBufferUtils.writeSignedVarInt(buffer, entry.getZ());
+			}
+			if (entry.has(EntityTransformBatchMessage.ROTATION)) {
+				buffer.writeInt(entry.getRotation());
+			}
+			if (entry.has(EntityTransformBatchMessage.SCALE)) {
+				ChannelBufferUtils.writeVector3(buffer, entry.getScale());
+			}
+		}
+		return buffer;
+	}
+
+	@Override
+	public EntityTransformBatchMessage decode(ChannelBuffer buffer) {
+		final int worldId = ChannelBufferUtils.readVarInt(buffer);
+		final UUID worldUid = buffer.readByte() != 0 ? ChannelBufferUtils.readUUID(buffer) : null;
+		final int count = ChannelBufferUtils.readVarInt(buffer);
+		final List<Entry> entries = new ArrayList<Entry>(count);
+		int entityId = 0;
+		for (int i = 0; i < count; i++) {
+			entityId += ChannelBufferUtils.readSignedVarInt(buffer);
+			final int flags = buffer.readUnsignedByte();
+			int x = 0, y = 0, z = 0, rotation = 0;
+			Vector3 scale = null;
+			if ((flags & (EntityTransformBatchMessage.POSITION_DELTA | EntityTransformBatchMessage.POSITION_ABSOLUTE)) != 0) {
+				x = ChannelBufferUtils.readSignedVarInt(buffer);
+				y = ChannelBufferUtils.readSignedVarInt(buffer);
+				z = ChannelBufferUtils.readSignedVarInt(buffer);
+			}
+			if ((flags & EntityTransformBatchMessage.ROTATION) != 0) {
+				rotation = buffer.readInt();
+			}
+			if ((flags & EntityTransformBatchMessage.SCALE) != 0) {
+				scale = ChannelBufferUtils.readVector3(buffer);
+			}
+			entries.add(new Entry(entityId, flags, x, y, z, rotation, scale));
+		}
+		return new EntityTransformBatchMessage(worldId, worldUid, entries);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin.codec;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.spout.api.protocol.MessageCodec;
+import org.spout.api.util.hashing.NibblePairHashed;
+import org.spout.engine.protocol.builtin.message.MultiBlockUpdateMessage;
+
+public class MultiBlockUpdateCodec extends MessageCodec<MultiBlockUpdateMessage> {
+	/**
+	 * The size of the chunk coordinates and the block count
+	 */
+	public static final int HEADER_SIZE = 14;
+	/**
+	 * The size of each block: position, type, data and light
+	 */
+	public static final int BLOCK_SIZE = 7;
+
+	public MultiBlockUpdateCodec() {
+		super(MultiBlockUpdateMessage.class, 0x0E);
+	}
+
+	@Override
+	public ChannelBuffer encode(MultiBlockUpdateMessage message) {
+		final int count = message.getCount();
+		ChannelBuffer buffer = ChannelBuffers.buffer(HEADER_SIZE + count * BLOCK_SIZE);
+		buffer.writeInt(message.getChunkX());
+		buffer.writeInt(message.getChunkY());
+		buffer.writeInt(message.getChunkZ());
+		buffer.writeShort(count);
+		short[] positions = message.getPositions();
+		short[] types = message.getTypes();
+		short[] data = message.getData();
+		byte[] blockLight = message.getBlockLight();
+		byte[] skyLight = message.getSkyLight();
+		for (int i = 0; i < count; i++) {
+			buffer.writeShort(positions[i]);
+			buffer.writeShort(types[i]);
+			buffer.writeShort(data[i]);
+			buffer.writeByte(NibblePairHashed.key(blockLight[i], skyLight[i]));
+		}
+		return buffer;
+	}
+
+	@Override
+	public MultiBlockUpdateMessage decode(ChannelBuffer buffer) {
+		final int chunkX = buffer.readInt();
+		final int chunkY = buffer.readInt();
+		final int chunkZ = buffer.readInt();
+		final int count = buffer.readUnsignedShort();
+		short[] positions = new short[count];
+		short[] types = new short[count];
+		short[] data = new short[count];
+		byte[] blockLight = new byte[count];
+		byte[] skyLight = new byte[count];
+		for (int i = 0; i < count; i++) {
+			positions[i] = buffer.readShort();
+			types[i] = buffer.readShort();
+			data[i] = buffer.readShort();
+			final byte light = buffer.readByte();
+			blockLight[i] = NibblePairHashed.key1(light);
+			skyLight[i] = NibblePairHashed.key2(light);
+		}
+		return new MultiBlockUpdateMessage(chunkX, chunkY, chunkZ, positions, types, data, blockLight, skyLight);
+	}
+}
@@ -36,6 +36,7 @@ import org.spout.api.geo.ClientWorld;
 import org.spout.api.protocol.MessageHandler;
 import org.spout.api.protocol.Session;
 import org.spout.engine.protocol.builtin.message.ChunkDataMessage;
+import org.spout.engine.world.SpoutClientWorld;
 
 public class ChunkDataMessageHandler extends MessageHandler<ChunkDataMessage> {
 	@Override
@@ -45,6 +46,19 @@ public class ChunkDataMessageHandler extends MessageHandler<ChunkDataMessage> {
 		}
 
 		ClientWorld world = (ClientWorld) ((Client) session.getEngine()).getDefaultWorld();
+		if (Spout.debugMode()) {
+			Spout.getLogger().log(Level.INFO, "Recieved Chunk Data: {0}", message.toString());
+		}
+		BiomeManager manager = message.getBiomeManagerClass() == null ? null : createBiomeManager(message);
+		if (message.isPalette() && world instanceof SpoutClientWorld) {
+			// The palette and packed array are used for the block store as they are
+			((SpoutClientWorld) world).addChunk(message.getX(), message.getY(), message.getZ(), message.getPalette(), message.getPackedWidth(), message.getPackedBlockArray(), message.getBlockLight(), message.getSkyLight(), manager);
+		} else {
+			world.addChunk(message.getX(), message.getY(), message.getZ(), message.getBlockIds(), message.getBlockData(), message.getBlockLight(), message.getSkyLight(), manager);
+		}
+	}
+
+	private BiomeManager createBiomeManager(ChunkDataMessage message) {
 		Class<? extends BiomeManager> managerClass;
 		try {
 			Class<?> testClass = Class.forName(message.getBiomeManagerClass());
@@ -55,9 +69,6 @@ public class ChunkDataMessageHandler extends MessageHandler<ChunkDataMessage> {
 		} catch (ClassNotFoundException e) {
 			throw new IllegalArgumentException("Unknown biome manager class: " + message.getBiomeManagerClass());
 		}
-		if (Spout.debugMode()) {
-			Spout.getLogger().log(Level.INFO, "Recieved Chunk Data: {0}", message.toString());
-		}
 		BiomeManager manager;
 		try {
 			manager = managerClass.getConstructor(int.class, int.class, int.class).newInstance(message.getX(), message.getY(), message.getZ());
@@ -71,6 +82,6 @@ public class ChunkDataMessageHandler extends MessageHandler<ChunkDataMessage> {
 			throw new RuntimeException(e);
 		}
 		manager.deserialize(message.getBiomeData());
-		world.addChunk(message.getX(), message.getY(), message.getZ(), message.getBlockIds(), message.getBlockData(), message.getBlockLight(), message.getSkyLight(), manager);
+		return manager;
 	}
 }
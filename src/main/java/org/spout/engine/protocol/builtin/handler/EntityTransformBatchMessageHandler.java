@@ -0,0 +1,82 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin.handler;
+
+import java.util.UUID;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.entity.Player;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Transform;
+import org.spout.api.protocol.MessageHandler;
+import org.spout.api.protocol.Session;
+import org.spout.api.protocol.reposition.RepositionManager;
+import org.spout.engine.protocol.SpoutClientSession;
+import org.spout.engine.protocol.builtin.EntityTransformBaselines;
+import org.spout.engine.protocol.builtin.SpoutProtocol;
+import org.spout.engine.protocol.builtin.message.EntityTransformBatchMessage;
+
+public class EntityTransformBatchMessageHandler extends MessageHandler<EntityTransformBatchMessage> {
+	@Override
+	public void handleClient(Session session, EntityTransformBatchMessage message) {
+		if (!session.hasPlayer() || !(session instanceof SpoutClientSession)) {
+			return;
+		}
+
+		EntityTransformBaselines baselines = ((SpoutClientSession) session).getTransformBaselines();
+		if (message.getWorldUid() != null) {
+			baselines.setWorld(message.getWorldId(), message.getWorldUid());
+		}
+		UUID worldUid = baselines.getWorld(message.getWorldId());
+		World world = worldUid == null ? null : session.getEngine().getWorld(worldUid);
+		if (world == null) {
+			session.getEngine().getLogger().warning("Entity transforms received for unknown world id " + message.getWorldId());
+			return;
+		}
+
+		Player player = session.getPlayer();
+		RepositionManager rmInverse = player.getNetworkSynchronizer().getRepositionManager().getInverse();
+		int playerId = session.getDataMap().get(SpoutProtocol.PLAYER_ENTITY_ID);
+
+		for (EntityTransformBatchMessage.Entry entry : message.getEntries()) {
+			// The baseline has to be updated even if the entity is not known (yet), later deltas are relative to it
+			Transform transform = baselines.decode(entry, world);
+			if (transform == null) {
+				continue;
+			}
+			Entity entity;
+			if (entry.getEntityId() == playerId) {
+				entity = player;
+			} else {
+				entity = world.getEntity(entry.getEntityId());
+			}
+			if (entity != null) {
+				entity.getTransform().setTransform(rmInverse.convert(transform));
+			}
+		}
+	}
+}
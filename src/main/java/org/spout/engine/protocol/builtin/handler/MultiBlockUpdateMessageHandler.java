@@ -0,0 +1,58 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin.handler;
+
+import org.spout.api.entity.Player;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.protocol.MessageHandler;
+import org.spout.api.protocol.Session;
+import org.spout.engine.protocol.builtin.message.MultiBlockUpdateMessage;
+
+public class MultiBlockUpdateMessageHandler extends MessageHandler<MultiBlockUpdateMessage> {
+	@Override
+	public void handleClient(Session session, MultiBlockUpdateMessage message) {
+		if (!session.hasPlayer()) {
+			return;
+		}
+
+		Player player = session.getPlayer();
+		World world = player.getWorld();
+		final int baseX = message.getChunkX() << Chunk.BLOCKS.BITS;
+		final int baseY = message.getChunkY() << Chunk.BLOCKS.BITS;
+		final int baseZ = message.getChunkZ() << Chunk.BLOCKS.BITS;
+		short[] positions = message.getPositions();
+		for (int i = 0; i < positions.length; i++) {
+			short position = positions[i];
+			Block block = world.getBlock(baseX + MultiBlockUpdateMessage.unpackX(position), baseY + MultiBlockUpdateMessage.unpackY(position), baseZ + MultiBlockUpdateMessage.unpackZ(position));
+			block.setMaterial(BlockMaterial.get(message.getTypes()[i]), message.getData()[i]);
+			block.setBlockLight(message.getBlockLight()[i]).setSkyLight(message.getSkyLight()[i]);
+		}
+	}
+}
@@ -29,6 +29,7 @@ package org.spout.engine.protocol.builtin.handler;
 import org.spout.api.entity.Entity;
 import org.spout.api.protocol.MessageHandler;
 import org.spout.api.protocol.Session;
+import org.spout.engine.protocol.SpoutClientSession;
 import org.spout.engine.protocol.builtin.message.RemoveEntityMessage;
 
 public class RemoveEntityMessageHandler extends MessageHandler<RemoveEntityMessage> {
@@ -38,6 +39,10 @@ public class RemoveEntityMessageHandler extends MessageHandler<RemoveEntityMessa
 			return;
 		}
 
+		if (session instanceof SpoutClientSession) {
+			((SpoutClientSession) session).getTransformBaselines().forget(message.getEntityId());
+		}
+
 		Entity entity = session.getPlayer().getWorld().getEntity(message.getEntityId());
 		if (entity != null) {
 			entity.remove();
@@ -30,16 +30,27 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.spout.api.geo.cuboid.ChunkSnapshot;
 import org.spout.api.util.SpoutToStringStyle;
+import org.spout.engine.protocol.ChunkPayloadCache;
+import org.spout.engine.world.SpoutChunkSnapshot;
 
 public class ChunkDataMessage extends SpoutMessage {
 	private final boolean unload;
 	private final int x, y, z;
 	private final short[] blockIds, blockData;
+	// Set instead of the id and data arrays if the blocks are sent in the palette format of the block store
+	private final int[] palette, packedBlockArray;
+	private final int packedWidth;
 	private final byte[] blockLight, skyLight;
 	private final byte[] biomeData;
 	private final String biomeManagerClass;
+	// These fields aren't sent across the network - the cache to share the encoded payload through, and the version the snapshot was taken at
+	private transient final ChunkPayloadCache payloadCache;
+	private transient final int payloadVersion;
+	// The already encoded payload of the message, if it was found in the cache
+	private transient final ChannelBuffer payload;
 
 	public ChunkDataMessage(int x, int y, int z) {
 		this.unload = true;
@@ -48,23 +59,99 @@ public class ChunkDataMessage extends SpoutMessage {
 		this.z = z;
 		this.blockIds = ArrayUtils.EMPTY_SHORT_ARRAY;
 		this.blockData = ArrayUtils.EMPTY_SHORT_ARRAY;
+		this.palette = null;
+		this.packedWidth = 0;
+		this.packedBlockArray = null;
 		this.blockLight = ArrayUtils.EMPTY_BYTE_ARRAY;
 		this.skyLight = ArrayUtils.EMPTY_BYTE_ARRAY;
 		this.biomeData = null;
 		this.biomeManagerClass = null;
+		this.payloadCache = null;
+		this.payloadVersion = 0;
+		this.payload = null;
 	}
 
 	public ChunkDataMessage(ChunkSnapshot snapshot) {
+		this(snapshot, null, 0);
+	}
+
+	/**
+	 * Creates a message whose encoded payload is stored in the cache of the chunk, to be shared with other sessions
+	 * @param snapshot of the chunk
+	 * @param payloadCache of the chunk
+	 * @param payloadVersion of the cache, read before the snapshot was taken
+	 */
+	public ChunkDataMessage(ChunkSnapshot snapshot, ChunkPayloadCache payloadCache, int payloadVersion) {
 		this.unload = false;
 		this.x = snapshot.getX();
 		this.y = snapshot.getY();
 		this.z = snapshot.getZ();
-		this.blockIds = snapshot.getBlockIds();
-		this.blockData = snapshot.getBlockData();
+		if (snapshot instanceof SpoutChunkSnapshot && ((SpoutChunkSnapshot) snapshot).getPalette() != null) {
+			SpoutChunkSnapshot spoutSnapshot = (SpoutChunkSnapshot) snapshot;
+			this.blockIds = ArrayUtils.EMPTY_SHORT_ARRAY;
+			this.blockData = ArrayUtils.EMPTY_SHORT_ARRAY;
+			this.palette = spoutSnapshot.getPalette();
+			this.packedWidth = spoutSnapshot.getPackedWidth();
+			this.packedBlockArray = spoutSnapshot.getPackedBlockArray();
+		} else {
+			this.blockIds = snapshot.getBlockIds();
+			this.blockData = snapshot.getBlockData();
+			this.palette = null;
+			this.packedWidth = 0;
+			this.packedBlockArray = null;
+		}
 		this.blockLight = snapshot.getBlockLight();
 		this.skyLight = snapshot.getSkyLight();
 		this.biomeData = snapshot.getBiomeManager() != null ? snapshot.getBiomeManager().serialize() : null;
 		this.biomeManagerClass = snapshot.getBiomeManager() != null ? snapshot.getBiomeManager().getClass().getCanonicalName() : null;
+		this.payloadCache = payloadCache;
+		this.payloadVersion = payloadVersion;
+		this.payload = null;
+	}
+
+	public ChunkDataMessage(int x, int y, int z, int[] palette, int packedWidth, int[] packedBlockArray, byte[] blockLight, byte[] skyLight, byte[] biomeData, String biomeManagerClass) {
+		this.unload = false;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.blockIds = ArrayUtils.EMPTY_SHORT_ARRAY;
+		this.blockData = ArrayUtils.EMPTY_SHORT_ARRAY;
+		this.palette = palette;
+		this.packedWidth = packedWidth;
+		this.packedBlockArray = packedBlockArray;
+		this.blockLight = blockLight;
+		this.skyLight = skyLight;
+		this.biomeData = biomeData;
+		this.biomeManagerClass = biomeManagerClass;
+		this.payloadCache = null;
+		this.payloadVersion = 0;
+		this.payload = null;
+	}
+
+	/**
+	 * Creates a message for a chunk which was already encoded for another session
+	 * @param x coordinate of the chunk
+	 * @param y coordinate of the chunk
+	 * @param z coordinate of the chunk
+	 * @param payload the read only encoded message
+	 */
+	public ChunkDataMessage(int x, int y, int z, ChannelBuffer payload) {
+		this.unload = false;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.blockIds = ArrayUtils.EMPTY_SHORT_ARRAY;
+		this.blockData = ArrayUtils.EMPTY_SHORT_ARRAY;
+		this.palette = null;
+		this.packedWidth = 0;
+		this.packedBlockArray = null;
+		this.blockLight = ArrayUtils.EMPTY_BYTE_ARRAY;
+		this.skyLight = ArrayUtils.EMPTY_BYTE_ARRAY;
+		this.biomeData = null;
+		this.biomeManagerClass = null;
+		this.payloadCache = null;
+		this.payloadVersion = 0;
+		this.payload = payload;
 	}
 
 	public ChunkDataMessage(int x, int y, int z, short[] blockIds, short[] blockData, byte[] blockLight, byte[] skyLight, byte[] biomeData, String biomeManagerClass) {
@@ -74,10 +161,16 @@ public class ChunkDataMessage extends SpoutMessage {
 		this.z = z;
 		this.blockIds = blockIds;
 		this.blockData = blockData;
+		this.palette = null;
+		this.packedWidth = 0;
+		this.packedBlockArray = null;
 		this.blockLight = blockLight;
 		this.skyLight = skyLight;
 		this.biomeData = biomeData;
 		this.biomeManagerClass = biomeManagerClass;
+		this.payloadCache = null;
+		this.payloadVersion = 0;
+		this.payload = null;
 	}
 
 	public boolean isUnload() {
@@ -104,6 +197,26 @@ public class ChunkDataMessage extends SpoutMessage {
 		return blockData;
 	}
 
+	/**
+	 * Gets if the blocks are given as the palette and packed array of a block store, rather than as id and data arrays
+	 * @return true if the palette format is used
+	 */
+	public boolean isPalette() {
+		return palette != null;
+	}
+
+	public int[] getPalette() {
+		return palette;
+	}
+
+	public int getPackedWidth() {
+		return packedWidth;
+	}
+
+	public int[] getPackedBlockArray() {
+		return packedBlockArray;
+	}
+
 	public byte[] getBlockLight() {
 		return blockLight;
 	}
@@ -120,6 +233,22 @@ public class ChunkDataMessage extends SpoutMessage {
 		return biomeManagerClass;
 	}
 
+	public ChunkPayloadCache getPayloadCache() {
+		return payloadCache;
+	}
+
+	public int getPayloadVersion() {
+		return payloadVersion;
+	}
+
+	/**
+	 * Gets the encoded payload, if this message was created from the payload cache of the chunk
+	 * @return the read only payload, or null
+	 */
+	public ChannelBuffer getPayload() {
+		return payload;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this, SpoutToStringStyle.INSTANCE)
@@ -129,6 +258,9 @@ public class ChunkDataMessage extends SpoutMessage {
 				.append("z", z)
 				.append("blockIds", blockIds, false)
 				.append("blockData", blockData, false)
+				.append("palette", palette, false)
+				.append("packedWidth", packedWidth)
+				.append("packedBlockArray", packedBlockArray, false)
 				.append("blockLight", blockLight, false)
 				.append("skyLight", skyLight, false)
 				.append("biomeData", biomeData, false)
@@ -145,6 +277,9 @@ public class ChunkDataMessage extends SpoutMessage {
 				.append(z)
 				.append(blockIds)
 				.append(blockData)
+				.append(palette)
+				.append(packedWidth)
+				.append(packedBlockArray)
 				.append(blockLight)
 				.append(skyLight)
 				.append(biomeData)
@@ -163,6 +298,9 @@ public class ChunkDataMessage extends SpoutMessage {
 					.append(z, other.z)
 					.append(blockIds, other.blockIds)
 					.append(blockData, other.blockData)
+					.append(palette, other.palette)
+					.append(packedWidth, other.packedWidth)
+					.append(packedBlockArray, other.packedBlockArray)
 					.append(blockLight, other.blockLight)
 					.append(skyLight, other.skyLight)
 					.append(biomeData, other.biomeData)
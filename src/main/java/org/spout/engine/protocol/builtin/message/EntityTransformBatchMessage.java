@@ -0,0 +1,226 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin.message;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.SpoutToStringStyle;
+
+/**
+ * All entity transform updates of a single world for one player in one tick.<br>
+ * Positions are quantized and, once an entity has a baseline on the client, sent as deltas to that baseline.
+ * Rotations are packed using {@link org.spout.engine.protocol.builtin.ChannelBufferUtils#packRotation}, unchanged fields are omitted.
+ */
+public class EntityTransformBatchMessage extends SpoutMessage {
+	/**
+	 * The position is given relative to the last position sent for the entity
+	 */
+	public static final int POSITION_DELTA = 0x01;
+	/**
+	 * The position is given as absolute quantized coordinates
+	 */
+	public static final int POSITION_ABSOLUTE = 0x02;
+	public static final int ROTATION = 0x04;
+	public static final int SCALE = 0x08;
+	/**
+	 * Positions are sent in 1/32th of a block
+	 */
+	public static final float POSITION_SCALE = 32.0f;
+	private final int worldId;
+	private final UUID worldUid;
+	private final List<Entry> entries;
+
+	/**
+	 * @param worldId the session scoped id of the world
+	 * @param worldUid the UUID of the world, only given the first time the id is used in the session
+	 * @param entries the updates, ordered by entity id
+	 */
+	public EntityTransformBatchMessage(int worldId, UUID worldUid, List<Entry> entries) {
+		this.worldId = worldId;
+		this.worldUid = worldUid;
+		this.entries = Collections.unmodifiableList(entries);
+	}
+
+	public int getWorldId() {
+		return worldId;
+	}
+
+	/**
+	 * Gets the UUID of the world, if the world id is declared by this message
+	 * @return the world UUID, or null
+	 */
+	public UUID getWorldUid() {
+		return worldUid;
+	}
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	public static int quantize(float coordinate) {
+		return Math.round(coordinate * POSITION_SCALE);
+	}
+
+	public static float dequantize(int coordinate) {
+		return coordinate / POSITION_SCALE;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, SpoutToStringStyle.INSTANCE)
+				.append("worldId", worldId)
+				.append("worldUid", worldUid)
+				.append("entries", entries)
+				.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(41, 61)
+				.append(worldId)
+				.append(worldUid)
+				.append(entries)
+				.toHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof EntityTransformBatchMessage) {
+			final EntityTransformBatchMessage other = (EntityTransformBatchMessage) obj;
+			return new EqualsBuilder()
+					.append(worldId, other.worldId)
+					.append(worldUid, other.worldUid)
+					.append(entries, other.entries)
+					.isEquals();
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * The update for a single entity, which fields are present depends on the flags
+	 */
+	public static class Entry {
+		private final int entityId;
+		private final int flags;
+		private final int x, y, z;
+		private final int rotation;
+		private final Vector3 scale;
+
+		public Entry(int entityId, int flags, int x, int y, int z, int rotation, Vector3 scale) {
+			this.entityId = entityId;
+			this.flags = flags;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.rotation = rotation;
+			this.scale = scale;
+		}
+
+		public int getEntityId() {
+			return entityId;
+		}
+
+		public int getFlags() {
+			return flags;
+		}
+
+		public boolean has(int flag) {
+			return (flags & flag) != 0;
+		}
+
+		public int getX() {
+			return x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public int getZ() {
+			return z;
+		}
+
+		public int getRotation() {
+			return rotation;
+		}
+
+		public Vector3 getScale() {
+			return scale;
+		}
+
+		@Override
+		public String toString() {
+			return new ToStringBuilder(this, SpoutToStringStyle.INSTANCE)
+					.append("entityId", entityId)
+					.append("flags", flags)
+					.append("x", x)
+					.append("y", y)
+					.append("z", z)
+					.append("rotation", rotation)
+					.append("scale", scale)
+					.toString();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(43, 67)
+					.append(entityId)
+					.append(flags)
+					.append(x)
+					.append(y)
+					.append(z)
+					.append(rotation)
+					.append(scale)
+					.toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof Entry) {
+				final Entry other = (Entry) obj;
+				return new EqualsBuilder()
+						.append(entityId, other.entityId)
+						.append(flags, other.flags)
+						.append(x, other.x)
+						.append(y, other.y)
+						.append(z, other.z)
+						.append(rotation, other.rotation)
+						.append(scale, other.scale)
+						.isEquals();
+			} else {
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin.message;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.util.SpoutToStringStyle;
+
+/**
+ * The blocks of a single chunk which changed in one tick.<br>
+ * Positions are packed local coordinates, see {@link #pack(int, int, int)}.
+ */
+public class MultiBlockUpdateMessage extends SpoutMessage {
+	private final int chunkX, chunkY, chunkZ;
+	private final short[] positions, types, data;
+	private final byte[] blockLight, skyLight;
+
+	public MultiBlockUpdateMessage(int chunkX, int chunkY, int chunkZ, short[] positions, short[] types, short[] data, byte[] blockLight, byte[] skyLight) {
+		if (types.length != positions.length || data.length != positions.length || blockLight.length != positions.length || skyLight.length != positions.length) {
+			throw new IllegalArgumentException("All block arrays must have " + positions.length + " elements");
+		}
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+		this.chunkZ = chunkZ;
+		this.positions = positions;
+		this.types = types;
+		this.data = data;
+		this.blockLight = blockLight;
+		this.skyLight = skyLight;
+	}
+
+	/**
+	 * Packs the coordinates of a block into its position within the chunk
+	 * @param x coordinate of the block
+	 * @param y coordinate of the block
+	 * @param z coordinate of the block
+	 * @return the packed local position
+	 */
+	public static short pack(int x, int y, int z) {
+		return (short) (((x & Chunk.BLOCKS.MASK) << (Chunk.BLOCKS.BITS << 1)) | ((y & Chunk.BLOCKS.MASK) << Chunk.BLOCKS.BITS) | (z & Chunk.BLOCKS.MASK));
+	}
+
+	public static int unpackX(short position) {
+		return (position >> (Chunk.BLOCKS.BITS << 1)) & Chunk.BLOCKS.MASK;
+	}
+
+	public static int unpackY(short position) {
+		return (position >> Chunk.BLOCKS.BITS) & Chunk.BLOCKS.MASK;
+	}
+
+	public static int unpackZ(short position) {
+		return position & Chunk.BLOCKS.MASK;
+	}
+
+	public int getChunkX() {
+		return chunkX;
+	}
+
+	public int getChunkY() {
+		return chunkY;
+	}
+
+	public int getChunkZ() {
+		return chunkZ;
+	}
+
+	public int getCount() {
+		return positions.length;
+	}
+
+	public short[] getPositions() {
+		return positions;
+	}
+
+	public short[] getTypes() {
+		return types;
+	}
+
+	public short[] getData() {
+		return data;
+	}
+
+	public byte[] getBlockLight() {
+		return blockLight;
+	}
+
+	public byte[] getSkyLight() {
+		return skyLight;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this, SpoutToStringStyle.INSTANCE)
+				.append("chunkX", chunkX)
+				.append("chunkY", chunkY)
+				.append("chunkZ", chunkZ)
+				.append("positions", positions)
+				.append("types", types)
+				.append("data", data)
+				.append("blockLight", blockLight)
+				.append("skyLight", skyLight)
+				.toString();
+	}
+
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder(57, 23)
+				.append(chunkX)
+				.append(chunkY)
+				.append(chunkZ)
+				.append(positions)
+				.append(types)
+				.append(data)
+				.append(blockLight)
+				.append(skyLight)
+				.toHashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof MultiBlockUpdateMessage) {
+			final MultiBlockUpdateMessage other = (MultiBlockUpdateMessage) obj;
+			return new EqualsBuilder()
+					.append(chunkX, other.chunkX)
+					.append(chunkY, other.chunkY)
+					.append(chunkZ, other.chunkZ)
+					.append(positions, other.positions)
+					.append(types, other.types)
+					.append(data, other.data)
+					.append(blockLight, other.blockLight)
+					.append(skyLight, other.skyLight)
+					.isEquals();
+		} else {
+			return false;
+		}
+	}
+}
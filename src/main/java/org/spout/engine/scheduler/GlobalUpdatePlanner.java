@@ -0,0 +1,177 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.scheduler;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.TLongSet;
+
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.material.range.EffectRange;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * Plans the global dynamic block update and block physics stages from the footprints of the pending updates.<br>
+ * <br>
+ * The footprint of a region is the set of regions touched by the neighbourhoods of the chunks it has pending
+ * global updates in. Regions with overlapping footprints conflict, since the dynamic update trees and
+ * physics queues of a region may only be modified by one thread at a time. Regions without pending updates
+ * are not scheduled at all.<br>
+ * <br>
+ * Conflicting regions are always run in the order of their update sequence, as with the 27 stage sequence,
+ * and regions in the same group touch disjoint regions. As a region only conflicts with regions of a lower
+ * sequence in an earlier group, there are never more groups than there are sequences.<br>
+ * <br>
+ * The order of the updates is not the same as with the 27 stage sequence:
+ * <ul>
+ * <li>The plan only holds the regions with pending updates when it is built. Updates queued during the pass
+ * in a region which is not in the plan run in the next pass, after its local stage, where the 27 stage
+ * sequence would run them later in the same pass if the region has a higher sequence.</li>
+ * <li>Regions of different sequences without conflicts run at the same time in one group.</li>
+ * <li>The update threshold is checked between groups instead of between sequences, so when it is reached
+ * the pass stops after a group, which may contain regions of several sequences.</li>
+ * </ul>
+ * Each region still runs its own updates in order, but a cascade crossing regions may resolve differently.
+ */
+public class GlobalUpdatePlanner {
+	private static final int LOW = Chunk.BLOCKS.SIZE;
+	private static final int HIGH = Region.BLOCKS.SIZE - 2 * Chunk.BLOCKS.SIZE;
+
+	/**
+	 * Checks if an effect range only reaches blocks in the chunk of the block and the neighbouring chunks
+	 * @param range to check
+	 * @param bx region coordinate of the block
+	 * @param by region coordinate of the block
+	 * @param bz region coordinate of the block
+	 * @return True if the range is within the chunk neighbourhood
+	 */
+	public static boolean isChunkNeighbourhoodLocal(EffectRange range, int bx, int by, int bz) {
+		bx &= Chunk.BLOCKS.MASK;
+		by &= Chunk.BLOCKS.MASK;
+		bz &= Chunk.BLOCKS.MASK;
+		// Moved one chunk in from the lower region edge the lower bound is checked against the neighbouring chunk,
+		// moved one chunk in from the upper region edge the upper bound is
+		return range.isRegionLocal(LOW + bx, LOW + by, LOW + bz) && range.isRegionLocal(HIGH + bx, HIGH + by, HIGH + bz);
+	}
+
+	/**
+	 * Adds the regions touched by the neighbourhood of the chunk of a block
+	 * @param regions the set to add the packed region coordinates to
+	 * @param rx coordinate of the region of the block
+	 * @param ry coordinate of the region of the block
+	 * @param rz coordinate of the region of the block
+	 * @param bx region coordinate of the block
+	 * @param by region coordinate of the block
+	 * @param bz region coordinate of the block
+	 */
+	public static void addChunkNeighbourhood(TLongSet regions, int rx, int ry, int rz, int bx, int by, int bz) {
+		int cx = (bx & Region.BLOCKS.MASK) >> Chunk.BLOCKS.BITS;
+		int cy = (by & Region.BLOCKS.MASK) >> Chunk.BLOCKS.BITS;
+		int cz = (bz & Region.BLOCKS.MASK) >> Chunk.BLOCKS.BITS;
+		int minX = cx == 0 ? -1 : 0, maxX = cx == Region.CHUNKS.MASK ? 1 : 0;
+		int minY = cy == 0 ? -1 : 0, maxY = cy == Region.CHUNKS.MASK ? 1 : 0;
+		int minZ = cz == 0 ? -1 : 0, maxZ = cz == Region.CHUNKS.MASK ? 1 : 0;
+		for (int dx = minX; dx <= maxX; dx++) {
+			for (int dy = minY; dy <= maxY; dy++) {
+				for (int dz = minZ; dz <= maxZ; dz++) {
+					regions.add(Int21TripleHashed.key(rx + dx, ry + dy, rz + dz));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a region and all its neighbours, for updates which may reach further than the neighbouring chunks
+	 * @param regions the set to add the packed region coordinates to
+	 * @param rx coordinate of the region
+	 * @param ry coordinate of the region
+	 * @param rz coordinate of the region
+	 */
+	public static void addRegionNeighbourhood(TLongSet regions, int rx, int ry, int rz) {
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dz = -1; dz <= 1; dz++) {
+					regions.add(Int21TripleHashed.key(rx + dx, ry + dy, rz + dz));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits regions into groups that can run their global updates at the same time.<br>
+	 * Groups have to be run in increasing order.
+	 * @param sequences the update sequence of each region
+	 * @param footprints the footprint of each region
+	 * @return the group of each region
+	 */
+	public static int[] plan(int[] sequences, TLongSet[] footprints) {
+		int count = sequences.length;
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		// Stable insertion sort by sequence, there are rarely more than a few regions with global updates
+		for (int i = 1; i < count; i++) {
+			int index = order[i];
+			int j = i - 1;
+			while (j >= 0 && sequences[order[j]] > sequences[index]) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = index;
+		}
+
+		int[] groups = new int[count];
+		for (int i = 0; i < count; i++) {
+			int index = order[i];
+			int group = 0;
+			for (int j = 0; j < i; j++) {
+				int other = order[j];
+				if (groups[other] >= group && intersects(footprints[index], footprints[other])) {
+					group = groups[other] + 1;
+				}
+			}
+			groups[index] = group;
+		}
+		return groups;
+	}
+
+	private static boolean intersects(TLongSet a, TLongSet b) {
+		if (a.size() > b.size()) {
+			TLongSet t = a;
+			a = b;
+			b = t;
+		}
+		TLongIterator i = a.iterator();
+		while (i.hasNext()) {
+			if (b.contains(i.next())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
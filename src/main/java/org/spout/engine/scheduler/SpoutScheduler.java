@@ -26,7 +26,11 @@
  */
 package org.spout.engine.scheduler;
 
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
 import java.awt.Canvas;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -59,7 +63,6 @@ import org.spout.engine.SpoutConfiguration;
 import org.spout.engine.SpoutEngine;
 import org.spout.engine.SpoutRenderer;
 import org.spout.engine.SpoutServer;
-import org.spout.engine.protocol.NetworkSendThreadPool;
 import org.spout.engine.util.thread.AsyncExecutor;
 import org.spout.engine.util.thread.AsyncExecutorUtils;
 import org.spout.engine.util.thread.ThreadsafetyManager;
@@ -442,8 +445,6 @@ public final class SpoutScheduler implements Scheduler {
 				engine.getLogger().log(Level.SEVERE, "Error while shutting down engine: {0}", ex.getMessage());
 			}
 
-			NetworkSendThreadPool.shutdown();
-
 			runFinalTasks();
 
 		}
@@ -698,31 +699,33 @@ public final class SpoutScheduler implements Scheduler {
 		int startUpdates = updates.get();
 		while (passStartUpdates < updates.get() && updates.get() < startUpdates + UPDATE_THRESHOLD) {
 			passStartUpdates = updates.get();
-			for (int sequence = -1; sequence < 27 && updates.get() < startUpdates + UPDATE_THRESHOLD; sequence++) {
-				if (sequence == -1) {
-					TickStage.setStage(TickStage.PHYSICS);
-				} else {
-					TickStage.setStage(TickStage.GLOBAL_PHYSICS);
-				}
 
-				for (AsyncExecutor e : executors) {
-					if (!e.doPhysics(sequence)) {
-						throw new IllegalStateException("Attempt made to do physics while the previous operation was still active");
-					}
+			TickStage.setStage(TickStage.PHYSICS);
+			for (AsyncExecutor e : executors) {
+				if (!e.doPhysics(-1)) {
+					throw new IllegalStateException("Attempt made to do physics while the previous operation was still active");
 				}
-
-				boolean joined = false;
-				while (!joined) {
-					try {
-						AsyncExecutorUtils.pulseJoinAll(executors, (PULSE_EVERY << 4));
-						joined = true;
-					} catch (TimeoutException e) {
-						if (((SpoutEngine)Spout.getEngine()).isSetupComplete()) {
-							logLongDurationTick("Local Physics", executors);
+			}
+			joinUpdates(executors, "Local Physics");
+
+			TickStage.setStage(TickStage.GLOBAL_PHYSICS);
+			List<List<AsyncExecutor>> groups = planGlobalUpdates(executors, true);
+			int stages = groups == null ? 27 : groups.size();
+			for (int stage = 0; stage < stages && updates.get() < startUpdates + UPDATE_THRESHOLD; stage++) {
+				if (groups == null) {
+					for (AsyncExecutor e : executors) {
+						if (!e.doPhysics(stage)) {
+							throw new IllegalStateException("Attempt made to do physics while the previous operation was still active");
+						}
+					}
+				} else {
+					for (AsyncExecutor e : groups.get(stage)) {
+						if (!e.doPhysics(e.getManager().getSequence())) {
+							throw new IllegalStateException("Attempt made to do physics while the previous operation was still active");
 						}
 					}
 				}
-
+				joinUpdates(executors, "Global Physics");
 			}
 		}
 	}
@@ -744,34 +747,90 @@ public final class SpoutScheduler implements Scheduler {
 
 		while (passStartUpdates < updates.get() && updates.get() < startUpdates + UPDATE_THRESHOLD) {
 			passStartUpdates = updates.get();
+			long threshold = earliestTime + PULSE_EVERY - 1;
 
-			for (int sequence = -1; sequence < 27 && updates.get() < startUpdates + UPDATE_THRESHOLD; sequence++) {
-				if (sequence == -1) {
-					TickStage.setStage(TickStage.DYNAMIC_BLOCKS);
+			TickStage.setStage(TickStage.DYNAMIC_BLOCKS);
+			for (AsyncExecutor e : executors) {
+				if (!e.doDynamicUpdates(threshold, -1)) {
+					throw new IllegalStateException("Attempt made to pulse while the previous operation was still active");
+				}
+			}
+			joinUpdates(executors, "Local Dynamic Blocks");
+
+			TickStage.setStage(TickStage.GLOBAL_DYNAMIC_BLOCKS);
+			List<List<AsyncExecutor>> groups = planGlobalUpdates(executors, false);
+			int stages = groups == null ? 27 : groups.size();
+			for (int stage = 0; stage < stages && updates.get() < startUpdates + UPDATE_THRESHOLD; stage++) {
+				if (groups == null) {
+					for (AsyncExecutor e : executors) {
+						if (!e.doDynamicUpdates(threshold, stage)) {
+							throw new IllegalStateException("Attempt made to pulse while the previous operation was still active");
+						}
+					}
 				} else {
-					TickStage.setStage(TickStage.GLOBAL_DYNAMIC_BLOCKS);
+					for (AsyncExecutor e : groups.get(stage)) {
+						if (!e.doDynamicUpdates(threshold, e.getManager().getSequence())) {
+							throw new IllegalStateException("Attempt made to pulse while the previous operation was still active");
+						}
+					}
 				}
-				long threshold = earliestTime + PULSE_EVERY - 1;
+				joinUpdates(executors, "Global Dynamic Blocks");
+			}
+		}
+	}
 
-				for (AsyncExecutor e : executors) {
-					if (!e.doDynamicUpdates(threshold, sequence)) {
-						throw new IllegalStateException("Attempt made to pulse while the previous operation was still active");
-					}
+	private void joinUpdates(List<AsyncExecutor> executors, String stageName) throws InterruptedException {
+		boolean joined = false;
+		while (!joined) {
+			try {
+				AsyncExecutorUtils.pulseJoinAll(executors, (PULSE_EVERY << 4));
+				joined = true;
+			} catch (TimeoutException e) {
+				if (((SpoutEngine)Spout.getEngine()).isSetupComplete()) {
+					logLongDurationTick(stageName, executors);
 				}
+			}
+		}
+	}
 
-				boolean joined = false;
-				while (!joined) {
-					try {
-						AsyncExecutorUtils.pulseJoinAll(executors, (PULSE_EVERY << 4));
-						joined = true;
-					} catch (TimeoutException e) {
-						if (((SpoutEngine)Spout.getEngine()).isSetupComplete()) {
-							logLongDurationTick("Local Dynamic Blocks", executors);
-						}
-					}
+	/**
+	 * Groups the executors with pending global updates, so that executors of which the updates touch the same
+	 * regions never run at the same time.
+	 * 
+	 * @param executors all executors
+	 * @param physics true for block physics, false for dynamic updates
+	 * @return the groups to run in order, or null to run all 27 sequences
+	 */
+	private List<List<AsyncExecutor>> planGlobalUpdates(List<AsyncExecutor> executors, boolean physics) {
+		if (!SpoutConfiguration.FOOTPRINT_SCHEDULING.getBoolean()) {
+			return null;
+		}
+		List<AsyncExecutor> pending = new ArrayList<AsyncExecutor>();
+		List<TLongSet> footprints = new ArrayList<TLongSet>();
+		for (AsyncExecutor e : executors) {
+			TLongSet footprint = new TLongHashSet();
+			if (e.getManager().addGlobalFootprint(physics, footprint)) {
+				if (e.getManager().getSequence() < 0) {
+					// Only managers with a sequence can run global updates on their own
+					return null;
 				}
+				pending.add(e);
+				footprints.add(footprint);
+			}
+		}
+		int[] sequences = new int[pending.size()];
+		for (int i = 0; i < sequences.length; i++) {
+			sequences[i] = pending.get(i).getManager().getSequence();
+		}
+		int[] planned = GlobalUpdatePlanner.plan(sequences, footprints.toArray(new TLongSet[footprints.size()]));
+		List<List<AsyncExecutor>> groups = new ArrayList<List<AsyncExecutor>>();
+		for (int i = 0; i < planned.length; i++) {
+			while (groups.size() <= planned[i]) {
+				groups.add(new ArrayList<AsyncExecutor>());
 			}
+			groups.get(planned[i]).add(pending.get(i));
 		}
+		return groups;
 	}
 
 	private void doLighting(List<AsyncExecutor> executors) throws InterruptedException {
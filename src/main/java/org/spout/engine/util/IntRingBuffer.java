@@ -0,0 +1,106 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.util;
+
+/**
+ * A first-in first-out queue of primitive ints, backed by an array that grows when full.<br>
+ * The array is never shrunk, so a buffer that is reused does not allocate once it has reached its working size.<br>
+ * This class is not thread safe.
+ */
+public class IntRingBuffer {
+	private int[] buffer;
+	private int head = 0;
+	private int size = 0;
+
+	public IntRingBuffer() {
+		this(64);
+	}
+
+	public IntRingBuffer(int capacity) {
+		int length = 1;
+		while (length < capacity) {
+			length <<= 1;
+		}
+		this.buffer = new int[length];
+	}
+
+	/**
+	 * Adds a value to the end of the buffer
+	 * @param value to add
+	 */
+	public void offer(int value) {
+		if (size == buffer.length) {
+			grow();
+		}
+		buffer[(head + size) & (buffer.length - 1)] = value;
+		size++;
+	}
+
+	/**
+	 * Removes the value at the start of the buffer<br>
+	 * The buffer must not be empty.
+	 * @return the value
+	 */
+	public int poll() {
+		if (size == 0) {
+			throw new IllegalStateException("Buffer is empty");
+		}
+		int value = buffer[head];
+		head = (head + 1) & (buffer.length - 1);
+		size--;
+		return value;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of values that fit in the buffer before it has to grow
+	 */
+	public int capacity() {
+		return buffer.length;
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	private void grow() {
+		int[] newBuffer = new int[buffer.length << 1];
+		int tail = buffer.length - head;
+		System.arraycopy(buffer, head, newBuffer, 0, tail);
+		System.arraycopy(buffer, 0, newBuffer, tail, head);
+		buffer = newBuffer;
+		head = 0;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.util;
+
+/**
+ * A queue of packed block coordinates, bucketed by light level.<br>
+ * Coordinates are returned highest level first, so when spreading light every block is raised to its final
+ * level before it spreads light itself, and no block spreads light more than once.<br>
+ * This class is not thread safe.
+ */
+public class LightLevelQueue {
+	private final IntRingBuffer[] buckets = new IntRingBuffer[16];
+	private int highest = -1;
+	private int size = 0;
+
+	public LightLevelQueue() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new IntRingBuffer();
+		}
+	}
+
+	/**
+	 * Adds a key to the bucket of the light level given
+	 * @param key of the block
+	 * @param level of the light, 0 - 15
+	 */
+	public void offer(int key, int level) {
+		level &= 0xF;
+		buckets[level].offer(key);
+		if (level > highest) {
+			highest = level;
+		}
+		size++;
+	}
+
+	/**
+	 * Gets the light level of the key that will be returned by the next {@link #poll()}
+	 * @return the level, or -1 if the queue is empty
+	 */
+	public int peekLevel() {
+		while (highest >= 0 && buckets[highest].isEmpty()) {
+			highest--;
+		}
+		return highest;
+	}
+
+	/**
+	 * Removes a key of the highest light level in the queue<br>
+	 * The queue must not be empty.
+	 * @return the key
+	 */
+	public int poll() {
+		int level = peekLevel();
+		if (level < 0) {
+			throw new IllegalStateException("Queue is empty");
+		}
+		size--;
+		return buckets[level].poll();
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		for (IntRingBuffer bucket : buckets) {
+			bucket.clear();
+		}
+		highest = -1;
+		size = 0;
+	}
+}
@@ -26,6 +26,8 @@
  */
 package org.spout.engine.util.thread;
 
+import gnu.trove.set.TLongSet;
+
 import org.spout.api.Engine;
 import org.spout.api.scheduler.Scheduler;
 import org.spout.engine.SpoutEngine;
@@ -136,6 +138,18 @@ public abstract class AsyncManager {
 		return -1;
 	}
 	
+	/**
+	 * Adds the regions touched by the pending global dynamic updates or block physics of this manager.<br>
+	 * This is called from the main thread between the local and global stages.
+	 * 
+	 * @param physics true for block physics, false for dynamic updates
+	 * @param regions the set to add the packed region coordinates to
+	 * @return true if this manager has pending global updates
+	 */
+	public boolean addGlobalFootprint(boolean physics, TLongSet regions) {
+		return false;
+	}
+
 	/**
 	 * This method is called to determine the earliest available dynamic update time
 	 * 
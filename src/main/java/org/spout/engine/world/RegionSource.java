@@ -107,6 +107,7 @@ public class RegionSource implements Iterable<Region> {
 							Spout.getEventManager().callDelayedEvent(new RegionUnloadEvent(world, r));
 							
 							r.unlinkNeighbours();
+							r.releasePhysics();
 						} else {
 							Spout.getLogger().info("Tried to remove region " + r + " but region removal failed");
 						}
@@ -30,10 +30,10 @@ import gnu.trove.map.TShortObjectMap;
 import gnu.trove.map.hash.TShortObjectHashMap;
 import gnu.trove.procedure.TObjectProcedure;
 import gnu.trove.procedure.TShortObjectProcedure;
+import gnu.trove.set.TLongSet;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -102,6 +102,8 @@ import org.spout.engine.SpoutClient;
 import org.spout.engine.SpoutConfiguration;
 import org.spout.engine.entity.SpoutEntity;
 import org.spout.engine.entity.SpoutPlayer;
+import org.spout.engine.protocol.ChunkPayloadCache;
+import org.spout.engine.scheduler.GlobalUpdatePlanner;
 import org.spout.engine.scheduler.SpoutScheduler;
 import org.spout.engine.util.thread.snapshotable.Snapshotable;
 import org.spout.engine.world.physics.PhysicsQueue;
@@ -120,6 +122,9 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 	private final ConcurrentLinkedQueue<SpoutEntity> expiredObserversQueue = new ConcurrentLinkedQueue<SpoutEntity>();
 	private final LinkedHashSet<SpoutEntity> expiredObservers = new LinkedHashSet<SpoutEntity>();
 	private final Set<SpoutEntity> unmodifiableExpiredObservers = Collections.unmodifiableSet(expiredObservers);
+	private final ConcurrentLinkedQueue<SpoutPlayer> newObservingPlayersQueue = new ConcurrentLinkedQueue<SpoutPlayer>();
+	private final LinkedHashSet<SpoutPlayer> newObservingPlayers = new LinkedHashSet<SpoutPlayer>();
+	private final Set<SpoutPlayer> unmodifiableNewObservingPlayers = Collections.unmodifiableSet(newObservingPlayers);
 	/**
 	 * Not thread safe, synchronize on access
 	 */
@@ -229,6 +234,10 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 	 * chunk.
 	 */
 	private final PhysicsQueue physicsQueue;
+	/**
+	 * The encoded network payload of the chunk, shared by all sessions the chunk is sent to
+	 */
+	private final ChunkPayloadCache payloadCache = new ChunkPayloadCache();
 	private final SpoutScheduler scheduler;
 	/**
 	 * Keeps track if the chunk has been modified since it's last save
@@ -829,7 +838,28 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		z &= BLOCKS.MASK;
 
 		checkChunkLoaded();
-		int index = getBlockIndex(x, y, z);
+		byte oldLight = setBlockBlockLightRaw(getBlockIndex(x, y, z), light);
+		if (light > oldLight) {
+			// light increased
+			this.addBlockLightOperation(x, y, z, SpoutWorldLighting.GREATER);
+		} else if (light < oldLight) {
+			// light decreased
+			this.addBlockLightOperation(x, y, z, SpoutWorldLighting.LESSER);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the block light of a block without queuing lighting operations<br>
+	 * Used by the lighting model, which spreads light inside the chunk it resolves itself.
+	 * @param index of the block
+	 * @param light level to set
+	 * @return the previous light level
+	 */
+	protected byte setBlockBlockLightRaw(int index, byte light) {
+		light &= 0xF;
 		byte oldLight;
 		if ((index & 1) == 1) {
 			index = index >> 1;
@@ -840,18 +870,11 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 			oldLight = NibblePairHashed.key2(blockLight[index]);
 			blockLight[index] = NibblePairHashed.setKey2(blockLight[index], light);
 		}
-		if (light > oldLight) {
-			// light increased
-			this.addBlockLightOperation(x, y, z, SpoutWorldLighting.GREATER);
-		} else if (light < oldLight) {
-			// light decreased
-			this.addBlockLightOperation(x, y, z, SpoutWorldLighting.LESSER);
-		} else {
-			return false;
+		if (oldLight != light) {
+			this.notifyLightChange();
+			this.setModified();
 		}
-		this.notifyLightChange();
-		this.setModified();
-		return true;
+		return oldLight;
 	}
 
 	@Override
@@ -879,7 +902,28 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		z &= BLOCKS.MASK;
 
 		checkChunkLoaded();
-		int index = getBlockIndex(x, y, z);
+		byte oldLight = setBlockSkyLightRaw(getBlockIndex(x, y, z), light);
+		if (light > oldLight) {
+			// light increased
+			this.addSkyLightOperation(x, y, z, SpoutWorldLighting.GREATER);
+		} else if (light < oldLight) {
+			// light decreased
+			this.addSkyLightOperation(x, y, z, SpoutWorldLighting.LESSER);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sets the sky light of a block without queuing lighting operations<br>
+	 * Used by the lighting model, which spreads light inside the chunk it resolves itself.
+	 * @param index of the block
+	 * @param light level to set
+	 * @return the previous light level
+	 */
+	protected byte setBlockSkyLightRaw(int index, byte light) {
+		light &= 0xF;
 		byte oldLight;
 		if ((index & 1) == 1) {
 			index = index >> 1;
@@ -890,19 +934,11 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 			oldLight = NibblePairHashed.key2(skyLight[index]);
 			skyLight[index] = NibblePairHashed.setKey2(skyLight[index], light);
 		}
-
-		if (light > oldLight) {
-			// light increased
-			this.addSkyLightOperation(x, y, z, SpoutWorldLighting.GREATER);
-		} else if (light < oldLight) {
-			// light decreased
-			this.addSkyLightOperation(x, y, z, SpoutWorldLighting.LESSER);
-		} else {
-			return false;
+		if (oldLight != light) {
+			this.notifyLightChange();
+			this.setModified();
 		}
-		this.notifyLightChange();
-		this.setModified();
-		return true;
+		return oldLight;
 	}
 
 	@Override
@@ -944,6 +980,14 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		}
 	}
 
+	/**
+	 * Gets the cache of the encoded network payload of this chunk
+	 * @return the cache
+	 */
+	public ChunkPayloadCache getPayloadCache() {
+		return payloadCache;
+	}
+
 	@Override
 	public void queueBlockPhysics(int x, int y, int z, EffectRange range) {
 		queueBlockPhysics(x, y, z, range, null);
@@ -976,7 +1020,7 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		physicsQueue.queueForUpdate(rx, ry, rz, oldMaterial);
 	}
 
-	private int getBlockIndex(int x, int y, int z) {
+	protected int getBlockIndex(int x, int y, int z) {
 		return (y & BLOCKS.MASK) << BLOCKS.DOUBLE_BITS | (z & BLOCKS.MASK) << BLOCKS.BITS | (x & BLOCKS.MASK);
 	}
 
@@ -1152,11 +1196,15 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 			case NO_BLOCK_DATA:
 				break;
 			case BLOCK_IDS_ONLY:
-				blockIds = blockStore.getBlockIdArray();
+				if (!palette) {
+					blockIds = blockStore.getBlockIdArray();
+				}
 				break;
 			case BLOCKS_ONLY:
-				blockIds = blockStore.getBlockIdArray();
-				blockData = blockStore.getDataArray();
+				if (!palette) {
+					blockIds = blockStore.getBlockIdArray();
+					blockData = blockStore.getDataArray();
+				}
 				break;
 			case LIGHT_ONLY:
 				blockLightCopy = new byte[blockLight.length];
@@ -1166,8 +1214,10 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 				lightBuffersCopy = copyLightBuffers();
 				break;
 			case BOTH:
-				blockIds = blockStore.getBlockIdArray();
-				blockData = blockStore.getDataArray();
+				if (!palette) {
+					blockIds = blockStore.getBlockIdArray();
+					blockData = blockStore.getDataArray();
+				}
 
 				blockLightCopy = new byte[blockLight.length];
 				System.arraycopy(blockLight, 0, blockLightCopy, 0, blockLight.length);
@@ -1210,6 +1260,7 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		}
 		if (observers.add((SpoutEntity) entity) && (entity instanceof SpoutPlayer)) {
 			observingPlayers.add((SpoutPlayer) entity);
+			newObservingPlayersQueue.add((SpoutPlayer) entity);
 			Engine engine = Spout.getEngine();
 			if (engine.getPlatform() == Platform.CLIENT && ((SpoutClient) engine).getActivePlayer() == entity) {
 				setIsInViewDistance(true);
@@ -1272,7 +1323,15 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		return unmodifiableExpiredObservers;
 	}
 
-	public void updateExpiredObservers() {
+	/**
+	 * Gets the players that started observing during the most recent tick
+	 * @return the new observing players
+	 */
+	public Set<SpoutPlayer> getNewObservingPlayers() {
+		return unmodifiableNewObservingPlayers;
+	}
+
+	public void updateObserverChanges() {
 		expiredObservers.clear();
 		SpoutEntity e;
 		while ((e = expiredObserversQueue.poll()) != null) {
@@ -1280,6 +1339,13 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 				expiredObservers.add(e);
 			}
 		}
+		newObservingPlayers.clear();
+		SpoutPlayer p;
+		while ((p = newObservingPlayersQueue.poll()) != null) {
+			if (observingPlayers.contains(p)) {
+				newObservingPlayers.add(p);
+			}
+		}
 	}
 
 	public boolean compressIfRequired() {
@@ -1429,6 +1495,11 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		this.blockLight = null;
 		this.skyLight = null;
 		this.dataMap.clear();
+		this.payloadCache.invalidate();
+		// The observers slide their windows over the chunks they hold, a window holding this chunk has to be rebuilt
+		for (SpoutEntity observer : observers) {
+			observer.invalidateObserverWindow();
+		}
 		if (!oldState.isUnloaded()) {
 			deregisterFromColumn(saveColumn);
 		}
@@ -1804,60 +1875,9 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 	public void initLighting() {
 		this.isInitializingLighting.set(true);
 		this.notifyLightChange();
-		int x, y, z, minY, maxY, columnY;
-		// Lock operations to prevent premature handling
-		Arrays.fill(this.blockLight, (byte) 0);
-		Arrays.fill(this.skyLight, (byte) 0);
-
-		// Initialize block lighting
-		this.lightBlockSource = this.getSnapshot(SnapshotType.BLOCKS_ONLY, EntityType.NO_ENTITIES, ExtraData.NO_EXTRA_DATA);
-		for (x = 0; x < BLOCKS.SIZE; x++) {
-			for (y = 0; y < BLOCKS.SIZE; y++) {
-				for (z = 0; z < BLOCKS.SIZE; z++) {
-					if (!this.setBlockLight(x, y, z, this.lightBlockSource.getBlockMaterial(x, y, z).getLightLevel(this.lightBlockSource.getBlockData(x, y, z)), null)) {
-						// Refresh the block if at an edge to update from surrounding chunks
-						if (x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15) {
-							this.addBlockLightOperation(x, y, z, SpoutWorldLighting.REFRESH);
-						}
-					}
-				}
-			}
-		}
-
-		// Report the columns that require a sky-light update
-		minY = this.getBlockY();
-		maxY = minY + BLOCKS.SIZE;
-		for (x = 0; x < BLOCKS.SIZE; x++) {
-			for (z = 0; z < BLOCKS.SIZE; z++) {
-				columnY = this.column.getSurfaceHeight(x, z) + 1;
-				if (columnY < minY) {
-					// everything is air - ignore refresh checks
-					for (y = 0; y < BLOCKS.SIZE; y++) {
-						this.addSkyLightUpdates(x, y, z, 15);
-					}
-				} else {
-					// fill area above height with light
-					for (y = columnY; y < maxY; y++) {
-						this.addSkyLightUpdates(x, y, z, 15);
-					}
-
-					if (x == 0 || x == 15 || z == 0 || z == 15) {
-						// refresh area below height at the edges
-						for (y = columnY; y >= minY; y--) {
-							this.addSkyLightOperation(x, y, z, SpoutWorldLighting.REFRESH);
-						}
-					} else {
-						// Refresh top and bottom blocks
-						this.addSkyLightOperation(x, 0, z, SpoutWorldLighting.REFRESH);
-						if (columnY >= maxY) {
-							this.addSkyLightOperation(x, 15, z, SpoutWorldLighting.REFRESH);
-						}
-					}
-				}
-			}
-		}
+		// Compute the light of the whole chunk at once, only the faces are left for the lighting manager
+		SpoutChunkLightInitializer.get().initialize(this);
 		this.isInitializingLighting.set(false);
-		this.lightBlockSource = this; // stop using the snapshot from now on
 		this.registerWithLightingManager();
 	}
 
@@ -2346,6 +2366,31 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 		}
 	}
 
+	/**
+	 * Adds the regions touched by the multi-region physics updates queued in this chunk
+	 * 
+	 * @param regions the set to add the packed region coordinates to
+	 * @return true if there are multi-region physics updates queued
+	 */
+	protected boolean addGlobalPhysicsFootprint(TLongSet regions) {
+		UpdateQueue queue = physicsQueue.getMultiRegionQueue();
+		int size = queue.size();
+		SpoutRegion region = getRegion();
+		for (int i = 0; i < size; i++) {
+			int x = queue.getX(i);
+			int y = queue.getY(i);
+			int z = queue.getZ(i);
+			int packed = getBlockFullState(x, y, z);
+			BlockMaterial material = BlockFullState.getMaterial(packed);
+			if (GlobalUpdatePlanner.isChunkNeighbourhoodLocal(material.getMaximumPhysicsRange(BlockFullState.getData(packed)), x, y, z)) {
+				GlobalUpdatePlanner.addChunkNeighbourhood(regions, region.getX(), region.getY(), region.getZ(), x, y, z);
+			} else {
+				GlobalUpdatePlanner.addRegionNeighbourhood(regions, region.getX(), region.getY(), region.getZ());
+			}
+		}
+		return size > 0;
+	}
+
 	private boolean callOnUpdatePhysicsForRange(World world, int x, int y, int z, BlockMaterial oldMaterial, boolean force) {
 		int packed = getBlockFullState(x, y, z);
 		BlockMaterial material = BlockFullState.getMaterial(packed);
@@ -2399,6 +2444,7 @@ public class SpoutChunk extends Chunk implements Snapshotable {
 	}
 
 	public void setModified() {
+		payloadCache.invalidate();
 		if (chunkModified.compareAndSet(false, true)) {
 			setAutosaveTicks(new Random().nextInt(autosaveInterval * 2));
 		}
@@ -0,0 +1,244 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world;
+
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.material.block.BlockFace;
+import org.spout.api.material.block.BlockFaces;
+import org.spout.api.material.block.BlockFullState;
+import org.spout.api.util.bytebit.ByteBitSet;
+import org.spout.api.util.hashing.NibblePairHashed;
+
+/**
+ * Computes the initial sky and block light of a chunk in bulk.<br>
+ * <br>
+ * Sky light is seeded column-wise from the surface heights of the column, block light from the light level
+ * of emissive materials. Both are then propagated through the chunk using the same attenuation and occlusion
+ * rules as {@link SpoutWorldLightingModel}, and written to the light arrays of the chunk at once. Only the
+ * blocks on the faces of the chunk are queued with the world lighting manager, to resolve light crossing
+ * into and out of neighbouring chunks.<br>
+ * <br>
+ * Instances are not thread safe, use {@link #get()} to obtain the instance for the current thread.
+ */
+public class SpoutChunkLightInitializer {
+	private static final int SIZE = Chunk.BLOCKS.SIZE;
+	private static final int MASK = Chunk.BLOCKS.MASK;
+	private static final int VOLUME = Chunk.BLOCKS.VOLUME;
+	private static final BlockFace[] FACES = new BlockFace[6];
+	private static final BlockFace[] OPPOSITES = new BlockFace[6];
+	private static final int[] DX = new int[6];
+	private static final int[] DY = new int[6];
+	private static final int[] DZ = new int[6];
+	private static final ThreadLocal<SpoutChunkLightInitializer> INSTANCE = new ThreadLocal<SpoutChunkLightInitializer>() {
+		@Override
+		protected SpoutChunkLightInitializer initialValue() {
+			return new SpoutChunkLightInitializer();
+		}
+	};
+
+	static {
+		for (int i = 0; i < FACES.length; i++) {
+			FACES[i] = BlockFaces.NESWBT.get(i);
+			OPPOSITES[i] = FACES[i].getOpposite();
+			DX[i] = (int) FACES[i].getOffset().getX();
+			DY[i] = (int) FACES[i].getOffset().getY();
+			DZ[i] = (int) FACES[i].getOffset().getZ();
+		}
+	}
+
+	private final int[] states = new int[VOLUME];
+	private final byte[] emission = new byte[VOLUME];
+	private final byte[] skyLevels = new byte[VOLUME];
+	private final byte[] blockLevels = new byte[VOLUME];
+	private final byte[] packed = new byte[Chunk.BLOCKS.HALF_VOLUME];
+	private final int[] queue = new int[VOLUME];
+	private final boolean[] queued = new boolean[VOLUME];
+	private int queueHead;
+	private int queueSize;
+
+	/**
+	 * Gets the light initializer for the current thread
+	 * @return the initializer
+	 */
+	public static SpoutChunkLightInitializer get() {
+		return INSTANCE.get();
+	}
+
+	/**
+	 * Computes the light of the chunk, writes it to the light arrays and queues the chunk faces for resolution
+	 * @param chunk to initialize
+	 */
+	public void initialize(SpoutChunk chunk) {
+		for (int i = 0; i < VOLUME; i++) {
+			int state = chunk.getBlockFullState(i);
+			states[i] = state;
+			emission[i] = BlockFullState.getMaterial(state).getLightLevel(BlockFullState.getData(state));
+		}
+
+		// Block light is seeded by emissive blocks
+		for (int i = 0; i < VOLUME; i++) {
+			blockLevels[i] = emission[i];
+			if (emission[i] > 1) {
+				offer(i);
+			}
+		}
+		propagate(blockLevels, false);
+
+		// Sky light is seeded by the blocks above the surface of the column
+		int minY = chunk.getBlockY();
+		for (int x = 0; x < SIZE; x++) {
+			for (int z = 0; z < SIZE; z++) {
+				int start = chunk.column.getSurfaceHeight(x, z) + 1 - minY;
+				for (int y = 0; y < SIZE; y++) {
+					int index = index(x, y, z);
+					if (y >= start) {
+						skyLevels[index] = 15;
+						offer(index);
+					} else {
+						skyLevels[index] = 0;
+					}
+				}
+			}
+		}
+		propagate(skyLevels, true);
+
+		boolean lit = pack(skyLevels);
+		System.arraycopy(packed, 0, chunk.skyLight, 0, packed.length);
+		lit |= pack(blockLevels);
+		System.arraycopy(packed, 0, chunk.blockLight, 0, packed.length);
+
+		queueFaces(chunk);
+
+		if (lit) {
+			chunk.setModified();
+		}
+	}
+
+	private static int index(int x, int y, int z) {
+		return y << (Chunk.BLOCKS.DOUBLE_BITS) | z << Chunk.BLOCKS.BITS | x;
+	}
+
+	private void offer(int index) {
+		if (queued[index]) {
+			return;
+		}
+		queued[index] = true;
+		queue[(queueHead + queueSize) % VOLUME] = index;
+		queueSize++;
+	}
+
+	private int poll() {
+		int index = queue[queueHead];
+		queueHead = (queueHead + 1) % VOLUME;
+		queueSize--;
+		queued[index] = false;
+		return index;
+	}
+
+	/**
+	 * Spreads the light of the queued blocks through the chunk
+	 */
+	private void propagate(byte[] levels, boolean sky) {
+		while (queueSize > 0) {
+			int index = poll();
+			int light = levels[index];
+			if (light <= 1) {
+				continue;
+			}
+			int state = states[index];
+			ByteBitSet occlusion = BlockFullState.getMaterial(state).getOcclusion(BlockFullState.getData(state));
+			boolean source = !sky && emission[index] > 0;
+			int x = index & MASK;
+			int y = index >> Chunk.BLOCKS.DOUBLE_BITS;
+			int z = (index >> Chunk.BLOCKS.BITS) & MASK;
+			for (int i = 0; i < FACES.length; i++) {
+				int nx = x + DX[i];
+				int ny = y + DY[i];
+				int nz = z + DZ[i];
+				if (nx < 0 || ny < 0 || nz < 0 || nx >= SIZE || ny >= SIZE || nz >= SIZE) {
+					continue;
+				}
+				if (!source && occlusion.get(FACES[i])) {
+					continue;
+				}
+				int neighbor = index(nx, ny, nz);
+				int neighborState = states[neighbor];
+				BlockMaterial material = BlockFullState.getMaterial(neighborState);
+				if (material.getOcclusion(BlockFullState.getData(neighborState)).get(OPPOSITES[i])) {
+					continue;
+				}
+				int newLight = light - (material.getOpacity() + 1);
+				if (newLight > levels[neighbor]) {
+					levels[neighbor] = (byte) newLight;
+					offer(neighbor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Packs the levels into the nibble array
+	 * @return true if any block has a light level above zero
+	 */
+	private boolean pack(byte[] levels) {
+		boolean lit = false;
+		for (int i = 0; i < packed.length; i++) {
+			byte even = levels[i << 1];
+			byte odd = levels[(i << 1) + 1];
+			lit |= (even | odd) != 0;
+			packed[i] = NibblePairHashed.setKey1(NibblePairHashed.setKey2((byte) 0, even), odd);
+		}
+		return lit;
+	}
+
+	/**
+	 * Queues the blocks on the faces of the chunk, so light is exchanged with the neighbouring chunks
+	 */
+	private void queueFaces(SpoutChunk chunk) {
+		for (int x = 0; x < SIZE; x++) {
+			boolean edgeX = x == 0 || x == MASK;
+			for (int y = 0; y < SIZE; y++) {
+				boolean edgeXY = edgeX || y == 0 || y == MASK;
+				for (int z = 0; z < SIZE; z++) {
+					if (!edgeXY && z != 0 && z != MASK) {
+						continue;
+					}
+					int index = index(x, y, z);
+					chunk.addSkyLightOperation(x, y, z, SpoutWorldLighting.REFRESH);
+					if (skyLevels[index] > 1) {
+						chunk.addSkyLightOperation(x, y, z, SpoutWorldLighting.GREATER);
+					}
+					chunk.addBlockLightOperation(x, y, z, SpoutWorldLighting.REFRESH);
+					if (blockLevels[index] > 1) {
+						chunk.addBlockLightOperation(x, y, z, SpoutWorldLighting.GREATER);
+					}
+				}
+			}
+		}
+	}
+}
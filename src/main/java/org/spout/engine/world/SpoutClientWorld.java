@@ -55,6 +55,13 @@ public class SpoutClientWorld extends SpoutWorld implements ClientWorld {
 	public void addChunk(int x, int y, int z, short[] blockIds, short[] blockData, byte[] blockLight, byte[] skyLight, BiomeManager biomes) {
 		getRegionFromBlock(x, y, z, LoadOption.LOAD_GEN).addChunk(x, y, z, blockIds, blockData, blockLight, skyLight, biomes);
 	}
+
+	/**
+	 * Adds a chunk received in the palette format, the palette and packed array are used for the block store directly
+	 */
+	public void addChunk(int x, int y, int z, int[] palette, int packedWidth, int[] packedBlockArray, byte[] blockLight, byte[] skyLight, BiomeManager biomes) {
+		getRegionFromBlock(x, y, z, LoadOption.LOAD_GEN).addChunk(x, y, z, palette, packedWidth, packedBlockArray, blockLight, skyLight, biomes);
+	}
 	
 	
 }
@@ -0,0 +1,290 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world;
+
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.util.hashing.Int21TripleHashed;
+
+/**
+ * A spatial index of the entities in a world, used for proximity queries.<br>
+ * <br>
+ * Entities are grouped by the chunk they are in. The index is built from the snapshot positions of the entities
+ * on the first query after a snapshot, so every query during a tick sees the same view.
+ */
+public class SpoutEntityIndex {
+	private final SpoutWorld world;
+	private volatile Grid grid = null;
+
+	public SpoutEntityIndex(SpoutWorld world) {
+		this.world = world;
+	}
+
+	/**
+	 * Marks the index as out of date, it is rebuilt on the next query.<br>
+	 * This should be called when the snapshot of the entities changes.
+	 */
+	public void invalidate() {
+		grid = null;
+	}
+
+	/**
+	 * Gets the entities within range of a position
+	 * @param position the center
+	 * @param ignore an entity to skip, or null
+	 * @param range of the search
+	 * @param type of the entities to find, or null for all entities
+	 * @return the entities, in no particular order
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Entity> List<T> getNearby(Point position, Entity ignore, int range, Class<T> type) {
+		final Grid grid = getGrid();
+		final List<T> found = new ArrayList<T>();
+		final double rangeSquared = (double) range * range;
+		final CellRange cells = grid.getCells(position, range);
+		for (int c = 0; c < cells.size; c++) {
+			final int start = cells.starts[c];
+			final int end = cells.ends[c];
+			for (int i = start; i < end; i++) {
+				if (grid.matches(i, ignore, type) && grid.distanceSquared(i, position) < rangeSquared) {
+					found.add((T) grid.entities[i]);
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Gets the entity closest to a position
+	 * @param position the center
+	 * @param ignore an entity to skip, or null
+	 * @param range of the search
+	 * @param type of the entity to find, or null for any entity
+	 * @return the closest entity within range, or null if there is none
+	 */
+	public <T extends Entity> T getNearest(Point position, Entity ignore, int range, Class<T> type) {
+		List<T> nearest = getNearest(position, ignore, range, 1, type);
+		return nearest.isEmpty() ? null : nearest.get(0);
+	}
+
+	/**
+	 * Gets the entities closest to a position
+	 * @param position the center
+	 * @param ignore an entity to skip, or null
+	 * @param range of the search
+	 * @param count the maximum number of entities to return
+	 * @param type of the entities to find, or null for all entities
+	 * @return at most count entities within range, closest first
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Entity> List<T> getNearest(Point position, Entity ignore, int range, int count, Class<T> type) {
+		if (count <= 0) {
+			return Collections.emptyList();
+		}
+		final Grid grid = getGrid();
+		// The closest entities so far, sorted by distance
+		final int[] best = new int[count];
+		final double[] bestDistance = new double[count];
+		int size = 0;
+		final double rangeSquared = (double) range * range;
+		final CellRange cells = grid.getCells(position, range);
+		for (int c = 0; c < cells.size; c++) {
+			final int start = cells.starts[c];
+			final int end = cells.ends[c];
+			for (int i = start; i < end; i++) {
+				if (!grid.matches(i, ignore, type)) {
+					continue;
+				}
+				final double distance = grid.distanceSquared(i, position);
+				if (distance >= rangeSquared || (size == count && distance >= bestDistance[size - 1])) {
+					continue;
+				}
+				int j = size == count ? size - 1 : size++;
+				while (j > 0 && bestDistance[j - 1] > distance) {
+					best[j] = best[j - 1];
+					bestDistance[j] = bestDistance[j - 1];
+					j--;
+				}
+				best[j] = i;
+				bestDistance[j] = distance;
+			}
+		}
+		final List<T> found = new ArrayList<T>(size);
+		for (int i = 0; i < size; i++) {
+			found.add((T) grid.entities[best[i]]);
+		}
+		return found;
+	}
+
+	private Grid getGrid() {
+		Grid grid = this.grid;
+		if (grid == null) {
+			synchronized (this) {
+				grid = this.grid;
+				if (grid == null) {
+					grid = new Grid(world);
+					this.grid = grid;
+				}
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * The entities of the world, sorted by chunk
+	 */
+	private static class Grid {
+		private final Entity[] entities;
+		private final float[] x, y, z;
+		/**
+		 * The range of each occupied chunk in the entity arrays, the end of the range is the start of the next chunk
+		 */
+		private final TLongIntHashMap cellStarts = new TLongIntHashMap();
+		private final TLongIntHashMap cellEnds = new TLongIntHashMap();
+
+		public Grid(SpoutWorld world) {
+			final List<Entity> all = new ArrayList<Entity>();
+			for (Region region : world.getRegions()) {
+				all.addAll(region.getAll());
+			}
+			final int size = all.size();
+			final long[] keys = new long[size];
+			final TLongIntHashMap counts = new TLongIntHashMap();
+			for (int i = 0; i < size; i++) {
+				Point position = all.get(i).getTransform().getPosition();
+				keys[i] = Int21TripleHashed.key(position.getFloorX() >> Chunk.BLOCKS.BITS, position.getFloorY() >> Chunk.BLOCKS.BITS, position.getFloorZ() >> Chunk.BLOCKS.BITS);
+				counts.adjustOrPutValue(keys[i], 1, 1);
+			}
+			int start = 0;
+			for (TLongIntIterator itr = counts.iterator(); itr.hasNext();) {
+				itr.advance();
+				cellStarts.put(itr.key(), start);
+				start += itr.value();
+				cellEnds.put(itr.key(), start);
+			}
+			// Fill each chunk from its start
+			final TLongIntHashMap next = new TLongIntHashMap(cellStarts);
+			entities = new Entity[size];
+			x = new float[size];
+			y = new float[size];
+			z = new float[size];
+			for (int i = 0; i < size; i++) {
+				final int index = next.adjustOrPutValue(keys[i], 1, 1) - 1;
+				final Entity entity = all.get(i);
+				final Point position = entity.getTransform().getPosition();
+				entities[index] = entity;
+				x[index] = position.getX();
+				y[index] = position.getY();
+				z[index] = position.getZ();
+			}
+		}
+
+		public boolean matches(int i, Entity ignore, Class<?> type) {
+			final Entity entity = entities[i];
+			return entity != ignore && (type == null || type.isInstance(entity));
+		}
+
+		public double distanceSquared(int i, Point position) {
+			final double dx = x[i] - position.getX();
+			final double dy = y[i] - position.getY();
+			final double dz = z[i] - position.getZ();
+			return dx * dx + dy * dy + dz * dz;
+		}
+
+		/**
+		 * Gets the ranges of the occupied chunks which may contain entities within range of a position
+		 */
+		public CellRange getCells(Point position, int range) {
+			final int minX = (int) Math.floor(position.getX() - range) >> Chunk.BLOCKS.BITS;
+			final int minY = (int) Math.floor(position.getY() - range) >> Chunk.BLOCKS.BITS;
+			final int minZ = (int) Math.floor(position.getZ() - range) >> Chunk.BLOCKS.BITS;
+			final int maxX = (int) Math.floor(position.getX() + range) >> Chunk.BLOCKS.BITS;
+			final int maxY = (int) Math.floor(position.getY() + range) >> Chunk.BLOCKS.BITS;
+			final int maxZ = (int) Math.floor(position.getZ() + range) >> Chunk.BLOCKS.BITS;
+			final long volume = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+			final CellRange cells = new CellRange();
+			if (volume > cellStarts.size()) {
+				// Fewer occupied chunks than chunks in range, check the occupied chunks instead
+				for (TLongIntIterator itr = cellStarts.iterator(); itr.hasNext();) {
+					itr.advance();
+					final long key = itr.key();
+					final int cx = Int21TripleHashed.key1(key);
+					final int cy = Int21TripleHashed.key2(key);
+					if (cx < minX || cx > maxX || cy < minY || cy > maxY) {
+						continue;
+					}
+					final int cz = Int21TripleHashed.key3(key);
+					if (cz < minZ || cz > maxZ) {
+						continue;
+					}
+					cells.add(itr.value(), cellEnds.get(key));
+				}
+				return cells;
+			}
+			for (int cx = minX; cx <= maxX; cx++) {
+				for (int cy = minY; cy <= maxY; cy++) {
+					for (int cz = minZ; cz <= maxZ; cz++) {
+						final long key = Int21TripleHashed.key(cx, cy, cz);
+						if (cellStarts.containsKey(key)) {
+							cells.add(cellStarts.get(key), cellEnds.get(key));
+						}
+					}
+				}
+			}
+			return cells;
+		}
+	}
+
+	/**
+	 * The ranges of the chunks to search in the entity arrays
+	 */
+	private static class CellRange {
+		private int[] starts = new int[8];
+		private int[] ends = new int[8];
+		private int size = 0;
+
+		public void add(int start, int end) {
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size << 1);
+				ends = Arrays.copyOf(ends, size << 1);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			size++;
+		}
+	}
+}
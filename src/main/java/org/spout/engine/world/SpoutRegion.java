@@ -27,6 +27,7 @@
 package org.spout.engine.world;
 
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.set.TLongSet;
 
 import java.io.File;
 import java.io.InputStream;
@@ -48,8 +49,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
-import javax.vecmath.Matrix3f;
-import javax.vecmath.Matrix4f;
 import javax.vecmath.Vector3f;
 
 import org.spout.api.Spout;
@@ -82,7 +81,9 @@ import org.spout.api.io.bytearrayarray.BAAWrapper;
 import org.spout.api.lighting.LightingManager;
 import org.spout.api.lighting.LightingRegistry;
 import org.spout.api.material.BlockMaterial;
+import org.spout.api.material.DynamicMaterial;
 import org.spout.api.material.DynamicUpdateEntry;
+import org.spout.api.material.Material;
 import org.spout.api.material.MaterialRegistry;
 import org.spout.api.material.block.BlockFace;
 import org.spout.api.material.range.EffectRange;
@@ -95,6 +96,7 @@ import org.spout.api.scheduler.TaskManager;
 import org.spout.api.scheduler.TickStage;
 import org.spout.api.util.bytebit.ByteBitSet;
 import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+import org.spout.api.util.hashing.Int21TripleHashed;
 import org.spout.api.util.list.concurrent.setqueue.SetQueue;
 import org.spout.api.util.list.concurrent.setqueue.SetQueueElement;
 import org.spout.api.util.map.TByteTripleObjectHashMap;
@@ -105,6 +107,7 @@ import org.spout.api.util.thread.annotation.LiveRead;
 import org.spout.engine.SpoutClient;
 import org.spout.engine.SpoutConfiguration;
 import org.spout.engine.entity.EntityManager;
+import org.spout.engine.entity.EntityTickLevel;
 import org.spout.engine.entity.SpoutEntity;
 import org.spout.engine.entity.SpoutPlayer;
 import org.spout.engine.entity.component.SpoutPhysicsComponent;
@@ -112,34 +115,27 @@ import org.spout.engine.filesystem.ChunkDataForRegion;
 import org.spout.engine.filesystem.versioned.ChunkFiles;
 import org.spout.engine.mesh.ChunkMesh;
 import org.spout.engine.renderer.WorldRenderer;
+import org.spout.engine.scheduler.GlobalUpdatePlanner;
 import org.spout.engine.scheduler.SpoutScheduler;
 import org.spout.engine.scheduler.SpoutTaskManager;
 import org.spout.engine.util.thread.AsyncExecutor;
 import org.spout.engine.util.thread.ThreadAsyncExecutor;
 import org.spout.engine.util.thread.snapshotable.SnapshotManager;
-import org.spout.engine.world.collision.RegionShape;
-import org.spout.engine.world.collision.SpoutPhysicsWorld;
+import org.spout.engine.world.collision.CollisionListeners;
+import org.spout.engine.world.collision.ContactBuffer;
+import org.spout.engine.world.collision.RegionBodies;
+import org.spout.engine.world.collision.RegionBoundary;
+import org.spout.engine.world.collision.RegionSimulation;
 import org.spout.engine.world.dynamic.DynamicBlockUpdate;
 import org.spout.engine.world.dynamic.DynamicBlockUpdateTree;
 
-import com.bulletphysics.collision.broadphase.BroadphaseInterface;
-import com.bulletphysics.collision.broadphase.DbvtBroadphase;
 import com.bulletphysics.collision.broadphase.Dispatcher;
-import com.bulletphysics.collision.dispatch.CollisionConfiguration;
-import com.bulletphysics.collision.dispatch.CollisionDispatcher;
-import com.bulletphysics.collision.dispatch.CollisionFlags;
 import com.bulletphysics.collision.dispatch.CollisionObject;
-import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
-import com.bulletphysics.collision.dispatch.GhostPairCallback;
 import com.bulletphysics.collision.narrowphase.ManifoldPoint;
 import com.bulletphysics.collision.narrowphase.PersistentManifold;
-import com.bulletphysics.collision.shapes.voxel.VoxelWorldShape;
 import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
 import com.bulletphysics.dynamics.RigidBody;
-import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
-import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
-import com.bulletphysics.linearmath.DefaultMotionState;
-import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
 
 public class SpoutRegion extends Region {
 	private AtomicInteger numberActiveChunks = new AtomicInteger();
@@ -214,12 +210,60 @@ public class SpoutRegion extends Region {
 
 	private final AtomicReference<SpoutRegion>[][][] neighbours;
 
+
 	//Physics
-	private final DiscreteDynamicsWorld simulation;
-	private final CollisionDispatcher dispatcher;
-	private final BroadphaseInterface broadphase;
-	private final CollisionConfiguration configuration;
-	private final SequentialImpulseConstraintSolver solver;
+	/**
+	 * Guards the simulation and the bodies in it
+	 */
+	private final Object physicsLock = new Object();
+	/**
+	 * The simulation, only present while the region has physics bodies
+	 */
+	private RegionSimulation simulation = null;
+	private final Vector3f gravity = new Vector3f(0, -9.81F, 0);
+	/**
+	 * The objects simulated for entities, guarded by the physics lock
+	 */
+	private final RegionBodies bodies = new RegionBodies();
+	private final Vector3f base = new Vector3f(getBlockX(), getBlockY(), getBlockZ());
+	private final RegionBodies.Departures departures = new RegionBodies.Departures() {
+		@Override
+		public boolean hasLeftRegion(CollisionObject object) {
+			final Region region = getRegion(object);
+			return region != null && region != SpoutRegion.this;
+		}
+
+		@Override
+		public boolean hasLeftWorld(CollisionObject object) {
+			final Region region = getRegion(object);
+			return region != null && region.getWorld() != getWorld();
+		}
+
+		private Region getRegion(CollisionObject object) {
+			return object.getUserPointer() instanceof Entity ? ((Entity) object.getUserPointer()).getRegion() : null;
+		}
+	};
+	private final List<CollisionObject> departed = new ArrayList<CollisionObject>();
+	/**
+	 * The contact points of the last step, reused between steps
+	 */
+	private final ContactBuffer contacts = new ContactBuffer();
+	private final Vector3f contactA = new Vector3f(), contactB = new Vector3f();
+	private volatile boolean physicsWakeRequested = false;
+	/**
+	 * Physics components with changes to apply before the next step
+	 */
+	private final ConcurrentLinkedQueue<SpoutPhysicsComponent> physicsCommandQueue = new ConcurrentLinkedQueue<SpoutPhysicsComponent>();
+	/**
+	 * Physics components of entities in this region with a transform from a step of another region
+	 */
+	private final ConcurrentLinkedQueue<SpoutPhysicsComponent> physicsTransformQueue = new ConcurrentLinkedQueue<SpoutPhysicsComponent>();
+	/**
+	 * Mirrors bodies near the edges into the neighbouring regions, guarded by the physics lock
+	 */
+	private final RegionBoundary boundary = new RegionBoundary();
+	private final List<RegionBoundary> proxyTargets = new ArrayList<RegionBoundary>();
+	private final List<SpoutPhysicsComponent> handoffs = new ArrayList<SpoutPhysicsComponent>();
 
 	@SuppressWarnings("unchecked")
 	public SpoutRegion(SpoutWorld world, float x, float y, float z, RegionSource source) {
@@ -289,31 +333,25 @@ public class SpoutRegion extends Region {
 		}
 		taskManager = new SpoutTaskManager(world.getEngine().getScheduler(), false, t, world.getAge());
 		scheduler = (SpoutScheduler) (Spout.getEngine().getScheduler());
-
-		//Physics
-		broadphase = new DbvtBroadphase();
-		broadphase.getOverlappingPairCache().setInternalGhostPairCallback(new GhostPairCallback());
-		configuration = new DefaultCollisionConfiguration();
-		dispatcher = new CollisionDispatcher(configuration);
-		solver = new SequentialImpulseConstraintSolver();
-		simulation = new DiscreteDynamicsWorld(dispatcher, broadphase, solver, configuration);
-		simulation.setGravity(new Vector3f(0, -9.81F, 0));
-		simulation.getDispatchInfo().allowedCcdPenetration = 10f;
-		simulation.getSolverInfo().splitImpulse = true;
-		final SpoutPhysicsWorld physicsInfo = new SpoutPhysicsWorld(this);
-		final VoxelWorldShape simulationShape = new RegionShape(physicsInfo, this);
-		final Matrix3f rot = new Matrix3f();
-		rot.setIdentity();
-		final DefaultMotionState regionMotionState = new DefaultMotionState(new Transform(new Matrix4f(rot, new Vector3f(0, 0, 0), 1.0f)));
-		final RigidBodyConstructionInfo regionBodyInfo = new RigidBodyConstructionInfo(0, regionMotionState, simulationShape, new Vector3f(0f, 0f, 0f));
-		final RigidBody regionBody = new RigidBody(regionBodyInfo);
-		//TODO Recheck Terasology code for more correct flags
-		regionBody.setCollisionFlags(CollisionFlags.STATIC_OBJECT | regionBody.getCollisionFlags());
-		simulation.addRigidBody(regionBody);
 	}
 
+	/**
+	 * Gets the dynamics world of this region.<br>
+	 * The world is created when the first physics body is added and released when the last one is removed.
+	 * @return the dynamics world, or null if the region has no physics bodies
+	 */
 	public DiscreteDynamicsWorld getSimulation() {
-		return simulation;
+		synchronized(physicsLock) {
+			return simulation == null ? null : simulation.getWorld();
+		}
+	}
+
+	/**
+	 * Gets the lock which guards the simulation of this region
+	 * @return the lock
+	 */
+	public Object getSimulationLock() {
+		return physicsLock;
 	}
 
 	public void addPhysics(Entity e) {
@@ -331,31 +369,164 @@ public class SpoutRegion extends Region {
 	}
 
 	public void addPhysics(PhysicsComponent physics) {
-		CollisionObject object = ((SpoutPhysicsComponent) physics).getCollisionObject();
+		final SpoutPhysicsComponent spoutPhysics = (SpoutPhysicsComponent) physics;
+		CollisionObject object = spoutPhysics.getCollisionObject();
 		if (object == null || object.getCollisionShape() == null) {
 			return;
 		}
-		synchronized(simulation) {
+		synchronized(physicsLock) {
+			// The body is still simulated by another region, which hands it off once the entity is far enough inside this region
+			if (spoutPhysics.getSimulatingRegion() != null) {
+				return;
+			}
+			if (simulation == null) {
+				simulation = RegionSimulation.obtain(this, gravity);
+			}
+			final DiscreteDynamicsWorld world = simulation.getWorld();
 			if (object instanceof RigidBody) {
-				simulation.addRigidBody((RigidBody) object);
-			} else {
-				simulation.addCollisionObject(object);
+				boundary.removeProxy(world, (RigidBody) object);
 			}
+			bodies.add(world, object);
+			spoutPhysics.setSimulatingRegion(this);
 		}
+		wakePhysics();
 	}
 
 	public void removePhysics(PhysicsComponent physics) {
-		CollisionObject object = ((SpoutPhysicsComponent) physics).getCollisionObject();
+		final SpoutPhysicsComponent spoutPhysics = (SpoutPhysicsComponent) physics;
+		CollisionObject object = spoutPhysics.getCollisionObject();
 		if (object == null || object.getCollisionShape() == null) {
 			return;
 		}
-		synchronized(simulation) {
+		// The body may not have been handed off to this region yet
+		SpoutRegion owner = spoutPhysics.getSimulatingRegion();
+		if (owner != this) {
+			if (owner != null) {
+				owner.removePhysics(physics);
+			}
+			return;
+		}
+		synchronized(physicsLock) {
+			if (simulation == null || spoutPhysics.getSimulatingRegion() != this) {
+				return;
+			}
+			bodies.remove(simulation.getWorld(), object);
 			if (object instanceof RigidBody) {
-				simulation.removeRigidBody((RigidBody) object);
-			} else {
-				simulation.removeCollisionObject(object);
+				boundary.unmirror((RigidBody) object);
+			}
+			spoutPhysics.setSimulatingRegion(null);
+		}
+	}
+
+	/**
+	 * Releases the simulation of this region, removing all bodies from it.<br>
+	 * Bodies of entities which already moved to another region are handed off to that region.
+	 * A new simulation is obtained when a body is added again.
+	 */
+	public void releasePhysics() {
+		final List<SpoutPhysicsComponent> handoffs = new ArrayList<SpoutPhysicsComponent>();
+		synchronized(physicsLock) {
+			if (simulation != null) {
+				ObjectArrayList<CollisionObject> objects = simulation.getWorld().getCollisionObjectArray();
+				for (int i = 0; i < objects.size(); i++) {
+					SpoutPhysicsComponent physics = getPhysics(objects.getQuick(i));
+					if (physics != null && physics.getSimulatingRegion() == this) {
+						physics.setSimulatingRegion(null);
+						if (physics.getOwner().getRegion() != this) {
+							handoffs.add(physics);
+						}
+					}
+				}
+				boundary.unmirrorAll();
+				boundary.clearProxies();
+				simulation.release();
+				simulation = null;
+				bodies.clear();
+			}
+		}
+		handOff(handoffs);
+	}
+
+	/**
+	 * Adds bodies to the simulations of the regions their entities are in.<br>
+	 * This must not be called while holding the simulation lock, the lock of the other region is needed.
+	 * @param handoffs the physics components of the bodies
+	 */
+	private static void handOff(List<SpoutPhysicsComponent> handoffs) {
+		for (int i = 0; i < handoffs.size(); i++) {
+			SpoutPhysicsComponent physics = handoffs.get(i);
+			SpoutRegion target = (SpoutRegion) physics.getOwner().getRegion();
+			if (target != null && !physics.getOwner().isRemoved()) {
+				target.addPhysics(physics);
+			}
+		}
+	}
+
+	private static SpoutPhysicsComponent getPhysics(CollisionObject object) {
+		// Proxies share the user pointer of the body they mirror
+		if (!RegionBoundary.isProxy(object) && object.getUserPointer() instanceof Entity) {
+			PhysicsComponent physics = ((Entity) object.getUserPointer()).get(PhysicsComponent.class);
+			if (physics instanceof SpoutPhysicsComponent) {
+				return (SpoutPhysicsComponent) physics;
 			}
 		}
+		return null;
+	}
+
+	/**
+	 * Gets the boundary which mirrors bodies of neighbouring regions into the simulation of this region
+	 * @return the boundary
+	 */
+	public RegionBoundary getBoundary() {
+		return boundary;
+	}
+
+	/**
+	 * Queues a physics component, so its changes are applied before the next step of the simulation
+	 * @param physics the component
+	 */
+	public void queuePhysicsCommands(SpoutPhysicsComponent physics) {
+		physicsCommandQueue.add(physics);
+		wakePhysics();
+	}
+
+	/**
+	 * Queues a physics component of an entity in this region, so the transform of a step of another region is applied to the entity
+	 * @param physics the component
+	 */
+	public void queuePhysicsTransform(SpoutPhysicsComponent physics) {
+		physicsTransformQueue.add(physics);
+	}
+
+	/**
+	 * Makes sure the simulation of this region is stepped during the next physics stage, even if all bodies are sleeping.<br>
+	 * This should be called whenever a body is changed from outside the simulation.
+	 */
+	public void wakePhysics() {
+		physicsWakeRequested = true;
+	}
+
+	/**
+	 * Checks if the simulation of this region has no awake bodies to step.<br>
+	 * Static bodies never move and sleeping bodies only wake up through contact with an awake body or an explicit activation.
+	 * @return True if stepping the simulation can be skipped
+	 */
+	public boolean isPhysicsIdle() {
+		synchronized(physicsLock) {
+			if (simulation == null) {
+				return true;
+			}
+			if (physicsWakeRequested) {
+				return false;
+			}
+			final List<RigidBody> dynamicBodies = bodies.getDynamicBodies();
+			for (int i = 0; i < dynamicBodies.size(); i++) {
+				if (dynamicBodies.get(i).isActive()) {
+					return false;
+				}
+			}
+			return true;
+		}
 	}
 
 	public void startMeshGeneratorThread() {
@@ -923,7 +1094,12 @@ public class SpoutRegion extends Region {
 				//If the entity is not important (not an observer)
 				//And the entity is not visible to players, don't tick it
 				if (visible) { //TODO: Replace isImportant
-					ent.tick(dt);
+					//Entities further from players are ticked less often
+					EntityTickLevel level = EntityTickLevel.getLevel(ent);
+					getWorld().countTickLevel(level);
+					ent.tick(dt, level);
+				} else {
+					getWorld().countTickLevel(EntityTickLevel.FROZEN);
 				}
 			} catch (Exception e) {
 				Spout.getEngine().getLogger().severe("Unhandled exception during tick for " + ent.toString());
@@ -1012,99 +1188,254 @@ public class SpoutRegion extends Region {
 	 * @param dt
 	 */
 	private void updateDynamics(float dt) {
+		boolean release = false;
 		try {
-			synchronized(simulation) {
-				//Simulate physics
-				simulation.stepSimulation(dt, 2);
-				final Dispatcher dispatcher = simulation.getDispatcher();
-				int manifolds = dispatcher.getNumManifolds();
-				for (int i = 0; i < manifolds; i++) {
-					PersistentManifold contact = dispatcher.getManifoldByIndexInternal(i);
-					Object colliderRawA = contact.getBody0();
-					Object colliderRawB = contact.getBody1();
-					if (!(colliderRawA instanceof CollisionObject) || !(colliderRawB instanceof CollisionObject)) {
-						continue;
-					}
-					Object holderA = ((CollisionObject) colliderRawA).getUserPointer();
-					Object holderB = ((CollisionObject) colliderRawB).getUserPointer();
-					int contacts = contact.getNumContacts();
-
-					//Loop through the contact points
-					for (int j = 0; j < contacts; j++) {
-						//Grab a contact point
-						final ManifoldPoint bulletPoint = contact.getContactPoint(j);
-						//Contact point is no longer valid as negative values = still within contact so lets not resolve that to the API
-						if (bulletPoint.getDistance() > 0f) {
-							continue;
-						}
-						//3D position where colliderA contacted colliderB
-						Point contactPointA = new Point(MathHelper.toVector3(bulletPoint.getPositionWorldOnA(new Vector3f())), getWorld());
-						//3D position where colliderB contacted colliderA
-						Point contactPointB = new Point(MathHelper.toVector3(bulletPoint.getPositionWorldOnB(new Vector3f())), getWorld());
-
-						//Resolve Entity -> Entity Collisions
-						if (holderA instanceof Entity) {
-							//Entity was removed before the contact point could be resolved, break
-							if (((Entity) holderA).isRemoved()) {
-								break;
-							}
-							//HolderA: Entity
-							//HolderB: Entity
-							if (holderB instanceof Entity) {
-								//Entity was removed before the contact point could be resolved, break
-								if (((Entity) holderB).isRemoved()) {
-									break;
-								}
-								//Call onCollide for colliderA's EntityComponents
-								for (Component component : ((Entity) holderA).values()) {
-									if (component instanceof EntityComponent) {
-										((EntityComponent) component).onCollided(contactPointA, contactPointB, (Entity) holderB);
-									}
-								}
-								//Call onCollide for colliderB's EntityComponents
-								for (Component component : ((Entity) holderB).values()) {
-									if (component instanceof EntityComponent) {
-										((EntityComponent) component).onCollided(contactPointB, contactPointA, (Entity) holderA);
-									}
-								}
-							//HolderA: Entity
-							//HolderB: Block
-							} else if (holderB instanceof Block) {
-								//Call onCollide for colliderA's EntityComponents
-								for (Component component : ((Entity) holderA).values()) {
-									if (component instanceof EntityComponent) {
-										((EntityComponent) component).onCollided(contactPointA, contactPointB, (Block) holderB);
-									}
-								}
-								((Block) holderB).getMaterial().onCollided(contactPointB, contactPointA, (Entity) holderA);
-							}
-						//HolderA: Block
-						//HolderB: Entity
-						} else if (holderA instanceof Block) {
-							if (holderB instanceof Entity) {
-								//Entity was removed before the contact point could be resolved, break
-								if (((Entity) holderB).isRemoved()) {
-									break;
-								}
-								((Block) holderA).getMaterial().onCollided(contactPointA, contactPointB, (Entity) holderB);
-								//Call onCollide for colliderB's EntityComponents
-								for (Component component : ((Entity) holderB).values()) {
-									if (component instanceof EntityComponent) {
-										((EntityComponent) component).onCollided(contactPointB, contactPointA, (Block) holderA);
-									}
-								}
-							}
-						}
+			SpoutPhysicsComponent queued;
+			while ((queued = physicsTransformQueue.poll()) != null) {
+				queued.applyTransform(this);
+			}
+			final long lockStart;
+			synchronized(physicsLock) {
+				lockStart = System.nanoTime();
+				while ((queued = physicsCommandQueue.poll()) != null) {
+					queued.applyCommands(this);
+				}
+				if (simulation == null) {
+					boundary.clearProxies();
+				} else {
+					if (boundary.applyUpdates(simulation.getWorld())) {
+						physicsWakeRequested = true;
 					}
+					// Sleeping and static objects are handed off too, before the step so the stepped bodies are the ones this region simulates
+					collectHandoffs();
 				}
+				// Nothing can move or touch while all bodies sleep, the time is not accumulated either
+				// so a woken simulation continues from the current tick instead of catching up on idle time
+				if (isPhysicsIdle()) {
+					// Only the static region body is left, the world is released here rather than in removePhysics
+					// since bodies may be removed by collision callbacks while the manifolds are iterated
+					release = simulation != null && simulation.getWorld().getNumCollisionObjects() - boundary.getProxyCount() <= 1;
+				} else {
+					physicsWakeRequested = false;
+					stepDynamics(dt);
+				}
+				getWorld().addPhysicsLockTime(System.nanoTime() - lockStart);
+			}
+			// Releasing hands off bodies, which takes the locks of other regions
+			if (release) {
+				releasePhysics();
 			}
+			handOff(handoffs);
 		} catch (Exception e) {
 			synchronized(logLock) {
 				Spout.getLogger().log(Level.SEVERE, "Exception while executing physics in region " + getBase().toBlockString(), e);
 			}
+		} finally {
+			handoffs.clear();
+		}
+	}
+
+	/**
+	 * Removes the objects of entities which left this region from the simulation and adds them to the hand offs.<br>
+	 * Objects of entities in a neighbouring region are kept until they are the hand off margin outside this region,
+	 * the region of the entity applies the transforms of their steps.<br>
+	 * This must be called while holding the simulation lock.
+	 */
+	private void collectHandoffs() {
+		bodies.handOff(simulation.getWorld(), departures, base, BLOCKS.SIZE, SpoutConfiguration.HANDOFF_MARGIN.getInt(), departed);
+		for (int i = 0; i < departed.size(); i++) {
+			CollisionObject object = departed.get(i);
+			if (object instanceof RigidBody) {
+				boundary.unmirror((RigidBody) object);
+			}
+			SpoutPhysicsComponent physics = getPhysics(object);
+			if (physics != null) {
+				physics.setSimulatingRegion(null);
+				handoffs.add(physics);
+			}
 		}
+		departed.clear();
+	}
+
+	/**
+	 * Steps the simulation and collects the contacts of the step.<br>
+	 * This must be called while holding the simulation lock.
+	 * @param dt
+	 */
+	private void stepDynamics(float dt) {
+		final DiscreteDynamicsWorld world = simulation.getWorld();
+		final List<RigidBody> dynamicBodies = bodies.getDynamicBodies();
+		//Simulate physics
+		world.stepSimulation(dt, 2);
+		//Publish the bodies for lock free reads, bodies which fell asleep during the step have their velocities cleared too
+		for (int i = dynamicBodies.size() - 1; i >= 0; i--) {
+			RigidBody body = dynamicBodies.get(i);
+			SpoutPhysicsComponent physics = getPhysics(body);
+			if (physics == null) {
+				continue;
+			}
+			physics.publish();
+			//Bodies near the edge stay in the neighbouring simulations as proxies, so a body moving back and forth
+			//along the edge changes owner without leaving either simulation
+			mirror(body);
+		}
+		final Dispatcher dispatcher = world.getDispatcher();
+		final int manifolds = dispatcher.getNumManifolds();
+		try {
+			for (int i = 0; i < manifolds; i++) {
+				PersistentManifold contact = dispatcher.getManifoldByIndexInternal(i);
+				Object colliderRawA = contact.getBody0();
+				Object colliderRawB = contact.getBody1();
+				if (!(colliderRawA instanceof CollisionObject) || !(colliderRawB instanceof CollisionObject)) {
+					continue;
+				}
+				Object holderA = ((CollisionObject) colliderRawA).getUserPointer();
+				Object holderB = ((CollisionObject) colliderRawB).getUserPointer();
+				//Callbacks of proxies are called by the region owning their body, from its contact with the proxy of the other collider
+				final boolean proxyA = RegionBoundary.isProxy((CollisionObject) colliderRawA);
+				final boolean proxyB = RegionBoundary.isProxy((CollisionObject) colliderRawB);
+				//Nobody handles collisions between these colliders in this region, skip their contact points
+				if ((proxyA || !CollisionListeners.isListening(holderA)) && (proxyB || !CollisionListeners.isListening(holderB))) {
+					continue;
+				}
+				int points = contact.getNumContacts();
+
+				//Loop through the contact points
+				for (int j = 0; j < points; j++) {
+					//Grab a contact point
+					final ManifoldPoint bulletPoint = contact.getContactPoint(j);
+					//Contact point is no longer valid as negative values = still within contact so lets not resolve that to the API
+					if (bulletPoint.getDistance() > 0f) {
+						continue;
+					}
+					contacts.add(holderA, bulletPoint.getPositionWorldOnA(contactA), proxyA, holderB, bulletPoint.getPositionWorldOnB(contactB), proxyB);
+				}
+			}
+			//Callbacks run once the manifolds are collected, they may remove colliders from the simulation
+			for (int i = 0; i < contacts.size(); i++) {
+				resolveContact(i);
+			}
+		} finally {
+			contacts.clear();
+		}
+	}
+
+	/**
+	 * Mirrors a body into the neighbouring regions it is near
+	 * @param body to mirror
+	 */
+	private void mirror(RigidBody body) {
+		final Vector3f position = body.getCenterOfMassPosition(contactA);
+		final int margin = SpoutConfiguration.PROXY_MARGIN.getInt();
+		proxyTargets.clear();
+		for (int dx = -1; dx <= 1; dx++) {
+			if (!isNear(position.x, getBlockX() + dx * BLOCKS.SIZE, margin)) {
+				continue;
+			}
+			for (int dy = -1; dy <= 1; dy++) {
+				if (!isNear(position.y, getBlockY() + dy * BLOCKS.SIZE, margin)) {
+					continue;
+				}
+				for (int dz = -1; dz <= 1; dz++) {
+					if ((dx == 0 && dy == 0 && dz == 0) || !isNear(position.z, getBlockZ() + dz * BLOCKS.SIZE, margin)) {
+						continue;
+					}
+					SpoutRegion neighbour = getLocalRegion(dx + 1, dy + 1, dz + 1, LoadOption.NO_LOAD);
+					if (neighbour != null) {
+						proxyTargets.add(neighbour.getBoundary());
+						neighbour.wakePhysics();
+					}
+				}
+			}
+		}
+		boundary.mirror(body, proxyTargets);
+	}
+
+	private static boolean isNear(float coordinate, int base, int margin) {
+		return coordinate >= base - margin && coordinate < base + BLOCKS.SIZE + margin;
 	}
 	
+	/**
+	 * Calls the collision callbacks of a contact point in the contact buffer
+	 * @param i index of the contact point
+	 */
+	private void resolveContact(int i) {
+		final Object holderA = contacts.getHolderA(i);
+		final Object holderB = contacts.getHolderB(i);
+		//Entity was removed before the contact point could be resolved
+		if ((holderA instanceof Entity && ((Entity) holderA).isRemoved()) || (holderB instanceof Entity && ((Entity) holderB).isRemoved())) {
+			return;
+		}
+		if (holderA instanceof Entity) {
+			if (!(holderB instanceof Entity) && !(holderB instanceof Block)) {
+				return;
+			}
+		} else if (!(holderA instanceof Block) || !(holderB instanceof Entity)) {
+			return;
+		}
+		//3D position where colliderA contacted colliderB
+		final Point contactPointA = new Point(getWorld(), contacts.getAX(i), contacts.getAY(i), contacts.getAZ(i));
+		//3D position where colliderB contacted colliderA
+		final Point contactPointB = new Point(getWorld(), contacts.getBX(i), contacts.getBY(i), contacts.getBZ(i));
+		//Entities mirrored from another region are notified by that region
+		final boolean notifyA = !contacts.isProxyA(i);
+		final boolean notifyB = !contacts.isProxyB(i);
+
+		//Resolve Entity -> Entity Collisions
+		if (holderA instanceof Entity) {
+			//HolderA: Entity
+			//HolderB: Entity
+			if (holderB instanceof Entity) {
+				//Call onCollide for colliderA's EntityComponents
+				if (notifyA) {
+					for (Component component : ((Entity) holderA).values()) {
+						if (CollisionListeners.isListening(component)) {
+							((EntityComponent) component).onCollided(contactPointA, contactPointB, (Entity) holderB);
+						}
+					}
+				}
+				//Call onCollide for colliderB's EntityComponents
+				if (notifyB) {
+					for (Component component : ((Entity) holderB).values()) {
+						if (CollisionListeners.isListening(component)) {
+							((EntityComponent) component).onCollided(contactPointB, contactPointA, (Entity) holderA);
+						}
+					}
+				}
+			//HolderA: Entity
+			//HolderB: Block
+			} else {
+				//Call onCollide for colliderA's EntityComponents
+				if (notifyA) {
+					for (Component component : ((Entity) holderA).values()) {
+						if (CollisionListeners.isListening(component)) {
+							((EntityComponent) component).onCollided(contactPointA, contactPointB, (Block) holderB);
+						}
+					}
+				}
+				final BlockMaterial material = ((Block) holderB).getMaterial();
+				if (CollisionListeners.isListening(material)) {
+					material.onCollided(contactPointB, contactPointA, (Entity) holderA);
+				}
+			}
+		//HolderA: Block
+		//HolderB: Entity
+		} else {
+			final BlockMaterial material = ((Block) holderA).getMaterial();
+			if (CollisionListeners.isListening(material)) {
+				material.onCollided(contactPointA, contactPointB, (Entity) holderB);
+			}
+			//Call onCollide for colliderB's EntityComponents
+			if (notifyB) {
+				for (Component component : ((Entity) holderB).values()) {
+					if (CollisionListeners.isListening(component)) {
+						((EntityComponent) component).onCollided(contactPointB, contactPointA, (Block) holderA);
+					}
+				}
+			}
+		}
+	}
+
 	public void startTickRun(int stage, long delta) {
 		final float dt = delta / 1000f;
 		switch (stage) {
@@ -1321,7 +1652,7 @@ public class SpoutRegion extends Region {
 				for (int dz = 0; dz < CHUNKS.SIZE; dz++) {
 					SpoutChunk chunk = chunks[dx][dy][dz].get();
 					if (chunk != null) {
-						chunk.updateExpiredObservers();
+						chunk.updateObserverChanges();
 					}
 				}
 			}
@@ -1492,6 +1823,9 @@ public class SpoutRegion extends Region {
 
 		if (sequence == -1) {
 			runLocalDynamicUpdates(time);
+			// Count the local updates now, the global stage is skipped when there are no multi-region updates
+			scheduler.addUpdates(dynamicBlockTree.getLastUpdates());
+			dynamicBlockTree.resetLastUpdates();
 		} else if (sequence == this.updateSequence) {
 			runGlobalDynamicUpdates();
 		}
@@ -1501,6 +1835,42 @@ public class SpoutRegion extends Region {
 		return dynamicBlockTree.getFirstDynamicUpdateTime();
 	}
 
+	private final List<SpoutChunk> footprintChunks = new ArrayList<SpoutChunk>();
+
+	public boolean addGlobalFootprint(boolean physics, TLongSet regions) {
+		boolean pending = false;
+		if (physics) {
+			// The queue can not be iterated, so the chunks are taken off and put back in the same order
+			SpoutChunk c;
+			while ((c = this.globalPhysicsChunkQueue.poll()) != null) {
+				footprintChunks.add(c);
+			}
+			for (SpoutChunk chunk : footprintChunks) {
+				pending |= chunk.addGlobalPhysicsFootprint(regions);
+				chunk.setPhysicsActive(false);
+			}
+			footprintChunks.clear();
+		} else if (multiRegionUpdates != null) {
+			for (DynamicBlockUpdate update : multiRegionUpdates) {
+				pending = true;
+				int bx = update.getX();
+				int by = update.getY();
+				int bz = update.getZ();
+				SpoutChunk c = getChunkFromBlock(bx, by, bz, LoadOption.NO_LOAD);
+				Material m = c == null ? null : c.getBlockMaterial(bx, by, bz);
+				if (!(m instanceof DynamicMaterial)) {
+					// The update will not run, but the tree of this region is still touched
+					regions.add(Int21TripleHashed.key(getX(), getY(), getZ()));
+				} else if (GlobalUpdatePlanner.isChunkNeighbourhoodLocal(((DynamicMaterial) m).getDynamicRange(), bx, by, bz)) {
+					GlobalUpdatePlanner.addChunkNeighbourhood(regions, getX(), getY(), getZ(), bx, by, bz);
+				} else {
+					GlobalUpdatePlanner.addRegionNeighbourhood(regions, getX(), getY(), getZ());
+				}
+			}
+		}
+		return pending;
+	}
+
 	public void runLocalDynamicUpdates(long time) throws InterruptedException {
 		long currentTime = getWorld().getAge();
 		if (time > currentTime) {
@@ -1891,27 +2261,26 @@ public class SpoutRegion extends Region {
 	}
 
 	public void setGravity(Vector3 gravity) {
-		synchronized(simulation) {
-			simulation.setGravity(MathHelper.toVector3f(gravity));
+		synchronized(physicsLock) {
+			this.gravity.set(MathHelper.toVector3f(gravity));
+			if (simulation != null) {
+				simulation.getWorld().setGravity(this.gravity);
+			}
 		}
 	}
 
 	public Vector3 getGravity() {
-		synchronized(simulation) {
-			Vector3f vector = new Vector3f();
-			vector = simulation.getGravity(vector);
-			return MathHelper.toVector3(vector);
+		synchronized(physicsLock) {
+			return MathHelper.toVector3(gravity);
 		}
 	}
 
 	public List<DynamicBlockUpdate> getDynamicBlockUpdates(Chunk c) {
-		Set<DynamicBlockUpdate> updates = dynamicBlockTree.getDynamicBlockUpdates(c);
-		int size = updates == null ? 0 : updates.size();
-		List<DynamicBlockUpdate> list = new ArrayList<DynamicBlockUpdate>(size);
-		if (updates != null) {
-			list.addAll(updates);
+		List<DynamicBlockUpdate> updates = dynamicBlockTree.getDynamicBlockUpdates(c);
+		if (updates == null) {
+			return new ArrayList<DynamicBlockUpdate>(0);
 		}
-		return list;
+		return updates;
 	}
 
 	public boolean removeDynamicBlockUpdates(Chunk c) {
@@ -2018,6 +2387,19 @@ public class SpoutRegion extends Region {
 		checkChunkLoaded(newChunk, LoadOption.LOAD_GEN);
 	}
 
+	public void addChunk(int x, int y, int z, int[] palette, int packedWidth, int[] packedBlockArray, byte[] blockLight, byte[] skyLight, BiomeManager biomes) {
+		x &= BLOCKS.MASK;
+		y &= BLOCKS.MASK;
+		z &= BLOCKS.MASK;
+		SpoutChunk chunk = chunks[x >> Region.CHUNKS.BITS][y >> Region.CHUNKS.BITS][z >> Region.CHUNKS.BITS].get();
+		if (chunk != null) {
+			chunk.unload(false);
+		}
+		SpoutChunk newChunk = new SpoutChunk(getWorld(), this, getBlockX() | x, getBlockY() | y, getBlockZ() | z, SpoutChunk.PopulationState.POPULATED, palette, packedWidth, packedBlockArray, skyLight, blockLight, new ManagedHashMap(), true);
+		setChunk(newChunk, x, y, z, null, true);
+		checkChunkLoaded(newChunk, LoadOption.LOAD_GEN);
+	}
+
 	private class MeshGeneratorThread extends Thread {
 
 		private WorldRenderer renderer = null;
@@ -26,6 +26,8 @@
  */
 package org.spout.engine.world;
 
+import gnu.trove.set.TLongSet;
+
 import org.spout.api.Engine;
 import org.spout.engine.util.thread.AsyncExecutor;
 import org.spout.engine.util.thread.AsyncManager;
@@ -90,6 +92,11 @@ public class SpoutRegionManager extends AsyncManager {
 		parent.runDynamicUpdates(time, sequence);
 	}
 	
+	@Override
+	public boolean addGlobalFootprint(boolean physics, TLongSet regions) {
+		return parent.addGlobalFootprint(physics, regions);
+	}
+
 	@Override
 	public int getSequence() {
 		return parent.getSequence();
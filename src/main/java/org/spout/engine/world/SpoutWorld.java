@@ -40,6 +40,8 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.spout.api.Spout;
@@ -93,6 +95,7 @@ import org.spout.api.util.sanitation.StringSanitizer;
 import org.spout.api.util.thread.annotation.LiveRead;
 import org.spout.api.util.thread.annotation.Threadsafe;
 import org.spout.engine.SpoutEngine;
+import org.spout.engine.entity.EntityTickLevel;
 import org.spout.engine.entity.SpoutEntity;
 import org.spout.engine.filesystem.versioned.WorldFiles;
 import org.spout.engine.scheduler.SpoutParallelTaskManager;
@@ -103,6 +106,7 @@ import org.spout.engine.util.thread.AsyncManager;
 import org.spout.engine.util.thread.ThreadAsyncExecutor;
 import org.spout.engine.util.thread.snapshotable.SnapshotManager;
 import org.spout.engine.util.thread.snapshotable.SnapshotableLong;
+import org.spout.engine.world.collision.BlockCollisionCache;
 
 public class SpoutWorld extends AsyncManager implements World {
 	private SnapshotManager snapshotManager = new SnapshotManager();
@@ -134,6 +138,28 @@ public class SpoutWorld extends AsyncManager implements World {
 	 * The region source
 	 */
 	private final RegionSource regions;
+	/**
+	 * Index of the entities in the world, for proximity queries
+	 */
+	private final SpoutEntityIndex entityIndex = new SpoutEntityIndex(this);
+	/**
+	 * The collision properties of the block states, shared by the physics simulations of the regions
+	 */
+	private final BlockCollisionCache collisionCache = new BlockCollisionCache();
+	/**
+	 * The number of entities at each tick level, counted during the tick and published at the snapshot
+	 */
+	private final AtomicIntegerArray tickLevelCounts = new AtomicIntegerArray(EntityTickLevel.values().length);
+	private volatile int[] tickLevelDistribution = new int[EntityTickLevel.values().length];
+	/**
+	 * The time the regions held their physics lock, summed and the longest hold during the tick, published at the snapshot
+	 */
+	private final AtomicLong physicsLockTickTime = new AtomicLong();
+	private final AtomicLong physicsLockTickMax = new AtomicLong();
+	private final AtomicLong physicsLockTotalTime = new AtomicLong();
+	private final AtomicLong physicsLockHolds = new AtomicLong();
+	private volatile long physicsLockTime = 0;
+	private volatile long physicsLockMax = 0;
 	/**
 	 * The world seed.
 	 */
@@ -632,6 +658,14 @@ public class SpoutWorld extends AsyncManager implements World {
 	@Override
 	public void copySnapshotRun() throws InterruptedException {
 		snapshotManager.copyAllSnapshots();
+		entityIndex.invalidate();
+		int[] distribution = new int[tickLevelCounts.length()];
+		for (int i = 0; i < distribution.length; i++) {
+			distribution[i] = tickLevelCounts.getAndSet(i, 0);
+		}
+		tickLevelDistribution = distribution;
+		physicsLockTime = physicsLockTickTime.getAndSet(0);
+		physicsLockMax = physicsLockTickMax.getAndSet(0);
 	}
 
 	@Override
@@ -779,19 +813,7 @@ public class SpoutWorld extends AsyncManager implements World {
 
 	@Override
 	public List<Entity> getNearbyEntities(Point position, Entity ignore, int range) {
-		ArrayList<Entity> foundEntities = new ArrayList<Entity>();
-		final int RANGE_SQUARED = range * range;
-
-		for (Entity entity : getEntitiesNearRegion(position, range)) {
-			if (entity != null && entity != ignore) {
-				double distance = MathHelper.distanceSquared(position, entity.getTransform().getPosition());
-				if (distance < RANGE_SQUARED) {
-					foundEntities.add(entity);
-				}
-			}
-		}
-
-		return Collections.unmodifiableList(foundEntities);
+		return Collections.unmodifiableList(entityIndex.getNearby(position, ignore, range, Entity.class));
 	}
 
 	@Override
@@ -806,19 +828,7 @@ public class SpoutWorld extends AsyncManager implements World {
 
 	@Override
 	public Entity getNearestEntity(Point position, Entity ignore, int range) {
-		Entity best = null;
-		double bestDistance = range * range;
-
-		for (Entity entity : getEntitiesNearRegion(position, range)) {
-			if (entity != null && entity != ignore) {
-				double distance = MathHelper.distanceSquared(position, entity.getTransform().getPosition());
-				if (distance < bestDistance) {
-					bestDistance = distance;
-					best = entity;
-				}
-			}
-		}
-		return best;
+		return entityIndex.getNearest(position, ignore, range, Entity.class);
 	}
 
 	@Override
@@ -843,13 +853,7 @@ public class SpoutWorld extends AsyncManager implements World {
 	@LiveRead
 	@Threadsafe
 	public List<Player> getNearbyPlayers(Point position, Player ignore, int range) {
-		ArrayList<Player> foundPlayers = new ArrayList<Player>();
-		for (Entity entity : getNearbyEntities(position, ignore, range)) {
-			if (entity instanceof Player) {
-				foundPlayers.add((Player) entity);
-			}
-		}
-		return Collections.unmodifiableList(foundPlayers);
+		return Collections.unmodifiableList(entityIndex.getNearby(position, ignore, range, Player.class));
 	}
 
 	/**
@@ -889,19 +893,7 @@ public class SpoutWorld extends AsyncManager implements World {
 	@LiveRead
 	@Threadsafe
 	public Player getNearestPlayer(Point position, Player ignore, int range) {
-		Entity best = null;
-		double bestDistance = range * range;
-
-		for (Entity entity : getEntitiesNearRegion(position, range)) {
-			if (entity != null && entity instanceof Player && entity != ignore) {
-				double distance = MathHelper.distanceSquared(position, entity.getTransform().getPosition());
-				if (distance < bestDistance) {
-					bestDistance = distance;
-					best = entity;
-				}
-			}
-		}
-		return (Player) best;
+		return entityIndex.getNearest(position, ignore, range, Player.class);
 	}
 
 	/**
@@ -930,29 +922,73 @@ public class SpoutWorld extends AsyncManager implements World {
 	}
 
 	/**
-	 * Finds all the players inside of the regions inside the range area
-	 * @param position to search from
-	 * @param range to search for regions
-	 * @return nearby region's players
+	 * Counts an entity at a tick level for the current tick
+	 * @param level of the entity
 	 */
-	private List<Entity> getEntitiesNearRegion(Point position, int range) {
-		Region center = this.getRegionFromBlock(position, LoadOption.NO_LOAD);
+	public void countTickLevel(EntityTickLevel level) {
+		tickLevelCounts.incrementAndGet(level.ordinal());
+	}
 
-		ArrayList<Entity> entities = new ArrayList<Entity>();
-		if (center != null) {
-			final int regions = (range + Region.BLOCKS.SIZE - 1) / Region.BLOCKS.SIZE; //round up 1 region size
-			for (int dx = -regions; dx < regions; dx++) {
-				for (int dy = -regions; dy < regions; dy++) {
-					for (int dz = -regions; dz < regions; dz++) {
-						Region region = this.getRegion(center.getX() + dx, center.getY() + dy, center.getZ() + dz, LoadOption.NO_LOAD);
-						if (region != null) {
-							entities.addAll(region.getAll());
-						}
-					}
-				}
-			}
+	/**
+	 * Gets the number of entities at each tick level during the last tick
+	 * @return the number of entities, indexed by the ordinal of the level
+	 */
+	public int[] getTickLevelDistribution() {
+		return tickLevelDistribution.clone();
+	}
+
+	/**
+	 * Records the time a region held its physics lock while updating its simulation
+	 * @param nanos the lock was held
+	 */
+	public void addPhysicsLockTime(long nanos) {
+		physicsLockTickTime.addAndGet(nanos);
+		physicsLockTotalTime.addAndGet(nanos);
+		physicsLockHolds.incrementAndGet();
+		long max;
+		while (nanos > (max = physicsLockTickMax.get()) && !physicsLockTickMax.compareAndSet(max, nanos)) {
 		}
-		return entities;
+	}
+
+	/**
+	 * Gets the time the physics locks of the regions were held while updating the simulations in the previous tick
+	 * @return the time summed over the regions, in milliseconds
+	 */
+	public double getPhysicsLockTime() {
+		return physicsLockTime / 1000000D;
+	}
+
+	/**
+	 * Gets the longest time a region held its physics lock while updating its simulation in the previous tick
+	 * @return the time in milliseconds
+	 */
+	public double getMaxPhysicsLockTime() {
+		return physicsLockMax / 1000000D;
+	}
+
+	/**
+	 * Gets the average time a region held its physics lock while updating its simulation
+	 * @return the time in milliseconds
+	 */
+	public double getAveragePhysicsLockTime() {
+		long holds = physicsLockHolds.get();
+		if (holds == 0) {
+			return 0;
+		}
+		return physicsLockTotalTime.get() / (holds * 1000000D);
+	}
+
+	/**
+	 * Gets the entities closest to a position
+	 * @param position to search from
+	 * @param ignore an entity to skip, or null
+	 * @param range to search
+	 * @param count the maximum number of entities
+	 * @param type of the entities to find
+	 * @return at most count entities within range, closest first
+	 */
+	public <T extends Entity> List<T> getNearestEntities(Point position, Entity ignore, int range, int count, Class<T> type) {
+		return Collections.unmodifiableList(entityIndex.getNearest(position, ignore, range, count, type));
 	}
 
 	public List<CollisionVolume> getCollidingObject(CollisionModel model) {
@@ -1439,6 +1475,14 @@ public class SpoutWorld extends AsyncManager implements World {
 		return regionFileManager;
 	}
 
+	/**
+	 * Gets the cache of the collision properties of the block states in this world
+	 * @return the cache
+	 */
+	public BlockCollisionCache getCollisionCache() {
+		return collisionCache;
+	}
+
 	public BAAWrapper getRegionFile(int rx, int ry, int rz) {
 		return regionFileManager.getBAAWrapper(rx, ry, rz);
 	}
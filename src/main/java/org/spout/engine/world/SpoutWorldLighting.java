@@ -26,20 +26,28 @@
  */
 package org.spout.engine.world;
 
-import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.spout.api.Spout;
 import org.spout.api.geo.LoadOption;
 import org.spout.api.scheduler.Scheduler;
 import org.spout.api.util.hashing.Int21TripleHashed;
-import org.spout.api.util.set.TInt21TripleHashSet;
 import org.spout.engine.SpoutConfiguration;
 import org.spout.engine.util.ChunkModel;
 import org.spout.engine.util.thread.lock.SpoutSnapshotLock;
 
-public class SpoutWorldLighting extends Thread {
+/**
+ * Resolves the block and sky lighting of a world.<br>
+ * <br>
+ * Chunks with pending light operations are queued once in a blocking work queue. A configurable number
+ * of workers take chunks from the queue. A worker only takes a chunk if its 3x3x3 neighbourhood does not
+ * overlap the neighbourhood of a chunk being resolved by another worker, so workers never write light to
+ * the same chunk.
+ */
+public class SpoutWorldLighting {
 	private static String taskName = "Lighting Thread";
-	private static final long MAX_CYCLE_TIME = 20; // Time to perform lighting per tick
 
 	/*
 	 * Some constants used in the chunk set storage
@@ -50,15 +58,42 @@ public class SpoutWorldLighting extends Thread {
 
 	private SpoutWorldLightingModel skyLight;
 	private SpoutWorldLightingModel blockLight;
-	private final ChunkModel tmpChunks;
 	private final SpoutWorld world;
-	private boolean running = false;
+	private final LightingWorker[] workers;
+	private volatile boolean running = false;
+
+	/*
+	 * The work queue, guarded by the queue lock.  Keys are stored in a ring buffer in insertion order,
+	 * together with the time they were queued.  The active array holds the chunks being resolved.
+	 */
+	private final Object queueLock = new Object();
+	private final TLongHashSet queued = new TLongHashSet();
+	private long[] queueKeys = new long[64];
+	private long[] queueTimes = new long[64];
+	private int queueHead = 0;
+	private int queueSize = 0;
+	private final long[] active;
+	private final boolean[] activeSet;
 
-	private final TInt21TripleHashSet dirtyChunks = new TInt21TripleHashSet();
+	// Statistics
+	private final AtomicLong resolvedChunks = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private volatile long lastLatency = 0;
 
 	public void addChunk(int x, int y, int z) {
-		synchronized (dirtyChunks) {
-			dirtyChunks.add(x, y, z);
+		long key = Int21TripleHashed.key(x, y, z);
+		synchronized (queueLock) {
+			if (!queued.add(key)) {
+				return;
+			}
+			if (queueSize == queueKeys.length) {
+				growQueue();
+			}
+			int index = (queueHead + queueSize) % queueKeys.length;
+			queueKeys[index] = key;
+			queueTimes[index] = System.nanoTime();
+			queueSize++;
+			queueLock.notify();
 		}
 	}
 
@@ -103,16 +138,33 @@ public class SpoutWorldLighting extends Thread {
 	}
 
 	public SpoutWorldLighting(SpoutWorld world) {
-		super("Lighting thread for world " + world.getName());
-		setDaemon(true);
 		this.world = world;
 		this.skyLight = new SpoutWorldLightingModel(this, true);
 		this.blockLight = new SpoutWorldLightingModel(this, false);
-		this.tmpChunks = new ChunkModel(world);
+		int threads = Math.max(1, SpoutConfiguration.LIGHTING_THREADS.getInt());
+		this.workers = new LightingWorker[threads];
+		this.active = new long[threads];
+		this.activeSet = new boolean[threads];
+		for (int i = 0; i < threads; i++) {
+			this.workers[i] = new LightingWorker(i);
+		}
+	}
+
+	public void start() {
+		this.running = SpoutConfiguration.LIGHTING_ENABLED.getBoolean();
+		if (!this.running) {
+			return;
+		}
+		for (LightingWorker worker : this.workers) {
+			worker.start();
+		}
 	}
 
 	public void abort() {
 		this.running = false;
+		for (LightingWorker worker : this.workers) {
+			worker.interrupt();
+		}
 	}
 
 	public SpoutWorld getWorld() {
@@ -120,74 +172,191 @@ public class SpoutWorldLighting extends Thread {
 	}
 
 	/**
-	 * Only to be used by the SpoutWorldLightingModel of this thread (is not thread safe!)
+	 * Gets the number of chunks waiting for their lighting to be resolved
+	 * 
+	 * @return the queue depth
 	 */
-	protected SpoutChunk getChunkFromBlock(int bx, int by, int bz) {
-		return this.tmpChunks.getChunkFromBlock(bx, by, bz);
+	public int getQueueDepth() {
+		synchronized (queueLock) {
+			return queueSize;
+		}
 	}
 
-	@Override
-	public void run() {
-		long[] chunkBuffer = new long[10];
-		int chunkBufferSize = 0;
-		TLongIterator iter;
-		int i, cx, cy, cz;
-		int idleCounter = 0;
-		this.running = SpoutConfiguration.LIGHTING_ENABLED.getBoolean();
-		Scheduler scheduler = Spout.getEngine().getScheduler();
-		SpoutSnapshotLock lock = (SpoutSnapshotLock) scheduler.getSnapshotLock();
-		while (this.running) {
-			boolean updated = false;
-			// Obtain the chunks to work with
-			synchronized (this.dirtyChunks) {
-				if ((chunkBufferSize = this.dirtyChunks.size()) > 0) {
-					if (chunkBufferSize > chunkBuffer.length) {
-						chunkBuffer = new long[chunkBufferSize + 100];
+	/**
+	 * Gets the number of workers resolving lighting for this world
+	 * 
+	 * @return the number of workers
+	 */
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	/**
+	 * Gets the total number of chunks resolved since the world was loaded
+	 * 
+	 * @return the number of chunks
+	 */
+	public long getResolvedChunks() {
+		return resolvedChunks.get();
+	}
+
+	/**
+	 * Gets the average time between a chunk being queued and its lighting being resolved
+	 * 
+	 * @return the average latency in milliseconds
+	 */
+	public double getAverageLatency() {
+		long resolved = resolvedChunks.get();
+		if (resolved == 0) {
+			return 0;
+		}
+		return totalLatency.get() / (resolved * 1000000D);
+	}
+
+	/**
+	 * Gets the time between the most recently resolved chunk being queued and its lighting being resolved
+	 * 
+	 * @return the latency in milliseconds
+	 */
+	public double getLastLatency() {
+		return lastLatency / 1000000D;
+	}
+
+	private void growQueue() {
+		int length = queueKeys.length;
+		long[] newKeys = new long[length << 1];
+		long[] newTimes = new long[length << 1];
+		for (int i = 0; i < queueSize; i++) {
+			newKeys[i] = queueKeys[(queueHead + i) % length];
+			newTimes[i] = queueTimes[(queueHead + i) % length];
+		}
+		queueKeys = newKeys;
+		queueTimes = newTimes;
+		queueHead = 0;
+	}
+
+	/**
+	 * Checks if the neighbourhood of the chunk overlaps the neighbourhood of a chunk being resolved by another worker
+	 */
+	private boolean isConflicting(long key) {
+		int cx = Int21TripleHashed.key1(key);
+		int cy = Int21TripleHashed.key2(key);
+		int cz = Int21TripleHashed.key3(key);
+		for (int i = 0; i < active.length; i++) {
+			if (!activeSet[i]) {
+				continue;
+			}
+			long other = active[i];
+			if (Math.abs(Int21TripleHashed.key1(other) - cx) <= 2 && Math.abs(Int21TripleHashed.key2(other) - cy) <= 2 && Math.abs(Int21TripleHashed.key3(other) - cz) <= 2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Takes the oldest queued chunk which does not conflict with the chunks being resolved, waiting if there is none.
+	 * 
+	 * @param worker the index of the worker
+	 * @return the queued time in nanoseconds, the chunk key is stored in the active array
+	 */
+	private long take(int worker) throws InterruptedException {
+		synchronized (queueLock) {
+			while (true) {
+				int length = queueKeys.length;
+				for (int i = 0; i < queueSize; i++) {
+					int index = (queueHead + i) % length;
+					long key = queueKeys[index];
+					if (isConflicting(key)) {
+						continue;
 					}
-					iter = this.dirtyChunks.iterator();
-					for (i = 0; i < chunkBufferSize && iter.hasNext(); i++) {
-						chunkBuffer[i] = iter.next();
+					long time = queueTimes[index];
+					// Shift the skipped entries forward to close the gap
+					for (int j = i; j > 0; j--) {
+						int to = (queueHead + j) % length;
+						int from = (queueHead + j - 1) % length;
+						queueKeys[to] = queueKeys[from];
+						queueTimes[to] = queueTimes[from];
 					}
-					this.dirtyChunks.clear();
+					queueHead = (queueHead + 1) % length;
+					queueSize--;
+					queued.remove(key);
+					active[worker] = key;
+					activeSet[worker] = true;
+					return time;
 				}
+				queueLock.wait();
 			}
-			if (updated = chunkBufferSize > 0) {
-				for (i = 0; i < chunkBufferSize; i++) {
-					lock.coreReadLock(taskName);
-					try {
-						cx = Int21TripleHashed.key1(chunkBuffer[i]);
-						cy = Int21TripleHashed.key2(chunkBuffer[i]);
-						cz = Int21TripleHashed.key3(chunkBuffer[i]);
-						if (this.tmpChunks.load(cx, cy, cz, LoadOption.LOAD_ONLY).isLoaded()) {
-							SpoutChunk center = this.tmpChunks.getCenter();
-							center.clearRegisteredWithLightingManager();
-							if (center.isInitializingLighting.get()) {
-								// Schedule the chunk for a later check-up
-								this.addChunk(cx, cy, cz);
-							} else {
-								while (this.skyLight.resolve(center)) {
-								}
-								while (this.blockLight.resolve(center)) {
-								}
+		}
+	}
+
+	private void release(int worker) {
+		synchronized (queueLock) {
+			activeSet[worker] = false;
+			queueLock.notifyAll();
+		}
+	}
+
+	private class LightingWorker extends Thread {
+		private final int index;
+		private final ChunkModel tmpChunks;
+		private final SpoutWorldLightingModel skyLight;
+		private final SpoutWorldLightingModel blockLight;
+
+		public LightingWorker(int index) {
+			super("Lighting thread " + index + " for world " + world.getName());
+			setDaemon(true);
+			this.index = index;
+			this.tmpChunks = new ChunkModel(world);
+			this.skyLight = new SpoutWorldLightingModel(SpoutWorldLighting.this, tmpChunks, true);
+			this.blockLight = new SpoutWorldLightingModel(SpoutWorldLighting.this, tmpChunks, false);
+		}
+
+		@Override
+		public void run() {
+			int cx, cy, cz;
+			Scheduler scheduler = Spout.getEngine().getScheduler();
+			SpoutSnapshotLock lock = (SpoutSnapshotLock) scheduler.getSnapshotLock();
+			while (running) {
+				long queuedTime;
+				try {
+					if (getQueueDepth() == 0) {
+						// Release references to live chunks before going idle
+						this.skyLight.cleanUp();
+						this.skyLight.reportChanges();
+						this.blockLight.cleanUp();
+						this.blockLight.reportChanges();
+						this.tmpChunks.cleanUp();
+					}
+					queuedTime = take(index);
+				} catch (InterruptedException e) {
+					continue;
+				}
+				long key = active[index];
+				lock.coreReadLock(taskName);
+				try {
+					cx = Int21TripleHashed.key1(key);
+					cy = Int21TripleHashed.key2(key);
+					cz = Int21TripleHashed.key3(key);
+					if (this.tmpChunks.load(cx, cy, cz, LoadOption.LOAD_ONLY).isLoaded()) {
+						SpoutChunk center = this.tmpChunks.getCenter();
+						center.clearRegisteredWithLightingManager();
+						// Chunks which are initializing register themselves again once initialization completes
+						if (!center.isInitializingLighting.get()) {
+							while (this.skyLight.resolve(center)) {
+							}
+							while (this.blockLight.resolve(center)) {
 							}
 						}
-					} finally {
-						lock.coreReadUnlock(taskName);
 					}
+				} finally {
+					lock.coreReadUnlock(taskName);
+					release(index);
 				}
-				idleCounter = 0;
-			}
-			if (!updated) {
-				if (idleCounter++ == 20) {
-					this.skyLight.cleanUp();
-					this.skyLight.reportChanges();
-					this.blockLight.cleanUp();
-					this.blockLight.reportChanges();
-					this.tmpChunks.cleanUp();
-				}
-				try {
-					Thread.sleep(50);
-				} catch (InterruptedException ex) {}
+				long latency = System.nanoTime() - queuedTime;
+				lastLatency = latency;
+				totalLatency.addAndGet(latency);
+				resolvedChunks.incrementAndGet();
 			}
 		}
 	}
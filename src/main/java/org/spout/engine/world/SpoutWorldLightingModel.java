@@ -30,6 +30,7 @@ import gnu.trove.iterator.TShortIterator;
 
 import org.spout.api.Spout;
 import org.spout.api.geo.AreaBlockSource;
+import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.block.BlockFace;
 import org.spout.api.material.block.BlockFaces;
@@ -37,6 +38,9 @@ import org.spout.api.material.block.BlockFullState;
 import org.spout.api.util.NanoStopWatch;
 import org.spout.api.util.bytebit.ByteBitSet;
 import org.spout.api.util.hashing.NibbleQuadHashed;
+import org.spout.engine.util.ChunkModel;
+import org.spout.engine.util.IntRingBuffer;
+import org.spout.engine.util.LightLevelQueue;
 
 /**
  * This model can store a diamond-shaped model of blocks to perform lighting on.<br>
@@ -44,6 +48,7 @@ import org.spout.api.util.hashing.NibbleQuadHashed;
  */
 public class SpoutWorldLightingModel {
 	private final SpoutWorldLighting instance;
+	private final ChunkModel chunks;
 	private final boolean sky;
 
 	// Used to debug and log statistics
@@ -55,6 +60,11 @@ public class SpoutWorldLightingModel {
 	protected int updateCount = 0;
 	private TShortIterator iter;
 
+	// Light spreading inside the chunk being resolved is queued here, instead of on the chunk
+	private SpoutChunk current;
+	private final LightLevelQueue increases = new LightLevelQueue();
+	private final IntRingBuffer decreases = new IntRingBuffer();
+
 	public void reportChanges() {
 		if (this.changes > 100000) {
 			if (Spout.debugMode()) {
@@ -70,8 +80,20 @@ public class SpoutWorldLightingModel {
 	}
 
 	public SpoutWorldLightingModel(SpoutWorldLighting instance, boolean sky) {
+		this(instance, null, sky);
+	}
+
+	/**
+	 * Creates a model that resolves lighting using the chunks of the chunk model given.<br>
+	 * Each lighting worker owns its own models and chunk model, they are not thread safe.
+	 * @param instance the world lighting manager
+	 * @param chunks the chunk model used to look up blocks, null if this model is only used for checks
+	 * @param sky True for sky light, False for block light
+	 */
+	public SpoutWorldLightingModel(SpoutWorldLighting instance, ChunkModel chunks, boolean sky) {
 		this.sky = sky;
 		this.instance = instance;
+		this.chunks = chunks;
 		this.center = sky ? new SkyElement(this, BlockFace.THIS, null) : new BlockElement(this, BlockFace.THIS, null);
 		this.neighbors = new Element[6];
 		for (int i = 0; i < this.neighbors.length; i++) {
@@ -80,6 +102,68 @@ public class SpoutWorldLightingModel {
 		}
 	}
 
+	/**
+	 * Gets the chunk at world block coordinates from the chunk model of this lighting model
+	 */
+	protected SpoutChunk getChunkFromBlock(int bx, int by, int bz) {
+		SpoutChunk chunk = this.current;
+		if (chunk != null && chunk.getX() == bx >> Chunk.BLOCKS.BITS && chunk.getY() == by >> Chunk.BLOCKS.BITS && chunk.getZ() == bz >> Chunk.BLOCKS.BITS) {
+			return chunk;
+		}
+		return this.chunks.getChunkFromBlock(bx, by, bz);
+	}
+
+	/**
+	 * Sets the light of an element<br>
+	 * Inside the chunk being resolved the change is queued with this model, elsewhere it is queued with the chunk of the element.
+	 * @param element to set the light of
+	 * @param light level to set
+	 */
+	protected void setLight(Element element, byte light) {
+		SpoutChunk chunk = element.chunk;
+		if (chunk != this.current) {
+			if (this.sky) {
+				chunk.setBlockSkyLightSync(element.x, element.y, element.z, light, null);
+			} else {
+				chunk.setBlockLightSync(element.x, element.y, element.z, light, null);
+			}
+			return;
+		}
+		int index = chunk.getBlockIndex(element.x, element.y, element.z);
+		byte oldLight = this.sky ? chunk.setBlockSkyLightRaw(index, light) : chunk.setBlockBlockLightRaw(index, light);
+		if (light > oldLight) {
+			this.increases.offer(index, light);
+		} else if (light < oldLight) {
+			this.decreases.offer(index);
+		}
+	}
+
+	/**
+	 * Adds a new operation for an element<br>
+	 * Inside the chunk being resolved the operation is queued with this model, elsewhere it is queued with the chunk of the element.
+	 * @param element to add the operation for
+	 * @param operation to perform
+	 */
+	protected void addOperation(Element element, int operation) {
+		SpoutChunk chunk = element.chunk;
+		if (chunk != this.current) {
+			if (this.sky) {
+				chunk.addSkyLightOperation(element.x, element.y, element.z, operation);
+			} else {
+				chunk.addBlockLightOperation(element.x, element.y, element.z, operation);
+			}
+			return;
+		}
+		int index = chunk.getBlockIndex(element.x, element.y, element.z);
+		if (operation == SpoutWorldLighting.LESSER) {
+			this.decreases.offer(index);
+		} else if (operation == SpoutWorldLighting.GREATER) {
+			this.increases.offer(index, element.light);
+		} else {
+			this.resolveRefresh(element.x, element.y, element.z);
+		}
+	}
+
 	/**
 	 * Checks if this model can greaten the lighting at the block specified
 	 * @param chunk the block is in
@@ -190,25 +274,21 @@ public class SpoutWorldLightingModel {
 			}
 
 			this.totalTime.start();
-			int i;
-			short key;
+			this.current = chunk;
+			int i, key, bx = chunk.getBlockX(), by = chunk.getBlockY(), bz = chunk.getBlockZ();
+			short update;
 
 			for (i = 0; i < updateCount; i++) {
-				key = updates[i];
-				x = NibbleQuadHashed.key1(key) + chunk.getBlockX();
-				y = NibbleQuadHashed.key2(key) + chunk.getBlockY();
-				z = NibbleQuadHashed.key3(key) + chunk.getBlockZ();
-				switch (NibbleQuadHashed.key4(key)) {
+				update = updates[i];
+				x = NibbleQuadHashed.key1(update) + bx;
+				y = NibbleQuadHashed.key2(update) + by;
+				z = NibbleQuadHashed.key3(update) + bz;
+				switch (NibbleQuadHashed.key4(update)) {
 					case SpoutWorldLighting.GREATER:
 						this.resolveGreater(x, y, z);
 						break;
 					case SpoutWorldLighting.LESSER:
-						this.resolveLesser(x + 1, y, z);
-						this.resolveLesser(x - 1, y, z);
-						this.resolveLesser(x, y + 1, z);
-						this.resolveLesser(x, y - 1, z);
-						this.resolveLesser(x, y, z + 1);
-						this.resolveLesser(x, y, z - 1);
+						this.resolveLesserNeighbors(x, y, z);
 						break;
 					case SpoutWorldLighting.REFRESH:
 						this.resolveRefresh(x, y, z);
@@ -216,10 +296,33 @@ public class SpoutWorldLightingModel {
 				}
 				chunk.notifyLightOperationComplete();
 			}
+
+			// Spread the changes inside the chunk: remove all light that lost its source first, then spread again from
+			// the blocks that kept their light, so that blocks are not lit and darkened back and forth
+			while (!this.decreases.isEmpty()) {
+				key = this.decreases.poll();
+				x = (key & Chunk.BLOCKS.MASK) + bx;
+				y = (key >> Chunk.BLOCKS.DOUBLE_BITS) + by;
+				z = ((key >> Chunk.BLOCKS.BITS) & Chunk.BLOCKS.MASK) + bz;
+				this.resolveLesserNeighbors(x, y, z);
+				this.changes++;
+			}
+			while (!this.increases.isEmpty()) {
+				key = this.increases.poll();
+				x = (key & Chunk.BLOCKS.MASK) + bx;
+				y = (key >> Chunk.BLOCKS.DOUBLE_BITS) + by;
+				z = ((key >> Chunk.BLOCKS.BITS) & Chunk.BLOCKS.MASK) + bz;
+				this.resolveGreater(x, y, z);
+				this.changes++;
+			}
 		} catch (Throwable t) {
 			String type = sky ? "sky" : "block";
 			System.out.println("An exception occurred while resolving " + type + " lighting at block [" + x + "/" + y + "/" + z + "/" + this.instance.getWorld() + "]:");
 			t.printStackTrace();
+			this.increases.clear();
+			this.decreases.clear();
+		} finally {
+			this.current = null;
 		}
 		this.changes += updateCount;
 		this.totalTime.stop();
@@ -250,6 +353,21 @@ public class SpoutWorldLightingModel {
 		}
 	}
 
+	/**
+	 * Resolves the neighbors of a block of which the light was lowered
+	 * @param x coordinate of the block
+	 * @param y coordinate of the block
+	 * @param z coordinate of the block
+	 */
+	public void resolveLesserNeighbors(int x, int y, int z) {
+		this.resolveLesser(x + 1, y, z);
+		this.resolveLesser(x - 1, y, z);
+		this.resolveLesser(x, y + 1, z);
+		this.resolveLesser(x, y - 1, z);
+		this.resolveLesser(x, y, z + 1);
+		this.resolveLesser(x, y, z - 1);
+	}
+
 	public void resolveLesser(int x, int y, int z) {
 		if (this.loadReceiving(x, y, z)) {
 			if (center.light == 15) {
@@ -368,12 +486,12 @@ public class SpoutWorldLightingModel {
 			if (this.light < this.blockLight) {
 				this.light = this.blockLight;
 			}
-			this.chunk.setBlockLightSync(this.x, this.y, this.z, this.light, null);
+			this.model.setLight(this, this.light);
 		}
 
 		@Override
 		public void addOperation(int operation) {
-			this.chunk.addBlockLightOperation(this.x, this.y, this.z, operation);
+			this.model.addOperation(this, operation);
 		}
 	}
 
@@ -392,13 +510,13 @@ public class SpoutWorldLightingModel {
 		public void setLight(byte light) {
 			if (this.light != 15) {
 				this.light = light;
-				this.chunk.setBlockSkyLightSync(this.x, this.y, this.z, light, null);
+				this.model.setLight(this, light);
 			}
 		}
 
 		@Override
 		public void addOperation(int operation) {
-			this.chunk.addSkyLightOperation(this.x, this.y, this.z, operation);
+			this.model.addOperation(this, operation);
 		}
 	}
 
@@ -496,7 +614,7 @@ public class SpoutWorldLightingModel {
 				this.y = this.center.y + (int) this.offset.getOffset().getY();
 				this.z = this.center.z + (int) this.offset.getOffset().getZ();
 			}
-			this.chunk = this.model.instance.getChunkFromBlock(this.x, this.y, this.z);
+			this.chunk = this.model.getChunkFromBlock(this.x, this.y, this.z);
 			if (this.chunk == null || !this.chunk.isLoaded()) {
 				this.material = null;
 			} else {
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.material.MaterialRegistry;
+
+/**
+ * Caches the collision properties of the block states of a world, so the voxel shape of a region does not
+ * look up the material of a block every time the broadphase touches it.<br>
+ * <br>
+ * The properties are keyed by full block state and hold no position, a world only has a few distinct states
+ * so the map is copied on write and read without locking.
+ */
+public class BlockCollisionCache {
+	private volatile TIntObjectHashMap<BlockCollisionProperties> properties = new TIntObjectHashMap<BlockCollisionProperties>();
+
+	/**
+	 * Gets the collision properties of a full block state
+	 * @param state the full state of the block
+	 * @return the properties
+	 */
+	public BlockCollisionProperties get(int state) {
+		BlockCollisionProperties cached = properties.get(state);
+		if (cached != null) {
+			return cached;
+		}
+		synchronized (this) {
+			cached = properties.get(state);
+			if (cached == null) {
+				BlockMaterial material = (BlockMaterial) MaterialRegistry.get(state);
+				cached = new BlockCollisionProperties(material == null ? BlockMaterial.AIR : material);
+				TIntObjectHashMap<BlockCollisionProperties> copy = new TIntObjectHashMap<BlockCollisionProperties>(properties.size() + 1);
+				copy.putAll(properties);
+				copy.put(state, cached);
+				properties = copy;
+			}
+			return cached;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spout.api.component.Component;
+import org.spout.api.component.type.EntityComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.material.BlockMaterial;
+
+/**
+ * Determines which components and materials handle collisions.<br>
+ * <br>
+ * A component or material opts in to collision callbacks by overriding one of its onCollided methods.
+ * Contacts between holders which did not opt in are dropped before any callback objects are created.
+ */
+public class CollisionListeners {
+	private static final String CALLBACK = "onCollided";
+	private static final ConcurrentHashMap<Class<?>, Boolean> listening = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	private CollisionListeners() {
+	}
+
+	/**
+	 * Checks if a contact holder has a collision callback
+	 * @param holder the user pointer of a collision object
+	 * @return true if the holder is an entity with a listening component, or a block with a listening material
+	 */
+	public static boolean isListening(Object holder) {
+		if (holder instanceof Entity) {
+			if (((Entity) holder).isRemoved()) {
+				return false;
+			}
+			for (Component component : ((Entity) holder).values()) {
+				if (isListening(component)) {
+					return true;
+				}
+			}
+			return false;
+		} else if (holder instanceof Block) {
+			return isListening(((Block) holder).getMaterial());
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if a component handles collisions
+	 * @param component to check
+	 * @return true if the component is an entity component which overrides onCollided
+	 */
+	public static boolean isListening(Component component) {
+		return component instanceof EntityComponent && overrides(component.getClass(), EntityComponent.class);
+	}
+
+	/**
+	 * Checks if a material handles collisions
+	 * @param material to check
+	 * @return true if the material overrides onCollided
+	 */
+	public static boolean isListening(BlockMaterial material) {
+		return material != null && overrides(material.getClass(), BlockMaterial.class);
+	}
+
+	private static boolean overrides(Class<?> clazz, Class<?> base) {
+		Boolean result = listening.get(clazz);
+		if (result == null) {
+			result = Boolean.FALSE;
+			for (Class<?> c = clazz; c != null && c != base && !result; c = c.getSuperclass()) {
+				for (Method method : c.getDeclaredMethods()) {
+					if (method.getName().equals(CALLBACK) && method.getParameterTypes().length == 3) {
+						result = Boolean.TRUE;
+						break;
+					}
+				}
+			}
+			listening.put(clazz, result);
+		}
+		return result;
+	}
+}
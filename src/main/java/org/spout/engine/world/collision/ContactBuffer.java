@@ -0,0 +1,127 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import java.util.Arrays;
+
+import javax.vecmath.Vector3f;
+
+/**
+ * Collects the contact points of a simulation step, so the collision callbacks can run after the manifolds
+ * of the dispatcher are no longer iterated.<br>
+ * <br>
+ * The positions are stored in primitive arrays which are reused from step to step.
+ * Colliders which are proxies of bodies owned by another region are flagged, their callbacks are called by that region.
+ */
+public class ContactBuffer {
+	private static final int INITIAL_CAPACITY = 64;
+	private float[] positions = new float[INITIAL_CAPACITY * 6];
+	private Object[] holders = new Object[INITIAL_CAPACITY * 2];
+	private boolean[] proxies = new boolean[INITIAL_CAPACITY * 2];
+	private int size = 0;
+
+	/**
+	 * Adds a contact point
+	 * @param holderA the holder of the first collider
+	 * @param positionA the position where the first collider touched the second
+	 * @param proxyA if the first collider is a proxy
+	 * @param holderB the holder of the second collider
+	 * @param positionB the position where the second collider touched the first
+	 * @param proxyB if the second collider is a proxy
+	 */
+	public void add(Object holderA, Vector3f positionA, boolean proxyA, Object holderB, Vector3f positionB, boolean proxyB) {
+		if (size << 1 == holders.length) {
+			positions = Arrays.copyOf(positions, positions.length << 1);
+			holders = Arrays.copyOf(holders, holders.length << 1);
+			proxies = Arrays.copyOf(proxies, proxies.length << 1);
+		}
+		int p = size * 6;
+		positions[p++] = positionA.x;
+		positions[p++] = positionA.y;
+		positions[p++] = positionA.z;
+		positions[p++] = positionB.x;
+		positions[p++] = positionB.y;
+		positions[p] = positionB.z;
+		holders[size << 1] = holderA;
+		holders[(size << 1) + 1] = holderB;
+		proxies[size << 1] = proxyA;
+		proxies[(size << 1) + 1] = proxyB;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Object getHolderA(int i) {
+		return holders[i << 1];
+	}
+
+	public Object getHolderB(int i) {
+		return holders[(i << 1) + 1];
+	}
+
+	public boolean isProxyA(int i) {
+		return proxies[i << 1];
+	}
+
+	public boolean isProxyB(int i) {
+		return proxies[(i << 1) + 1];
+	}
+
+	public float getAX(int i) {
+		return positions[i * 6];
+	}
+
+	public float getAY(int i) {
+		return positions[i * 6 + 1];
+	}
+
+	public float getAZ(int i) {
+		return positions[i * 6 + 2];
+	}
+
+	public float getBX(int i) {
+		return positions[i * 6 + 3];
+	}
+
+	public float getBY(int i) {
+		return positions[i * 6 + 4];
+	}
+
+	public float getBZ(int i) {
+		return positions[i * 6 + 5];
+	}
+
+	/**
+	 * Removes all contact points, releasing the references to their holders
+	 */
+	public void clear() {
+		Arrays.fill(holders, 0, size << 1, null);
+		size = 0;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.linearmath.Transform;
+
+/**
+ * The collision objects a region simulates for its entities.<br>
+ * <br>
+ * All objects are tracked, static bodies and objects which are not rigid bodies included, so every object is handed off
+ * when its entity leaves the region. An entity which moved to a neighbouring region of the same world keeps its object
+ * in this simulation until the object is further than the hand off margin outside, so an entity moving back and forth
+ * along the edge does not move its object between simulations every step.
+ */
+public class RegionBodies {
+	private final List<CollisionObject> objects = new ArrayList<CollisionObject>();
+	private final List<RigidBody> dynamicBodies = new ArrayList<RigidBody>();
+	private final Transform transform = new Transform();
+
+	/**
+	 * Adds an object to the simulation
+	 * @param world the simulation of the region
+	 * @param object to add
+	 */
+	public void add(DiscreteDynamicsWorld world, CollisionObject object) {
+		if (object instanceof RigidBody) {
+			world.addRigidBody((RigidBody) object);
+			if (!object.isStaticObject()) {
+				dynamicBodies.add((RigidBody) object);
+			}
+		} else {
+			world.addCollisionObject(object);
+		}
+		objects.add(object);
+	}
+
+	/**
+	 * Removes an object from the simulation
+	 * @param world the simulation of the region
+	 * @param object to remove
+	 */
+	public void remove(DiscreteDynamicsWorld world, CollisionObject object) {
+		if (object instanceof RigidBody) {
+			world.removeRigidBody((RigidBody) object);
+			dynamicBodies.remove(object);
+		} else {
+			world.removeCollisionObject(object);
+		}
+		objects.remove(object);
+	}
+
+	/**
+	 * Removes the objects of the entities which left the region from the simulation
+	 * @param world the simulation of the region
+	 * @param departures tells where the entities of the objects are
+	 * @param base the lowest corner of the region
+	 * @param size of the region along each axis
+	 * @param margin how far outside of the region an object of an entity in a neighbouring region is kept
+	 * @param removed the list to add the removed objects to
+	 */
+	public void handOff(DiscreteDynamicsWorld world, Departures departures, Vector3f base, int size, float margin, List<CollisionObject> removed) {
+		for (int i = objects.size() - 1; i >= 0; i--) {
+			CollisionObject object = objects.get(i);
+			if (departures.hasLeftWorld(object) || (departures.hasLeftRegion(object) && getDistanceOutside(object, base, size) > margin)) {
+				remove(world, object);
+				removed.add(object);
+			}
+		}
+	}
+
+	/**
+	 * Gets the objects in the simulation
+	 * @return the objects, should not be modified
+	 */
+	public List<CollisionObject> getObjects() {
+		return objects;
+	}
+
+	/**
+	 * Gets the non-static bodies in the simulation
+	 * @return the bodies, should not be modified
+	 */
+	public List<RigidBody> getDynamicBodies() {
+		return dynamicBodies;
+	}
+
+	/**
+	 * Forgets all objects, used when the simulation of the region is released
+	 */
+	public void clear() {
+		objects.clear();
+		dynamicBodies.clear();
+	}
+
+	/**
+	 * Gets how far an object is outside of a region
+	 * @param object to check
+	 * @param base the lowest corner of the region
+	 * @param size of the region along each axis
+	 * @return the distance along the axis where the object is furthest outside, or 0 if it is inside
+	 */
+	private float getDistanceOutside(CollisionObject object, Vector3f base, int size) {
+		final Vector3f position = object.getWorldTransform(transform).origin;
+		float distance = 0f;
+		distance = Math.max(distance, base.x - position.x);
+		distance = Math.max(distance, position.x - (base.x + size));
+		distance = Math.max(distance, base.y - position.y);
+		distance = Math.max(distance, position.y - (base.y + size));
+		distance = Math.max(distance, base.z - position.z);
+		distance = Math.max(distance, position.z - (base.z + size));
+		return distance;
+	}
+
+	/**
+	 * Tells where the entities of the simulated objects are
+	 */
+	public interface Departures {
+		/**
+		 * Checks if the entity of an object is in another region than the simulating region
+		 * @param object to check
+		 * @return true if the entity is in another region
+		 */
+		public boolean hasLeftRegion(CollisionObject object);
+
+		/**
+		 * Checks if the entity of an object is in another world than the simulating region
+		 * @param object to check
+		 * @return true if the entity is in another world
+		 */
+		public boolean hasLeftWorld(CollisionObject object);
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+/**
+ * Mirrors bodies near the edges of a region into the simulations of the neighbouring regions.<br>
+ * <br>
+ * Each region only simulates the bodies it owns. A body within a margin of a neighbouring region is added to the
+ * simulation of that region as a kinematic proxy, which follows the body but is not moved by the simulation itself.
+ * The owner sends the transform of the body to the neighbour after each step, the neighbour applies it before
+ * its own next step. Proxies are only removed when the owner says so, a sleeping body keeps its proxies.<br>
+ * <br>
+ * A proxy has the user pointer of the body it mirrors, so contacts with it map back to the entity of that body.
+ * Each region only calls the collision callbacks of the colliders it owns, see {@link #isProxy(CollisionObject)}.
+ */
+public class RegionBoundary {
+	/**
+	 * Updates from the owners of the mirrored bodies, applied by this region
+	 */
+	private final ConcurrentLinkedQueue<ProxyUpdate> incoming = new ConcurrentLinkedQueue<ProxyUpdate>();
+	/**
+	 * The proxies in the simulation of this region, by the body they mirror
+	 */
+	private final Map<RigidBody, RigidBody> proxies = new IdentityHashMap<RigidBody, RigidBody>();
+	/**
+	 * The boundaries of the neighbours each owned body is mirrored into
+	 */
+	private final Map<RigidBody, List<RegionBoundary>> mirrored = new IdentityHashMap<RigidBody, List<RegionBoundary>>();
+
+	/**
+	 * Mirrors an owned body into the given neighbours, and removes it from the neighbours it was previously mirrored into
+	 * @param body to mirror
+	 * @param targets the boundaries of the neighbours the body is near, may be empty
+	 */
+	public void mirror(RigidBody body, List<RegionBoundary> targets) {
+		List<RegionBoundary> previous = mirrored.get(body);
+		if (previous != null) {
+			for (int i = 0; i < previous.size(); i++) {
+				RegionBoundary boundary = previous.get(i);
+				if (!targets.contains(boundary)) {
+					boundary.incoming.add(new ProxyUpdate(body, null));
+				}
+			}
+		}
+		if (targets.isEmpty()) {
+			mirrored.remove(body);
+			return;
+		}
+		Transform transform = body.getWorldTransform(new Transform());
+		for (int i = 0; i < targets.size(); i++) {
+			targets.get(i).incoming.add(new ProxyUpdate(body, transform));
+		}
+		mirrored.put(body, new ArrayList<RegionBoundary>(targets));
+	}
+
+	/**
+	 * Removes the proxies of an owned body from all neighbours
+	 * @param body which is no longer owned by this region
+	 */
+	public void unmirror(RigidBody body) {
+		List<RegionBoundary> previous = mirrored.remove(body);
+		if (previous != null) {
+			for (int i = 0; i < previous.size(); i++) {
+				previous.get(i).incoming.add(new ProxyUpdate(body, null));
+			}
+		}
+	}
+
+	/**
+	 * Removes the proxies of all owned bodies from all neighbours
+	 */
+	public void unmirrorAll() {
+		for (RigidBody body : new ArrayList<RigidBody>(mirrored.keySet())) {
+			unmirror(body);
+		}
+	}
+
+	/**
+	 * Adds, moves and removes proxies in the simulation of this region, as requested by the owners of the bodies
+	 * @param world the simulation of this region
+	 * @return true if a proxy was added or moved
+	 */
+	public boolean applyUpdates(DiscreteDynamicsWorld world) {
+		boolean moved = false;
+		ProxyUpdate update;
+		while ((update = incoming.poll()) != null) {
+			RigidBody proxy = proxies.get(update.body);
+			if (update.transform == null) {
+				if (proxy != null) {
+					world.removeRigidBody(proxy);
+					proxies.remove(update.body);
+				}
+				continue;
+			}
+			if (proxy == null) {
+				proxy = createProxy(update.body, update.transform);
+				proxies.put(update.body, proxy);
+				world.addRigidBody(proxy);
+			} else {
+				proxy.getMotionState().setWorldTransform(update.transform);
+				proxy.setWorldTransform(update.transform);
+				proxy.activate();
+			}
+			moved = true;
+		}
+		return moved;
+	}
+
+	/**
+	 * Gets the number of proxies in the simulation of this region
+	 * @return the number of proxies
+	 */
+	public int getProxyCount() {
+		return proxies.size();
+	}
+
+	/**
+	 * Forgets all proxies, used when the simulation of this region is released
+	 */
+	public void clearProxies() {
+		proxies.clear();
+		incoming.clear();
+	}
+
+	/**
+	 * Removes the proxy of a body which is now owned by this region
+	 * @param world the simulation of this region
+	 * @param body which is added to the simulation
+	 */
+	public void removeProxy(DiscreteDynamicsWorld world, RigidBody body) {
+		RigidBody proxy = proxies.remove(body);
+		if (proxy != null) {
+			world.removeRigidBody(proxy);
+		}
+	}
+
+	/**
+	 * Checks if a collider is the proxy of a body owned by another region
+	 * @param object to check
+	 * @return true if the collider is a proxy
+	 */
+	public static boolean isProxy(CollisionObject object) {
+		return object instanceof ProxyBody;
+	}
+
+	private static RigidBody createProxy(RigidBody body, Transform transform) {
+		final RigidBodyConstructionInfo info = new RigidBodyConstructionInfo(0, new DefaultMotionState(transform), body.getCollisionShape(), new Vector3f(0f, 0f, 0f));
+		info.friction = body.getFriction();
+		info.restitution = body.getRestitution();
+		final RigidBody proxy = new ProxyBody(info);
+		proxy.setUserPointer(body.getUserPointer());
+		proxy.setCollisionFlags(proxy.getCollisionFlags() | CollisionFlags.KINEMATIC_OBJECT);
+		return proxy;
+	}
+
+	private static class ProxyBody extends RigidBody {
+		public ProxyBody(RigidBodyConstructionInfo info) {
+			super(info);
+		}
+	}
+
+	private static class ProxyUpdate {
+		private final RigidBody body;
+		/**
+		 * The transform of the body, or null to remove the proxy
+		 */
+		private final Transform transform;
+
+		public ProxyUpdate(RigidBody body, Transform transform) {
+			this.body = body;
+			this.transform = transform;
+		}
+	}
+}
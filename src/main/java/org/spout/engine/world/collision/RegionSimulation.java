@@ -0,0 +1,150 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.BroadphaseInterface;
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.dispatch.CollisionConfiguration;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionFlags;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.collision.dispatch.GhostPairCallback;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+import com.bulletphysics.util.ObjectArrayList;
+
+import org.spout.engine.SpoutConfiguration;
+import org.spout.engine.world.SpoutRegion;
+
+/**
+ * The Bullet dynamics world of a region, together with the broadphase, dispatcher and solver it needs.<br>
+ * <br>
+ * Regions only obtain a simulation once the first physics body is added, and release it once the last body
+ * is removed. Released simulations are emptied and kept in a pool, so regions that gain and lose bodies
+ * frequently do not allocate a new world every time.
+ */
+public class RegionSimulation {
+	private static final ConcurrentLinkedQueue<RegionSimulation> pool = new ConcurrentLinkedQueue<RegionSimulation>();
+	private static final AtomicInteger pooled = new AtomicInteger(0);
+	private final BroadphaseInterface broadphase;
+	private final CollisionConfiguration configuration;
+	private final CollisionDispatcher dispatcher;
+	private final SequentialImpulseConstraintSolver solver;
+	private final DiscreteDynamicsWorld world;
+	private RigidBody regionBody;
+
+	private RegionSimulation() {
+		broadphase = new DbvtBroadphase();
+		broadphase.getOverlappingPairCache().setInternalGhostPairCallback(new GhostPairCallback());
+		configuration = new DefaultCollisionConfiguration();
+		dispatcher = new CollisionDispatcher(configuration);
+		solver = new SequentialImpulseConstraintSolver();
+		world = new DiscreteDynamicsWorld(dispatcher, broadphase, solver, configuration);
+		world.getDispatchInfo().allowedCcdPenetration = 10f;
+		world.getSolverInfo().splitImpulse = true;
+	}
+
+	/**
+	 * Gets a simulation for a region, from the pool if possible
+	 * @param region to simulate
+	 * @param gravity of the simulation
+	 * @return the simulation
+	 */
+	public static RegionSimulation obtain(SpoutRegion region, Vector3f gravity) {
+		RegionSimulation simulation = pool.poll();
+		if (simulation == null) {
+			simulation = new RegionSimulation();
+		} else {
+			pooled.decrementAndGet();
+		}
+		simulation.attach(region, gravity);
+		return simulation;
+	}
+
+	/**
+	 * Empties this simulation and returns it to the pool.<br>
+	 * The simulation must not be used after it is released.
+	 */
+	public void release() {
+		detach();
+		if (pooled.incrementAndGet() <= SpoutConfiguration.SIMULATION_POOL_SIZE.getInt()) {
+			pool.add(this);
+		} else {
+			pooled.decrementAndGet();
+		}
+	}
+
+	public DiscreteDynamicsWorld getWorld() {
+		return world;
+	}
+
+	/**
+	 * Adds the static body that collides with the blocks of the region
+	 */
+	private void attach(SpoutRegion region, Vector3f gravity) {
+		world.setGravity(gravity);
+		final SpoutPhysicsWorld physicsInfo = new SpoutPhysicsWorld(region);
+		final RegionShape simulationShape = new RegionShape(physicsInfo, region);
+		final Matrix3f rot = new Matrix3f();
+		rot.setIdentity();
+		final DefaultMotionState regionMotionState = new DefaultMotionState(new Transform(new Matrix4f(rot, new Vector3f(0, 0, 0), 1.0f)));
+		final RigidBodyConstructionInfo regionBodyInfo = new RigidBodyConstructionInfo(0, regionMotionState, simulationShape, new Vector3f(0f, 0f, 0f));
+		regionBody = new RigidBody(regionBodyInfo);
+		//TODO Recheck Terasology code for more correct flags
+		regionBody.setCollisionFlags(CollisionFlags.STATIC_OBJECT | regionBody.getCollisionFlags());
+		world.addRigidBody(regionBody);
+	}
+
+	/**
+	 * Removes all bodies, including the region body, and resets the solver
+	 */
+	private void detach() {
+		ObjectArrayList<CollisionObject> objects = world.getCollisionObjectArray();
+		for (int i = objects.size() - 1; i >= 0; i--) {
+			CollisionObject object = objects.getQuick(i);
+			if (object instanceof RigidBody) {
+				world.removeRigidBody((RigidBody) object);
+			} else {
+				world.removeCollisionObject(object);
+			}
+		}
+		regionBody = null;
+		solver.reset();
+	}
+}
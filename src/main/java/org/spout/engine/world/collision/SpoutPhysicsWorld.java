@@ -26,19 +26,17 @@
  */
 package org.spout.engine.world.collision;
 
-import javax.vecmath.Vector3f;
-
-import com.bulletphysics.collision.shapes.CollisionShape;
 import com.bulletphysics.collision.shapes.voxel.CollisionSnapshot;
 import com.bulletphysics.collision.shapes.voxel.VoxelPhysicsWorld;
 
-import org.spout.api.collision.CollisionStrategy;
-import org.spout.api.geo.cuboid.Region;
+import org.spout.api.geo.LoadOption;
 import org.spout.api.material.BlockMaterial;
-import org.spout.api.math.Vector3;
+import org.spout.api.material.block.BlockFullState;
 
 import org.spout.engine.world.SpoutBlock;
+import org.spout.engine.world.SpoutChunk;
 import org.spout.engine.world.SpoutRegion;
+import org.spout.engine.world.SpoutWorld;
 
 public class SpoutPhysicsWorld implements VoxelPhysicsWorld {
 	private final SpoutRegion simulation;
@@ -52,48 +50,15 @@ public class SpoutPhysicsWorld implements VoxelPhysicsWorld {
 
 	@Override
 	public CollisionSnapshot getCollisionShapeAt(int x, int y, int z) {
-		final SpoutBlock block = (SpoutBlock) simulation.getBlock(x, y, z);
-		return new SpoutVoxelCollisionSnapshot(block.getMaterial(), simulation, block.getPosition());
-	}
-
-	private static class SpoutVoxelCollisionSnapshot implements CollisionSnapshot {
-		private final boolean isColliding, isBlocking;
-		private final CollisionShape shape;
-		private final Vector3 position;
-		private final Region region;
-
-		public SpoutVoxelCollisionSnapshot(BlockMaterial material, Region region, Vector3 position) {
-			this.shape = material.getCollisionShape();
-			this.isColliding = shape != null && material.getCollisionModel().getStrategy() != CollisionStrategy.NOCOLLIDE;
-			this.isBlocking = shape != null && material.getCollisionModel().getStrategy() == CollisionStrategy.SOLID;
-			this.position = position;
-			this.region = region;
-		}
-
-		@Override
-		public boolean isColliding() {
-			return isColliding;
-		}
-
-		@Override
-		public Object getUserData() {
-			return region.getBlock(position);
-		}
-
-		@Override
-		public CollisionShape getCollisionShape() {
-			return shape;
-		}
-
-		@Override
-		public Vector3f getCollisionOffset() {
-			//This is the offset of the material shape from the center of the voxel (for a cube of 1, 1, 1 in size, this should be 0, 0, 0)
-			return new Vector3f(0, 0, 0);
-		}
-
-		@Override
-		public boolean isBlocking() {
-			return isBlocking;
+		final SpoutWorld world = simulation.getWorld();
+		final SpoutChunk chunk = world.getChunkFromBlock(x, y, z, LoadOption.NO_LOAD);
+		final int state;
+		if (chunk != null) {
+			state = chunk.getBlockFullState(x, y, z);
+		} else {
+			final BlockMaterial material = ((SpoutBlock) simulation.getBlock(x, y, z)).getMaterial();
+			state = BlockFullState.getPacked(material.getId(), material.getData());
 		}
+		return new SpoutVoxelCollisionSnapshot(world.getCollisionCache().get(state), world, x, y, z);
 	}
-}
\ No newline at end of file
+}
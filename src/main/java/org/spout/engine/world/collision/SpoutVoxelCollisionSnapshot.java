@@ -0,0 +1,80 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.shapes.CollisionShape;
+import com.bulletphysics.collision.shapes.voxel.CollisionSnapshot;
+
+import org.spout.api.geo.World;
+
+/**
+ * The collision properties of a block, as seen by the voxel shape of a region.<br>
+ * <br>
+ * The properties are shared by all blocks of the same state, the snapshot only adds the position
+ * so the collision callbacks can resolve the block.
+ */
+public class SpoutVoxelCollisionSnapshot implements CollisionSnapshot {
+	private final BlockCollisionProperties properties;
+	private final World world;
+	private final int x, y, z;
+
+	public SpoutVoxelCollisionSnapshot(BlockCollisionProperties properties, World world, int x, int y, int z) {
+		this.properties = properties;
+		this.world = world;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	@Override
+	public boolean isColliding() {
+		return properties.isColliding();
+	}
+
+	@Override
+	public Object getUserData() {
+		return world.getBlock(x, y, z);
+	}
+
+	@Override
+	public CollisionShape getCollisionShape() {
+		return properties.getCollisionShape();
+	}
+
+	@Override
+	public Vector3f getCollisionOffset() {
+		//This is the offset of the material shape from the center of the voxel (for a cube of 1, 1, 1 in size, this should be 0, 0, 0)
+		return new Vector3f(0, 0, 0);
+	}
+
+	@Override
+	public boolean isBlocking() {
+		return properties.isBlocking();
+	}
+}
@@ -45,6 +45,12 @@ public class DynamicBlockUpdate implements Comparable<DynamicBlockUpdate>, Dynam
 
 	private DynamicBlockUpdate next;
 
+	// Position in the update heap and the intrusive list of the chunk, maintained by DynamicBlockUpdateTree
+	int heapIndex = -1;
+	boolean cancelled = false;
+	DynamicBlockUpdate chunkPrevious;
+	DynamicBlockUpdate chunkNext;
+
 	public DynamicBlockUpdate(int packed, long nextUpdate, int data) {
 		this(unpackX(packed), unpackY(packed), unpackZ(packed), nextUpdate, data);
 	}
@@ -88,6 +94,10 @@ public class DynamicBlockUpdate implements Comparable<DynamicBlockUpdate>, Dynam
 		return data;
 	}
 
+	int getId() {
+		return id;
+	}
+
 	public int getChunkPacked() {
 		return SignedTenBitTripleHashed.positiveRightShift(packed, 4);
 	}
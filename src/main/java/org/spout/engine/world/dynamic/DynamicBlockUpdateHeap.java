@@ -0,0 +1,212 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.dynamic;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of dynamic block updates, ordered by update time and then by id, the same order as
+ * {@link DynamicBlockUpdate#compareTo(DynamicBlockUpdate)}.<br>
+ * <br>
+ * The keys are kept in primitive arrays next to the updates, so sifting does not have to dereference the updates.
+ * Updates are cancelled in constant time by marking them, cancelled updates are dropped when they reach the top
+ * of the heap, or all at once when they make up more than half of the heap.<br>
+ * This class is not thread safe.
+ */
+public class DynamicBlockUpdateHeap {
+	private static final int COMPACT_THRESHOLD = 1024;
+
+	private long[] times;
+	private int[] ids;
+	private DynamicBlockUpdate[] updates;
+	private int size = 0;
+	private int cancelled = 0;
+
+	public DynamicBlockUpdateHeap() {
+		this(64);
+	}
+
+	public DynamicBlockUpdateHeap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.times = new long[capacity];
+		this.ids = new int[capacity];
+		this.updates = new DynamicBlockUpdate[capacity];
+	}
+
+	/**
+	 * Adds an update to the heap
+	 * @param update to add, must not be in a heap
+	 */
+	public void add(DynamicBlockUpdate update) {
+		if (update.heapIndex != -1 || update.cancelled) {
+			throw new IllegalArgumentException("Dynamic block update is already queued or was cancelled");
+		}
+		if (size == updates.length) {
+			int length = size << 1;
+			times = Arrays.copyOf(times, length);
+			ids = Arrays.copyOf(ids, length);
+			updates = Arrays.copyOf(updates, length);
+		}
+		set(size, update.getNextUpdate(), update.getId(), update);
+		siftUp(size++);
+	}
+
+	/**
+	 * Cancels an update in the heap
+	 * @param update to cancel
+	 * @return True if the update was in the heap
+	 */
+	public boolean cancel(DynamicBlockUpdate update) {
+		if (update.cancelled || update.heapIndex < 0 || update.heapIndex >= size || updates[update.heapIndex] != update) {
+			return false;
+		}
+		update.cancelled = true;
+		cancelled++;
+		if (cancelled > COMPACT_THRESHOLD && cancelled > (size >> 1)) {
+			compact();
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the first update of the heap, without removing it
+	 * @return the update, or null if the heap is empty
+	 */
+	public DynamicBlockUpdate peek() {
+		dropCancelled();
+		return size == 0 ? null : updates[0];
+	}
+
+	/**
+	 * Removes the first update of the heap
+	 * @return the update, or null if the heap is empty
+	 */
+	public DynamicBlockUpdate poll() {
+		dropCancelled();
+		return size == 0 ? null : removeFirst();
+	}
+
+	/**
+	 * Gets the number of updates in the heap that are not cancelled
+	 */
+	public int size() {
+		return size - cancelled;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	private void dropCancelled() {
+		while (size > 0 && updates[0].cancelled) {
+			removeFirst();
+			cancelled--;
+		}
+	}
+
+	private DynamicBlockUpdate removeFirst() {
+		DynamicBlockUpdate first = updates[0];
+		first.heapIndex = -1;
+		size--;
+		if (size > 0) {
+			set(0, times[size], ids[size], updates[size]);
+			siftDown(0);
+		}
+		updates[size] = null;
+		return first;
+	}
+
+	/**
+	 * Removes all cancelled updates and rebuilds the heap
+	 */
+	private void compact() {
+		int newSize = 0;
+		for (int i = 0; i < size; i++) {
+			DynamicBlockUpdate update = updates[i];
+			if (update.cancelled) {
+				update.heapIndex = -1;
+			} else {
+				set(newSize++, times[i], ids[i], update);
+			}
+		}
+		Arrays.fill(updates, newSize, size, null);
+		size = newSize;
+		cancelled = 0;
+		for (int i = (size >> 1) - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	private void set(int index, long time, int id, DynamicBlockUpdate update) {
+		times[index] = time;
+		ids[index] = id;
+		updates[index] = update;
+		update.heapIndex = index;
+	}
+
+	private void siftUp(int index) {
+		long time = times[index];
+		int id = ids[index];
+		DynamicBlockUpdate update = updates[index];
+		while (index > 0) {
+			int parent = (index - 1) >> 1;
+			if (!lessThan(time, id, times[parent], ids[parent])) {
+				break;
+			}
+			set(index, times[parent], ids[parent], updates[parent]);
+			index = parent;
+		}
+		set(index, time, id, update);
+	}
+
+	private void siftDown(int index) {
+		long time = times[index];
+		int id = ids[index];
+		DynamicBlockUpdate update = updates[index];
+		int half = size >> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			int right = child + 1;
+			if (right < size && lessThan(times[right], ids[right], times[child], ids[child])) {
+				child = right;
+			}
+			if (!lessThan(times[child], ids[child], time, id)) {
+				break;
+			}
+			set(index, times[child], ids[child], updates[child]);
+			index = child;
+		}
+		set(index, time, id, update);
+	}
+
+	private static boolean lessThan(long timeA, int idA, long timeB, int idB) {
+		if (timeA != timeB) {
+			return timeA < timeB;
+		}
+		return idA - idB < 0;
+	}
+}
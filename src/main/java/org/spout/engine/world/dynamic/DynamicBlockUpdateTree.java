@@ -30,14 +30,9 @@ import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.spout.api.Spout;
 import org.spout.api.geo.LoadOption;
@@ -58,17 +53,17 @@ import org.spout.engine.world.SpoutWorld;
  * This class contains the dynamic block updates.  There are 3 data structures that are kept in sync.<br>
  * <br>
  * blockToUpdateMap - This maps the packed (x, y, z) block coords to the DynamicBlockUpdates for that block (stored as a linked list)
- * chunkToUpdateMap - this maps the packed (x, y, z) chunk coords to the DynamicBlockUpdates for that chunk (stored as a hashset)
- * queuedUpdates - the actual queue of dynamic updates, stored in a TreeMap
+ * chunkToUpdateMap - this maps the packed (x, y, z) chunk coords to the DynamicBlockUpdates for that chunk (stored as a doubly linked list inside the updates)
+ * queuedUpdates - the actual queue of dynamic updates, stored in a binary heap
  */
 public class DynamicBlockUpdateTree {
 	
 	private final SpoutRegion region;
 	private final SpoutWorld world;
 	
-	private TreeSet<DynamicBlockUpdate> queuedUpdates = new TreeSet<DynamicBlockUpdate>();
+	private DynamicBlockUpdateHeap queuedUpdates = new DynamicBlockUpdateHeap();
 	private TIntObjectHashMap<DynamicBlockUpdate> blockToUpdateMap = new TIntObjectHashMap<DynamicBlockUpdate>();
-	private TIntObjectHashMap<HashSet<DynamicBlockUpdate>> chunkToUpdateMap = new TIntObjectHashMap<HashSet<DynamicBlockUpdate>>();
+	private TIntObjectHashMap<DynamicBlockUpdate> chunkToUpdateMap = new TIntObjectHashMap<DynamicBlockUpdate>();
 	private ConcurrentLinkedQueue<PointAlone> resetPending = new ConcurrentLinkedQueue<PointAlone>();
 	private ConcurrentHashMap<PointAlone, Boolean> resetPendingMap = new ConcurrentHashMap<PointAlone, Boolean>();
 	private ConcurrentLinkedQueue<List<DynamicBlockUpdate>> pendingLists = new ConcurrentLinkedQueue<List<DynamicBlockUpdate>>();
@@ -177,30 +172,53 @@ public class DynamicBlockUpdateTree {
 		pendingLists.add(list);
 	}
 	/**
-	 * NOTE: Do NOT modify the returned set
+	 * Gets a copy of the updates queued for a chunk
+	 * 
+	 * @param c the chunk
+	 * @return the updates, or null if there are none
 	 */
-	public Set<DynamicBlockUpdate> getDynamicBlockUpdates(Chunk c) {
+	public List<DynamicBlockUpdate> getDynamicBlockUpdates(Chunk c) {
 		TickStage.checkStage(TickStage.SNAPSHOT);
-		int packed = DynamicBlockUpdate.getChunkPacked(c);
-		return chunkToUpdateMap.get(packed);
+		DynamicBlockUpdate current = chunkToUpdateMap.get(DynamicBlockUpdate.getChunkPacked(c));
+		if (current == null) {
+			return null;
+		}
+		List<DynamicBlockUpdate> list = new ArrayList<DynamicBlockUpdate>();
+		while (current != null) {
+			list.add(current);
+			current = current.chunkNext;
+		}
+		return list;
+	}
+
+	/**
+	 * Checks if there are updates queued for a chunk
+	 * 
+	 * @param c the chunk
+	 * @return True if there are updates for the chunk
+	 */
+	public boolean hasDynamicBlockUpdates(Chunk c) {
+		TickStage.checkStage(TickStage.SNAPSHOT);
+		return chunkToUpdateMap.containsKey(DynamicBlockUpdate.getChunkPacked(c));
 	}
 
 	public boolean removeDynamicBlockUpdates(Chunk c) {
 		TickStage.checkStage(TickStage.SNAPSHOT, regionThread);
-		Set<DynamicBlockUpdate> toRemove = getDynamicBlockUpdates(c);
-		if (toRemove == null) {
-			return true;
-		}
-
-		if (toRemove.size() <= 0) {
+		int packed = DynamicBlockUpdate.getChunkPacked(c);
+		DynamicBlockUpdate current = chunkToUpdateMap.get(packed);
+		if (current == null) {
 			return true;
 		}
 
-		List<DynamicBlockUpdate> list = new ArrayList<DynamicBlockUpdate>(toRemove);
-		for (DynamicBlockUpdate dm : list) {
-			if (remove(dm) == null) {
+		while (current != null) {
+			DynamicBlockUpdate next = current.chunkNext;
+			if (remove(current) == null) {
 				throw new IllegalStateException("Expected update not present when removing all updates for chunk " + c);
 			}
+			current = next;
+		}
+		if (chunkToUpdateMap.containsKey(packed)) {
+			throw new IllegalStateException("Updates left for chunk " + c + " after removing all updates");
 		}
 		return false;
 	}
@@ -303,19 +321,16 @@ public class DynamicBlockUpdateTree {
 	
 	public long getFirstDynamicUpdateTime() {
 		checkStages();
-		if (queuedUpdates.isEmpty()) {
+		DynamicBlockUpdate first = queuedUpdates.peek();
+		if (first == null) {
 			return SpoutScheduler.END_OF_THE_WORLD;
 		}
-		return queuedUpdates.first().getNextUpdate();
+		return first.getNextUpdate();
 	}
 	
 	public DynamicBlockUpdate getNextUpdate(long thresholdTime) {
 		checkStages();
-		if (queuedUpdates.isEmpty()) {
-			return null;
-		}
-
-		DynamicBlockUpdate first = queuedUpdates.first();
+		DynamicBlockUpdate first = queuedUpdates.peek();
 		if (first == null) {
 			return null;
 		}
@@ -324,9 +339,10 @@ public class DynamicBlockUpdateTree {
 			return null;
 		}
 
-		if (remove(first) != first) {
+		if (queuedUpdates.poll() != first) {
 			throw new IllegalStateException("queued updates for dynamic block updates violated threading rules");
 		}
+		unlink(first);
 
 		return first;
 	}
@@ -368,12 +384,11 @@ public class DynamicBlockUpdateTree {
 		}
 
 		queuedUpdates.add(update);
-		HashSet<DynamicBlockUpdate> chunkSet = chunkToUpdateMap.get(update.getChunkPacked());
-		if (chunkSet == null) {
-			chunkSet = new HashSet<DynamicBlockUpdate>();
-			chunkToUpdateMap.put(update.getChunkPacked(), chunkSet);
+		DynamicBlockUpdate chunkRoot = chunkToUpdateMap.put(update.getChunkPacked(), update);
+		if (chunkRoot != null) {
+			chunkRoot.chunkPrevious = update;
+			update.chunkNext = chunkRoot;
 		}
-		chunkSet.add(update);
 
 		return previous;
 	}
@@ -385,6 +400,19 @@ public class DynamicBlockUpdateTree {
 	 * @return the update, if removed
 	 */
 	private DynamicBlockUpdate remove(DynamicBlockUpdate update) {
+		if (!queuedUpdates.cancel(update)) {
+			return null;
+		}
+		unlink(update);
+		return update;
+	}
+
+	/**
+	 * Unlinks an update, that has been removed from the queue, from the block and chunk lists
+	 * 
+	 * @param update the update to unlink
+	 */
+	private void unlink(DynamicBlockUpdate update) {
 		boolean removed = false;
 		int packedKey = update.getPacked();
 		DynamicBlockUpdate root = blockToUpdateMap.get(packedKey);
@@ -401,22 +429,10 @@ public class DynamicBlockUpdateTree {
 				throw new IllegalStateException("Dynamic update appeared twice in the linked list");
 			}
 			removed = true;
-			if (!queuedUpdates.remove(current)) {
-				throw new IllegalStateException("Dynamic block update missing from queue when removed");
-			}
-			int currentPacked = current.getChunkPacked();
-			HashSet<DynamicBlockUpdate> chunkSet = chunkToUpdateMap.get(currentPacked);
-			if (chunkSet == null || !chunkSet.remove(current)) {
-				throw new IllegalStateException("Dynamic block update missing from chunk when removed");
-			}
-	
-			if (chunkSet.size() == 0) {
-				if (chunkToUpdateMap.remove(currentPacked) == null) {
-					throw new IllegalStateException("Removing updates for dynamic block updates violated threading rules");
-				}
-			}
+			unlinkChunk(current);
 			if (current == root) {
 				root = current.getNext();
+				current.remove(current);
 				current = root;
 				rootChanged = true;
 			} else {
@@ -426,6 +442,9 @@ public class DynamicBlockUpdateTree {
 				current = previous.getNext();
 			}
 		}
+		if (!removed) {
+			throw new IllegalStateException("Dynamic block update missing from block when removed");
+		}
 		if (rootChanged) {
 			if (root != null) {
 				blockToUpdateMap.put(packedKey, root);
@@ -433,7 +452,34 @@ public class DynamicBlockUpdateTree {
 				blockToUpdateMap.remove(packedKey);
 			}
 		}
-		return removed ? update : null;
+	}
+
+	/**
+	 * Unlinks an update from the list of its chunk
+	 * 
+	 * @param update the update to unlink
+	 */
+	private void unlinkChunk(DynamicBlockUpdate update) {
+		DynamicBlockUpdate previous = update.chunkPrevious;
+		DynamicBlockUpdate next = update.chunkNext;
+		if (previous != null) {
+			previous.chunkNext = next;
+		} else {
+			int packed = update.getChunkPacked();
+			if (chunkToUpdateMap.get(packed) != update) {
+				throw new IllegalStateException("Dynamic block update missing from chunk when removed");
+			}
+			if (next != null) {
+				chunkToUpdateMap.put(packed, next);
+			} else {
+				chunkToUpdateMap.remove(packed);
+			}
+		}
+		if (next != null) {
+			next.chunkPrevious = previous;
+		}
+		update.chunkPrevious = null;
+		update.chunkNext = null;
 	}
 		
 	/**
@@ -450,20 +496,10 @@ public class DynamicBlockUpdateTree {
 
 		DynamicBlockUpdate current = oldRoot;
 		while (current != null) {
-			if (!queuedUpdates.remove(current)) {
+			if (!queuedUpdates.cancel(current)) {
 				throw new IllegalStateException("Dynamic block update missing from queue when removed");
 			}
-			int previousPacked = current.getChunkPacked();
-			HashSet<DynamicBlockUpdate> chunkSet = chunkToUpdateMap.get(previousPacked);
-			if (chunkSet == null || !chunkSet.remove(current)) {
-				throw new IllegalStateException("Dynamic block update missing from chunk when removed");
-			}
-
-			if (chunkSet.size() == 0) {
-				if (chunkToUpdateMap.remove(previousPacked) == null) {
-					throw new IllegalStateException("Removing updates for dynamic block updates violated threading rules");
-				}
-			}
+			unlinkChunk(current);
 			current = current.getNext();
 		}
 		return oldRoot;
@@ -87,6 +87,45 @@ public class UpdateQueue {
 		return !xArray.isEmpty();
 	}
 
+	/**
+	 * Gets the number of queued updates
+	 * 
+	 * @return the number of updates
+	 */
+	public int size() {
+		return xArray.size();
+	}
+
+	/**
+	 * Gets the x coordinate of a queued update, without removing it
+	 * 
+	 * @param index of the update
+	 * @return the x coordinate
+	 */
+	public int getX(int index) {
+		return xArray.get(index) & 0xFF;
+	}
+
+	/**
+	 * Gets the y coordinate of a queued update, without removing it
+	 * 
+	 * @param index of the update
+	 * @return the y coordinate
+	 */
+	public int getY(int index) {
+		return yArray.get(index) & 0xFF;
+	}
+
+	/**
+	 * Gets the z coordinate of a queued update, without removing it
+	 * 
+	 * @param index of the update
+	 * @return the z coordinate
+	 */
+	public int getZ(int index) {
+		return zArray.get(index) & 0xFF;
+	}
+
 	/**
 	 * Gets the next x coordinate.  This method updates the internal array indexes and should only be called if hasNext returns true
 	 * 
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.spout.api.math.IntVector3;
+import org.spout.api.util.OutwardIterator;
+
+public class ObserverShellsTest {
+	private static Set<IntVector3> window(int cx, int cy, int cz, int viewDistance) {
+		Set<IntVector3> window = new HashSet<IntVector3>();
+		OutwardIterator itr = new OutwardIterator(cx, cy, cz, viewDistance);
+		while (itr.hasNext()) {
+			IntVector3 v = itr.next();
+			window.add(new IntVector3(v.getX(), v.getY(), v.getZ()));
+		}
+		return window;
+	}
+
+	private static Set<IntVector3> walk(int cx, int cy, int cz, int ox, int oy, int oz, int viewDistance) {
+		final Set<IntVector3> visited = new HashSet<IntVector3>();
+		ObserverShells.walk(cx, cy, cz, ox, oy, oz, viewDistance, new ObserverShells.Visitor() {
+			@Override
+			public void visit(int x, int y, int z) {
+				assertTrue("Chunk visited twice", visited.add(new IntVector3(x, y, z)));
+			}
+		});
+		return visited;
+	}
+
+	private static void checkMove(int ox, int oy, int oz, int cx, int cy, int cz, int viewDistance) {
+		Set<IntVector3> oldWindow = window(ox, oy, oz, viewDistance);
+		Set<IntVector3> newWindow = window(cx, cy, cz, viewDistance);
+		Set<IntVector3> entering = new HashSet<IntVector3>(newWindow);
+		entering.removeAll(oldWindow);
+		Set<IntVector3> leaving = new HashSet<IntVector3>(oldWindow);
+		leaving.removeAll(newWindow);
+		assertEquals(entering, walk(cx, cy, cz, ox, oy, oz, viewDistance));
+		assertEquals(leaving, walk(ox, oy, oz, cx, cy, cz, viewDistance));
+	}
+
+	@Test
+	public void testMatchesOutwardIterator() {
+		for (int viewDistance = 0; viewDistance <= 6; viewDistance++) {
+			final int maxMove = Math.max(1, viewDistance / 2);
+			for (int dx = -maxMove; dx <= maxMove; dx++) {
+				for (int dy = -maxMove; dy <= maxMove; dy++) {
+					for (int dz = -maxMove; dz <= maxMove; dz++) {
+						if (Math.abs(dx) + Math.abs(dy) + Math.abs(dz) <= maxMove) {
+							checkMove(3, -2, -7, 3 + dx, -2 + dy, -7 + dz, viewDistance);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFarMove() {
+		// Windows which do not overlap are walked completely
+		checkMove(0, 0, 0, 20, -20, 5, 4);
+	}
+
+	@Test
+	public void testNoMove() {
+		assertTrue(walk(-1, 0, 1, -1, 0, 1, 5).isEmpty());
+	}
+}
@@ -26,47 +26,23 @@
  */
 package org.spout.engine.protocol;
 
-import org.spout.api.Spout;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
-public class NetworkSendThreadPool {
-	
-	private static final int POOL_MASK = 0xF;
-	private static final NetworkSendThread[] pool;
-	
-	static {
-		pool = new NetworkSendThread[POOL_MASK + 1];
-		for (int i = 0; i < pool.length; i++) {
-			pool[i] = new NetworkSendThread(i);
-		}
-	}
-	
-	public static NetworkSendThread getNetworkThread(int playerId) {
-		return pool[hash(playerId) & POOL_MASK];
-	}
-	
-	public static void interrupt() {
-		for (int i = 0; i < pool.length; i++) {
-			pool[i].interrupt();
-		}
-	}
-	
-	public static void shutdown() {
-		for (int i = 0; i < pool.length; i++) {
-			pool[i].interrupt();
-		}
-		for (int i = 0; i < pool.length; i++) {
-			try {
-				pool[i].interruptAndJoin();
-			} catch (InterruptedException e) {
-				Spout.getLogger().info("Thread interrupted when waiting for NetworkSendPool to shutdown");
-			}
-		}
-	}
-	
-	// Taken from HashMap
-	private static int hash(int h) {
-		h ^= (h >>> 20) ^ (h >>> 12);
-		return h ^ (h >>> 7) ^ (h >>> 4);
-	}
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
 
+public class ChunkPayloadCacheTest {
+	@Test
+	public void testLastSizeSurvivesInvalidate() {
+		ChunkPayloadCache cache = new ChunkPayloadCache();
+		assertEquals(-1, cache.getLastSize());
+		int version = cache.getVersion();
+		cache.put(this, version, ChannelBuffers.wrappedBuffer(new byte[123]));
+		assertEquals(123, cache.get(this, version).readableBytes());
+		cache.invalidate();
+		assertNull(cache.get(this, version));
+		assertNull(cache.get(this, cache.getVersion()));
+		assertEquals(123, cache.getLastSize());
+	}
 }
@@ -0,0 +1,79 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+
+public class PayloadCompressionTest {
+	private final PayloadCompression compression = new PayloadCompression(6, Deflater.DEFAULT_STRATEGY, 256);
+
+	private byte[] roundTrip(byte[] data, int expectedWritten) throws Exception {
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		int written = compression.write(buffer, data, 0, data.length);
+		assertEquals(expectedWritten, written);
+		byte[] read = PayloadCompression.read(buffer);
+		assertEquals(0, buffer.readableBytes());
+		return read;
+	}
+
+	@Test
+	public void testCompressed() throws Exception {
+		byte[] data = new byte[16384];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i >> 8);
+		}
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		int written = compression.write(buffer, data, 0, data.length);
+		assertTrue("Payload was not compressed", written < data.length);
+		assertArrayEquals(data, PayloadCompression.read(buffer));
+		// The compressors of the thread are reused
+		assertArrayEquals(data, roundTrip(data, written));
+	}
+
+	@Test
+	public void testRaw() throws Exception {
+		byte[] small = new byte[100];
+		assertArrayEquals(small, roundTrip(small, small.length));
+
+		// Random data does not get smaller, it is written raw
+		byte[] random = new byte[4096];
+		new Random(1).nextBytes(random);
+		assertArrayEquals(random, roundTrip(random, random.length));
+
+		byte[] empty = new byte[0];
+		assertArrayEquals(empty, roundTrip(empty, 0));
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.protocol.builtin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.junit.Test;
+import org.spout.api.math.Quaternion;
+
+public class ChannelBufferUtilsTest {
+	private final int LENGTH = 1000;
+
+	@Test
+	public void testPackedRotation() {
+		Random r = new Random(1);
+
+		for (int i = 0; i < LENGTH; i++) {
+			float x = (float) r.nextGaussian();
+			float y = (float) r.nextGaussian();
+			float z = (float) r.nextGaussian();
+			float w = (float) r.nextGaussian();
+			float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+			Quaternion rotation = new Quaternion(x / length, y / length, z / length, w / length, true);
+			Quaternion unpacked = ChannelBufferUtils.unpackRotation(ChannelBufferUtils.packRotation(rotation));
+			float dot = Math.abs(rotation.getX() * unpacked.getX() + rotation.getY() * unpacked.getY() + rotation.getZ() * unpacked.getZ() + rotation.getW() * unpacked.getW());
+			// Within half a degree, q and -q are the same rotation
+			assertTrue("Unpacked rotation " + unpacked + " is too far from " + rotation, 2.0 * Math.acos(Math.min(1.0f, dot)) < Math.toRadians(0.5));
+		}
+
+		Quaternion identity = ChannelBufferUtils.unpackRotation(ChannelBufferUtils.packRotation(Quaternion.IDENTITY));
+		assertEquals(0.0f, identity.getX(), 0.0f);
+		assertEquals(0.0f, identity.getY(), 0.0f);
+		assertEquals(0.0f, identity.getZ(), 0.0f);
+		assertEquals(1.0f, identity.getW(), 0.0f);
+	}
+
+	@Test
+	public void testVarInt() {
+		Random r = new Random(1);
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+		int[] values = new int[LENGTH];
+		for (int i = 0; i < LENGTH; i++) {
+			values[i] = i < 4 ? new int[] {0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE}[i] : r.nextInt() >> r.nextInt(32);
+			ChannelBufferUtils.writeSignedVarInt(buffer, values[i]);
+		}
+		for (int i = 0; i < LENGTH; i++) {
+			assertEquals(values[i], ChannelBufferUtils.readSignedVarInt(buffer));
+		}
+
+		buffer.clear();
+		ChannelBufferUtils.writeSignedVarInt(buffer, -64);
+		assertEquals("Small deltas should take a single byte", 1, buffer.readableBytes());
+	}
+}
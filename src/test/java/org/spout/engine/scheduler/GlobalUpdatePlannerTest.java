@@ -0,0 +1,147 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.spout.api.geo.cuboid.Region;
+
+public class GlobalUpdatePlannerTest {
+	
+	private final static int CHECKS = 200;
+	private final static int REGIONS = 40;
+	
+	@Test
+	public void test() {
+		Random r = new Random(1);
+		
+		for (int i = 0; i < CHECKS; i++) {
+			int[] sequences = new int[REGIONS];
+			TLongSet[] footprints = new TLongSet[REGIONS];
+			createRegions(r, sequences, footprints);
+			
+			int[] groups = GlobalUpdatePlanner.plan(sequences, footprints);
+			
+			for (int a = 0; a < REGIONS; a++) {
+				assertTrue("More groups than sequences", groups[a] >= 0 && groups[a] < 27);
+				for (int b = 0; b < REGIONS; b++) {
+					if (a == b || !intersects(footprints[a], footprints[b])) {
+						continue;
+					}
+					// Conflicting regions must run in the same order as with the 27 sequences
+					assertTrue("Conflicting regions with the same sequence", sequences[a] != sequences[b]);
+					assertTrue("Conflicting regions in the same group", groups[a] != groups[b]);
+					assertTrue("Conflicting regions not run in sequence order", (sequences[a] < sequences[b]) == (groups[a] < groups[b]));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testPassMatchesSequenceOrder() {
+		Random r = new Random(2);
+		
+		for (int i = 0; i < CHECKS; i++) {
+			int[] sequences = new int[REGIONS];
+			TLongSet[] footprints = new TLongSet[REGIONS];
+			createRegions(r, sequences, footprints);
+			
+			// Each update mixes the id of its region into every region it touches, so the result depends on the order
+			TLongLongHashMap expected = new TLongLongHashMap();
+			for (int sequence = 0; sequence < 27; sequence++) {
+				for (int j = 0; j < REGIONS; j++) {
+					if (sequences[j] == sequence) {
+						update(expected, j, footprints[j]);
+					}
+				}
+			}
+			
+			// Regions in a group run at the same time, so any order within a group must give the same result
+			int[] groups = GlobalUpdatePlanner.plan(sequences, footprints);
+			TLongLongHashMap actual = new TLongLongHashMap();
+			for (int group = 0; group < 27; group++) {
+				for (int j = REGIONS - 1; j >= 0; j--) {
+					if (groups[j] == group) {
+						update(actual, j, footprints[j]);
+					}
+				}
+			}
+			assertEquals("Planned pass differs from the 27 sequences", expected, actual);
+		}
+	}
+	
+	private static void update(TLongLongHashMap blocks, int region, TLongSet footprint) {
+		TLongIterator i = footprint.iterator();
+		while (i.hasNext()) {
+			long key = i.next();
+			blocks.put(key, blocks.get(key) * 31 + region + 1);
+		}
+	}
+	
+	private static void createRegions(Random r, int[] sequences, TLongSet[] footprints) {
+		TLongSet used = new TLongHashSet();
+		for (int j = 0; j < sequences.length; j++) {
+			int rx, ry, rz;
+			do {
+				rx = r.nextInt(8);
+				ry = r.nextInt(3);
+				rz = r.nextInt(8);
+			} while (!used.add(((long) rx << 32) | (ry << 16) | rz));
+			// Same sequence calculation as the regions
+			sequences[j] = (rx % 3) * 9 + (ry % 3) * 3 + (rz % 3);
+			footprints[j] = new TLongHashSet();
+			if (r.nextInt(10) == 0) {
+				GlobalUpdatePlanner.addRegionNeighbourhood(footprints[j], rx, ry, rz);
+			} else {
+				int updates = 1 + r.nextInt(4);
+				for (int k = 0; k < updates; k++) {
+					GlobalUpdatePlanner.addChunkNeighbourhood(footprints[j], rx, ry, rz, r.nextInt(Region.BLOCKS.SIZE), r.nextInt(Region.BLOCKS.SIZE), r.nextInt(Region.BLOCKS.SIZE));
+				}
+			}
+		}
+	}
+	
+	private static boolean intersects(TLongSet a, TLongSet b) {
+		TLongIterator i = a.iterator();
+		while (i.hasNext()) {
+			if (b.contains(i.next())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
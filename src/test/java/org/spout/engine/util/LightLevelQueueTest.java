@@ -0,0 +1,94 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LightLevelQueueTest {
+	private final int LENGTH = 10000;
+
+	@Test
+	public void testRingBuffer() {
+		IntRingBuffer buffer = new IntRingBuffer(4);
+		int next = 0, expected = 0;
+		Random r = new Random();
+		for (int i = 0; i < LENGTH; i++) {
+			if (buffer.isEmpty() || r.nextInt(3) != 0) {
+				buffer.offer(next++);
+			} else {
+				assertEquals("Ring buffer did not return values in order", expected++, buffer.poll());
+			}
+		}
+		while (!buffer.isEmpty()) {
+			assertEquals("Ring buffer did not return values in order", expected++, buffer.poll());
+		}
+		assertEquals(next, expected);
+
+		int capacity = buffer.capacity();
+		for (int i = 0; i < LENGTH; i++) {
+			buffer.offer(i);
+			buffer.poll();
+		}
+		assertEquals("Ring buffer grew while it was not full", capacity, buffer.capacity());
+	}
+
+	@Test
+	public void testLevelOrder() {
+		LightLevelQueue queue = new LightLevelQueue();
+		Random r = new Random();
+		for (int i = 0; i < LENGTH; i++) {
+			int level = r.nextInt(16);
+			queue.offer(level << 16 | i, level);
+		}
+		int last = 15;
+		int count = 0;
+		while (!queue.isEmpty()) {
+			int level = queue.peekLevel();
+			int key = queue.poll();
+			assertEquals("Key was returned for the wrong level", level, key >> 16);
+			assertTrue("Levels were not returned highest first", level <= last);
+			last = level;
+			count++;
+		}
+		assertEquals(LENGTH, count);
+		assertEquals(-1, queue.peekLevel());
+
+		// Keys offered at a higher level while polling are returned first
+		queue.offer(1, 3);
+		queue.offer(2, 3);
+		assertEquals(1, queue.poll());
+		queue.offer(3, 10);
+		assertEquals(3, queue.poll());
+		assertEquals(2, queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+}
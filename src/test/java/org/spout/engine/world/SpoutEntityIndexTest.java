@@ -0,0 +1,132 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.geo.discrete.Transform;
+
+public class SpoutEntityIndexTest {
+	private SpoutEntityIndex index;
+	private Entity origin, east, farEast, southWest, farSouthWest, corner;
+
+	private static Entity createEntity(float x, float y, float z) {
+		Entity entity = mock(Entity.class);
+		Transform transform = mock(Transform.class);
+		when(transform.getPosition()).thenReturn(new Point(null, x, y, z));
+		when(entity.getTransform()).thenReturn(transform);
+		return entity;
+	}
+
+	private static Point point(float x, float y, float z) {
+		return new Point(null, x, y, z);
+	}
+
+	@Before
+	public void setUp() {
+		origin = createEntity(0f, 0f, 0f);
+		east = createEntity(10f, 0f, 0f);
+		farEast = createEntity(40f, 0f, 0f);
+		southWest = createEntity(-20f, 5f, -3f);
+		farSouthWest = createEntity(-100f, -70f, -100f);
+		corner = createEntity(-1f, 0f, -1f);
+		Region first = mock(Region.class);
+		when(first.getAll()).thenReturn(Arrays.asList(origin, east, farEast));
+		Region second = mock(Region.class);
+		when(second.getAll()).thenReturn(Arrays.asList(southWest, farSouthWest, corner));
+		// Distant entities in many chunks, so small queries look up the chunks in range rather than checking every occupied chunk
+		List<Entity> distant = new ArrayList<Entity>();
+		for (int i = 0; i < 32; i++) {
+			distant.add(createEntity(2000f + i * 16f, 2000f, 2000f));
+		}
+		Region third = mock(Region.class);
+		when(third.getAll()).thenReturn(distant);
+		Collection<Region> regions = Arrays.asList(first, second, third);
+		SpoutWorld world = mock(SpoutWorld.class);
+		when(world.getRegions()).thenReturn(regions);
+		index = new SpoutEntityIndex(world);
+	}
+
+	private static void assertContainsExactly(List<Entity> found, Entity... expected) {
+		assertEquals(expected.length, found.size());
+		assertEquals(new HashSet<Entity>(Arrays.asList(expected)), new HashSet<Entity>(found));
+	}
+
+	@Test
+	public void testRange() {
+		assertContainsExactly(index.getNearby(point(0f, 0f, 0f), null, 25, Entity.class), origin, east, southWest, corner);
+		assertContainsExactly(index.getNearby(point(0f, 0f, 0f), origin, 25, Entity.class), east, southWest, corner);
+		assertContainsExactly(index.getNearby(point(30f, 0f, 0f), null, 15, Entity.class), farEast);
+		assertContainsExactly(index.getNearby(point(200f, 0f, 0f), null, 10, Entity.class));
+	}
+
+	@Test
+	public void testNegativeCoordinates() {
+		assertContainsExactly(index.getNearby(point(-100f, -70f, -100f), null, 5, Entity.class), farSouthWest);
+		assertContainsExactly(index.getNearby(point(-18f, 5f, -3f), null, 3, Entity.class), southWest);
+		// Both sides of the chunk boundary at zero
+		assertContainsExactly(index.getNearby(point(0.5f, 0f, 0.5f), null, 3, Entity.class), origin, corner);
+	}
+
+	@Test
+	public void testLargeRange() {
+		// More chunks in range than occupied chunks, the occupied chunks are checked instead
+		assertContainsExactly(index.getNearby(point(0f, 0f, 0f), null, 1000, Entity.class), origin, east, farEast, southWest, farSouthWest, corner);
+		assertContainsExactly(index.getNearby(point(-90f, -60f, -90f), null, 20, Entity.class), farSouthWest);
+	}
+
+	@Test
+	public void testNearest() {
+		assertSame(origin, index.getNearest(point(0.2f, 0f, 0f), null, 50, Entity.class));
+		assertSame(corner, index.getNearest(point(0.2f, 0f, 0f), origin, 50, Entity.class));
+		assertNull(index.getNearest(point(200f, 0f, 0f), null, 10, Entity.class));
+		assertEquals(Arrays.asList(origin, corner, east), index.getNearest(point(0.2f, 0f, 0f), null, 50, 3, Entity.class));
+		assertEquals(Arrays.asList(farSouthWest), index.getNearest(point(-90f, -60f, -90f), null, 1000, 1, Entity.class));
+		List<Entity> all = new ArrayList<Entity>(index.getNearest(point(0f, 0f, 0f), null, 1000, 10, Entity.class));
+		assertEquals(6, all.size());
+		assertSame(farSouthWest, all.get(5));
+		assertTrue(index.getNearest(point(0f, 0f, 0f), null, 1000, 0, Entity.class).isEmpty());
+		assertEquals(Collections.<Entity>emptyList(), index.getNearest(point(500f, 500f, 500f), null, 10, 3, Entity.class));
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.collision.shapes.BoxShape;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+import org.junit.Test;
+
+public class RegionBodiesTest {
+	private static final int SIZE = 256;
+	private static final float MARGIN = 1f;
+	private final Vector3f base = new Vector3f(0f, 0f, 0f);
+	private final Set<CollisionObject> leftRegion = new HashSet<CollisionObject>();
+	private final Set<CollisionObject> leftWorld = new HashSet<CollisionObject>();
+	private final RegionBodies.Departures departures = new RegionBodies.Departures() {
+		@Override
+		public boolean hasLeftRegion(CollisionObject object) {
+			return leftRegion.contains(object);
+		}
+
+		@Override
+		public boolean hasLeftWorld(CollisionObject object) {
+			return leftWorld.contains(object);
+		}
+	};
+
+	@Test
+	public void testStaticBodyHandOff() {
+		final DiscreteDynamicsWorld world = createWorld();
+		final RegionBodies bodies = new RegionBodies();
+		final RigidBody body = createStaticBody(SIZE + MARGIN / 2f);
+		bodies.add(world, body);
+		assertTrue("Static body counted as dynamic", bodies.getDynamicBodies().isEmpty());
+		leftRegion.add(body);
+
+		// Within the margin the body stays in this simulation
+		final List<CollisionObject> removed = new ArrayList<CollisionObject>();
+		bodies.handOff(world, departures, base, SIZE, MARGIN, removed);
+		assertTrue("Body inside the margin was handed off", removed.isEmpty());
+		assertEquals(1, world.getNumCollisionObjects());
+
+		moveTo(body, SIZE + MARGIN * 2f);
+		bodies.handOff(world, departures, base, SIZE, MARGIN, removed);
+		assertEquals(1, removed.size());
+		assertSame(body, removed.get(0));
+		assertEquals(0, world.getNumCollisionObjects());
+		assertTrue(bodies.getObjects().isEmpty());
+	}
+
+	@Test
+	public void testCollisionObjectHandOff() {
+		final DiscreteDynamicsWorld world = createWorld();
+		final RegionBodies bodies = new RegionBodies();
+		final CollisionObject object = new CollisionObject();
+		object.setCollisionShape(new BoxShape(new Vector3f(0.5f, 0.5f, 0.5f)));
+		bodies.add(world, object);
+		final RigidBody kept = createStaticBody(SIZE / 2f);
+		bodies.add(world, kept);
+
+		// Objects which changed world are handed off at once, wherever they are
+		leftWorld.add(object);
+		leftRegion.add(object);
+		final List<CollisionObject> removed = new ArrayList<CollisionObject>();
+		bodies.handOff(world, departures, base, SIZE, MARGIN, removed);
+		assertEquals(1, removed.size());
+		assertSame(object, removed.get(0));
+		assertEquals(1, world.getNumCollisionObjects());
+		assertFalse(bodies.getObjects().contains(object));
+		assertTrue(bodies.getObjects().contains(kept));
+	}
+
+	private static DiscreteDynamicsWorld createWorld() {
+		final DefaultCollisionConfiguration configuration = new DefaultCollisionConfiguration();
+		return new DiscreteDynamicsWorld(new CollisionDispatcher(configuration), new DbvtBroadphase(), new SequentialImpulseConstraintSolver(), configuration);
+	}
+
+	private static RigidBody createStaticBody(float x) {
+		final Transform transform = new Transform();
+		transform.setIdentity();
+		transform.origin.set(x, SIZE / 2f, SIZE / 2f);
+		return new RigidBody(new RigidBodyConstructionInfo(0f, new DefaultMotionState(transform), new BoxShape(new Vector3f(0.5f, 0.5f, 0.5f)), new Vector3f(0f, 0f, 0f)));
+	}
+
+	private static void moveTo(RigidBody body, float x) {
+		final Transform transform = body.getWorldTransform(new Transform());
+		transform.origin.set(x, SIZE / 2f, SIZE / 2f);
+		body.setWorldTransform(transform);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.collision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import javax.vecmath.Vector3f;
+
+import com.bulletphysics.collision.broadphase.DbvtBroadphase;
+import com.bulletphysics.collision.dispatch.CollisionDispatcher;
+import com.bulletphysics.collision.dispatch.CollisionObject;
+import com.bulletphysics.collision.dispatch.DefaultCollisionConfiguration;
+import com.bulletphysics.collision.narrowphase.PersistentManifold;
+import com.bulletphysics.collision.shapes.SphereShape;
+import com.bulletphysics.dynamics.DiscreteDynamicsWorld;
+import com.bulletphysics.dynamics.RigidBody;
+import com.bulletphysics.dynamics.RigidBodyConstructionInfo;
+import com.bulletphysics.dynamics.constraintsolver.SequentialImpulseConstraintSolver;
+import com.bulletphysics.linearmath.DefaultMotionState;
+import com.bulletphysics.linearmath.Transform;
+
+import org.junit.Test;
+
+public class RegionBoundaryTest {
+
+	@Test
+	public void testProxyContactMapsToMirroredHolder() {
+		final Object owned = new Object();
+		final Object mirrored = new Object();
+		final DiscreteDynamicsWorld world = createWorld();
+		final RigidBody body = createBody(owned, 0f);
+		world.addRigidBody(body);
+
+		// The mirrored body overlaps the owned body, but lives in the simulation of a neighbour
+		final RegionBoundary source = new RegionBoundary();
+		final RegionBoundary target = new RegionBoundary();
+		final RigidBody remote = createBody(mirrored, 0.5f);
+		source.mirror(remote, Collections.singletonList(target));
+		assertTrue("Mirroring did not add a proxy", target.applyUpdates(world));
+		assertEquals(1, target.getProxyCount());
+
+		world.stepSimulation(1f / 20f, 2);
+
+		boolean found = false;
+		final CollisionDispatcher dispatcher = (CollisionDispatcher) world.getDispatcher();
+		for (int i = 0; i < dispatcher.getNumManifolds(); i++) {
+			final PersistentManifold manifold = dispatcher.getManifoldByIndexInternal(i);
+			if (manifold.getNumContacts() == 0) {
+				continue;
+			}
+			final CollisionObject a = (CollisionObject) manifold.getBody0();
+			final CollisionObject b = (CollisionObject) manifold.getBody1();
+			final CollisionObject proxy = RegionBoundary.isProxy(a) ? a : b;
+			final CollisionObject other = proxy == a ? b : a;
+			assertTrue("Contact without the proxy", RegionBoundary.isProxy(proxy));
+			assertFalse("Owned body flagged as a proxy", RegionBoundary.isProxy(other));
+			assertSame(mirrored, proxy.getUserPointer());
+			assertSame(owned, other.getUserPointer());
+			found = true;
+		}
+		assertTrue("No contact between the owned body and the proxy", found);
+
+		source.unmirror(remote);
+		target.applyUpdates(world);
+		assertEquals(0, target.getProxyCount());
+		assertEquals(1, world.getNumCollisionObjects());
+	}
+
+	private static DiscreteDynamicsWorld createWorld() {
+		final DefaultCollisionConfiguration configuration = new DefaultCollisionConfiguration();
+		final DiscreteDynamicsWorld world = new DiscreteDynamicsWorld(new CollisionDispatcher(configuration), new DbvtBroadphase(), new SequentialImpulseConstraintSolver(), configuration);
+		world.setGravity(new Vector3f(0f, 0f, 0f));
+		return world;
+	}
+
+	private static RigidBody createBody(Object holder, float x) {
+		final Transform transform = new Transform();
+		transform.setIdentity();
+		transform.origin.set(x, 0f, 0f);
+		final SphereShape shape = new SphereShape(0.5f);
+		final Vector3f inertia = new Vector3f();
+		shape.calculateLocalInertia(1f, inertia);
+		final RigidBody body = new RigidBody(new RigidBodyConstructionInfo(1f, new DefaultMotionState(transform), shape, inertia));
+		body.setUserPointer(holder);
+		return body;
+	}
+}
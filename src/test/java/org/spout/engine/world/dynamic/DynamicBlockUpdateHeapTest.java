@@ -0,0 +1,76 @@
+/*
+ * This file is part of Spout.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Spout is licensed under the Spout License Version 1.
+ *
+ * Spout is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Spout is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.engine.world.dynamic;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class DynamicBlockUpdateHeapTest {
+	
+	private final static int CHECKS = 100000;
+	
+	@Test
+	public void test() {
+		Random r = new Random();
+		DynamicBlockUpdateHeap heap = new DynamicBlockUpdateHeap(4);
+		TreeSet<DynamicBlockUpdate> expected = new TreeSet<DynamicBlockUpdate>();
+		List<DynamicBlockUpdate> queued = new ArrayList<DynamicBlockUpdate>();
+		
+		for (int i = 0; i < CHECKS; i++) {
+			int action = r.nextInt(10);
+			if (action < 5 || expected.isEmpty()) {
+				// Few distinct times, so ties are ordered by id
+				DynamicBlockUpdate update = new DynamicBlockUpdate(r.nextInt(256), r.nextInt(256), r.nextInt(256), r.nextInt(100), 0);
+				heap.add(update);
+				expected.add(update);
+				queued.add(update);
+			} else if (action < 8) {
+				DynamicBlockUpdate update = queued.remove(r.nextInt(queued.size()));
+				boolean present = expected.remove(update);
+				assertTrue("Cancelling an update did not match", heap.cancel(update) == present);
+				assertTrue("Cancelling an update twice succeeded", !heap.cancel(update));
+			} else {
+				DynamicBlockUpdate update = heap.poll();
+				assertTrue("Heap returned " + update + ", expected " + expected.first(), update == expected.pollFirst());
+			}
+			assertTrue("Heap size mismatch", heap.size() == expected.size());
+		}
+		
+		while (!expected.isEmpty()) {
+			assertTrue("Heap order did not match the update order", heap.peek() == expected.first());
+			assertTrue("Heap order did not match the update order", heap.poll() == expected.pollFirst());
+		}
+		assertTrue("Heap not empty", heap.isEmpty() && heap.poll() == null);
+	}
+
+}